@@ -26,19 +26,29 @@ import io.cdap.cdap.api.annotation.Plugin;
 import io.cdap.cdap.api.data.batch.Input;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
+import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
+import io.cdap.cdap.etl.api.StageContext;
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.cdap.etl.api.batch.BatchRuntimeContext;
 import io.cdap.cdap.etl.api.batch.BatchSource;
 import io.cdap.cdap.etl.api.batch.BatchSourceContext;
 import io.cdap.cdap.etl.api.connector.Connector;
 import io.cdap.plugin.ariba.source.config.AribaPluginConfig;
 import io.cdap.plugin.ariba.source.exception.AribaException;
+import io.cdap.plugin.ariba.source.metadata.AribaSchemaGenerator;
+import io.cdap.plugin.ariba.source.metrics.AribaMetrics;
+import io.cdap.plugin.ariba.source.metrics.AribaRunProfile;
+import io.cdap.plugin.ariba.source.metrics.AribaVolumeStats;
 import io.cdap.plugin.ariba.source.util.AribaUtil;
 import io.cdap.plugin.ariba.source.util.ResourceConstants;
 import io.cdap.plugin.common.LineageRecorder;
 import io.cdap.plugin.common.SourceInputFormatProvider;
 import io.cdap.plugin.common.batch.JobUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.Job;
 import org.slf4j.Logger;
@@ -46,6 +56,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
@@ -62,13 +75,19 @@ public class AribaBatchSource extends BatchSource<NullWritable, StructuredRecord
   public static final String NAME = "Ariba";
   private static final Logger LOG = LoggerFactory.getLogger(AribaBatchSource.class);
   private static final Gson GSON = new Gson();
+  private static final long METRICS_FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
   private final AribaPluginConfig pluginConfig;
   private final AribaServices aribaServices;
   public String accessToken;
+  @Nullable
+  private StageMetrics stageMetrics;
+  @Nullable
+  private AribaMetrics runMetrics;
+  private long lastMetricsFlushNanos;
 
   public AribaBatchSource(AribaPluginConfig pluginConfig) {
     this.pluginConfig = pluginConfig;
-    aribaServices = new AribaServices(pluginConfig.getConnection(),
+    aribaServices = AribaServices.getShared(pluginConfig.getConnection(),
       pluginConfig.getMaxRetryCount(),
       pluginConfig.getInitialRetryDuration(),
       pluginConfig.getMaxRetryDuration(),
@@ -89,6 +108,8 @@ public class AribaBatchSource extends BatchSource<NullWritable, StructuredRecord
         if (accessToken != null) {
           pipelineConfigurer.getStageConfigurer().setOutputSchema(
             getOutputSchema());
+          validateJobFilters(failureCollector);
+          failureCollector.getOrThrowException();
         }
       } catch (IOException | InterruptedException exception) {
         failureCollector.addFailure(exception.getMessage(), null);
@@ -96,6 +117,10 @@ public class AribaBatchSource extends BatchSource<NullWritable, StructuredRecord
       } catch (AribaException exception) {
         attachFieldWithError(exception, failureCollector);
         failureCollector.getOrThrowException();
+      } catch (IllegalArgumentException exception) {
+        // View templates whose names map to the same field of the output schema
+        failureCollector.addFailure(exception.getMessage(), null).withConfigProperty(AribaPluginConfig.TEMPLATE_NAME);
+        failureCollector.getOrThrowException();
       }
     } else {
       pipelineConfigurer.getStageConfigurer().setOutputSchema(null);
@@ -115,16 +140,132 @@ public class AribaBatchSource extends BatchSource<NullWritable, StructuredRecord
     if (outputSchema == null) {
       throw new IllegalArgumentException(ResourceConstants.ERR_MACRO_INPUT.getMsgForKeyWithCode());
     }
+    validateJobFilters(collector);
+    collector.getOrThrowException();
     setJobForDataRead(context, outputSchema);
-    emitLineage(context, outputSchema, pluginConfig.getViewTemplateName());
+    emitLineage(context, outputSchema);
     collector.getOrThrowException();
   }
 
+  @Override
+  public void onRunFinish(boolean succeeded, BatchSourceContext context) {
+    // Job creation and polling run in the driver
+    AribaMetrics.forRun(getRunMetricsKey(context)).flush(context.getMetrics());
+    String runProfileDir = getRunProfileDir(context);
+    if (runProfileDir != null) {
+      try {
+        Configuration conf = new Configuration();
+        Path profile = AribaRunProfile.merge(conf, runProfileDir, new AribaRunProfile.Summary(
+          context.getPipelineName(), context.getLogicalStartTime(), System.currentTimeMillis(), succeeded));
+        LOG.info("Run profile written to: {}", profile);
+        if (profile != null && succeeded && pluginConfig.isAutoRead()) {
+          updateVolumeStats(conf, AribaRunProfile.read(conf, profile), context.getPipelineName());
+        }
+      } catch (IOException e) {
+        // The profile is a diagnostic aid, it must not fail the run
+        LOG.warn("Failed to write the run profile to: {}", runProfileDir, e);
+      }
+    }
+    super.onRunFinish(succeeded, context);
+  }
+
+  /**
+   * Keeps the records read per view template for the automatic read mode of the next run. View templates without
+   * a result file in the profile had no records.
+   */
+  private void updateVolumeStats(Configuration conf, AribaRunProfile profile, String pipelineName)
+    throws IOException {
+    Map<String, Long> records = profile.getRecordsByTemplate(pluginConfig.getViewTemplateName());
+    for (String templateName : pluginConfig.getViewTemplateNames()) {
+      records.putIfAbsent(templateName, 0L);
+    }
+    String statsPath = AribaVolumeStats.getPath(pluginConfig.getRunProfilePath(), pipelineName);
+    AribaVolumeStats.update(conf, statsPath, records);
+    LOG.debug("Records per view template written to: {}", statsPath);
+  }
+
+  /**
+   * @return key of the metrics registry of this stage run, equal in the driver and in every task of the run
+   */
+  private static String getRunMetricsKey(StageContext context) {
+    return String.join(":", context.getNamespace(), context.getPipelineName(), context.getStageName(),
+                       String.valueOf(context.getLogicalStartTime()));
+  }
+
+  /**
+   * @return directory the fragments of the run profile are written to, null if no profile is written
+   */
+  @Nullable
+  private String getRunProfileDir(BatchSourceContext context) {
+    String runProfilePath = pluginConfig.getRunProfilePath();
+    if (runProfilePath == null || context.isPreviewEnabled()) {
+      return null;
+    }
+    return new Path(runProfilePath, context.getPipelineName() + "-" + context.getLogicalStartTime()).toString();
+  }
+
+  @Override
+  public void initialize(BatchRuntimeContext context) throws Exception {
+    super.initialize(context);
+    stageMetrics = context.getMetrics();
+    runMetrics = AribaMetrics.forRun(getRunMetricsKey(context));
+    lastMetricsFlushNanos = System.nanoTime();
+  }
+
+  @Override
+  public void transform(KeyValue<NullWritable, StructuredRecord> input, Emitter<StructuredRecord> emitter) {
+    emitter.emit(input.getValue());
+    // Metrics recorded by the record reader are published periodically, not per record
+    long now = System.nanoTime();
+    if (stageMetrics != null && runMetrics != null && now - lastMetricsFlushNanos >= METRICS_FLUSH_INTERVAL_NANOS) {
+      lastMetricsFlushNanos = now;
+      runMetrics.flush(stageMetrics);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (stageMetrics != null && runMetrics != null) {
+      runMetrics.flush(stageMetrics);
+    }
+    super.destroy();
+  }
+
+  /**
+   * @return schema of the view template, or the tagged union of the schemas of the view templates when several view
+   * templates are extracted
+   */
   @Nullable
   private Schema getOutputSchema() throws IOException, AribaException, InterruptedException {
     String token = aribaServices.getAccessToken();
     LOG.trace("Initiating Metadata Call To Ariba");
-    return aribaServices.buildOutputSchema(token, pluginConfig.getViewTemplateName());
+    if (!pluginConfig.isMultiTemplate()) {
+      return aribaServices.buildOutputSchema(token, pluginConfig.getViewTemplateName());
+    }
+    Map<String, Schema> templateSchemas = new LinkedHashMap<>();
+    for (String templateName : pluginConfig.getViewTemplateNames()) {
+      templateSchemas.put(templateName, aribaServices.buildOutputSchema(token, templateName));
+    }
+    return AribaSchemaGenerator.buildTemplateUnion(templateSchemas);
+  }
+
+  /**
+   * Validates the job filters against the filter expressions of every view template. The filter expressions are
+   * cached per connection, so the job creation reuses them.
+   */
+  private void validateJobFilters(FailureCollector failureCollector)
+    throws IOException, AribaException, InterruptedException {
+    try {
+      if (pluginConfig.getJobFilters().isEmpty()) {
+        return;
+      }
+    } catch (IllegalArgumentException e) {
+      // Reported by the validation of the plugin parameters
+      return;
+    }
+    for (String templateName : pluginConfig.getViewTemplateNames()) {
+      pluginConfig.validateJobFilters(failureCollector, templateName, aribaServices.getFilterNames(templateName));
+    }
   }
 
   private void setJobForDataRead(BatchSourceContext context, Schema outputSchema) throws IOException {
@@ -134,21 +275,33 @@ public class AribaBatchSource extends BatchSource<NullWritable, StructuredRecord
     jobConfiguration.set(ResourceConstants.ARIBA_PLUGIN_PROPERTIES, GSON.toJson(pluginConfig));
     // Setting plugin output schema
     jobConfiguration.set(ResourceConstants.OUTPUT_SCHEMA, outputSchema.toString());
-
     jobConfiguration.set(ResourceConstants.ENCODED_ENTITY_METADATA_STRING, outputSchema.toString());
     jobConfiguration.set(ResourceConstants.IS_PREVIEW_ENABLED, String.valueOf(context.isPreviewEnabled()));
+    jobConfiguration.set(ResourceConstants.RUN_METRICS_KEY, getRunMetricsKey(context));
+    String runProfileDir = getRunProfileDir(context);
+    if (runProfileDir != null) {
+      jobConfiguration.set(ResourceConstants.RUN_PROFILE_DIR, runProfileDir);
+      if (pluginConfig.isAutoRead()) {
+        jobConfiguration.set(ResourceConstants.VOLUME_STATS_PATH,
+                             AribaVolumeStats.getPath(pluginConfig.getRunProfilePath(), context.getPipelineName()));
+      }
+    }
+    if (pluginConfig.getRunTimeout() > 0) {
+      // One deadline for the planning and all the readers of the run
+      jobConfiguration.setLong(ResourceConstants.RUN_DEADLINE_MILLIS,
+                               System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(pluginConfig.getRunTimeout()));
+    }
 
     SourceInputFormatProvider inputFormat = new SourceInputFormatProvider(AribaInputFormat.class, jobConfiguration);
     context.setInput(Input.of(pluginConfig.getReferenceName(), inputFormat));
   }
 
-  private void emitLineage(BatchSourceContext context, Schema schema, String entity) {
+  private void emitLineage(BatchSourceContext context, Schema schema) {
     LineageRecorder lineageRecorder = new LineageRecorder(context, pluginConfig.getReferenceName());
     lineageRecorder.createExternalDataset(schema);
-
     if (schema.getFields() != null) {
-      String operationDesc = String.format("Read '%s' from ariba service '%s'", entity,
-                                           pluginConfig.getViewTemplateName());
+      String operationDesc = String.format("Read %s from ariba service", pluginConfig.getViewTemplateNames().stream()
+        .map(templateName -> "'" + templateName + "'").collect(Collectors.joining(", ")));
 
       lineageRecorder.recordRead(ResourceConstants.READ, operationDesc,
                                  schema.getFields().stream().map(Schema.Field::getName).collect(Collectors.toList()));
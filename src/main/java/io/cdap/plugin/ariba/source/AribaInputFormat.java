@@ -25,7 +25,13 @@ import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.ariba.source.config.AribaPluginConfig;
 import io.cdap.plugin.ariba.source.exception.AribaException;
+import io.cdap.plugin.ariba.source.metadata.AribaSchemaGenerator;
+import io.cdap.plugin.ariba.source.metrics.AribaMetrics;
+import io.cdap.plugin.ariba.source.metrics.AribaRunProfile;
+import io.cdap.plugin.ariba.source.metrics.AribaVolumeStats;
+import io.cdap.plugin.ariba.source.util.AribaExecutors;
 import io.cdap.plugin.ariba.source.util.ResourceConstants;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.InputSplit;
@@ -37,7 +43,13 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -48,37 +60,69 @@ public class AribaInputFormat extends InputFormat<NullWritable, StructuredRecord
 
   private static final Gson GSON = new Gson();
   private static final Logger LOG = LoggerFactory.getLogger(AribaInputFormat.class);
+  private static final String POLLING_THREAD_NAME = "ariba-job-polling";
+  private static final int MAX_POLLING_THREADS = 8;
+  // Wait between two polls of the status of the pending jobs
+  static final long JOB_POLL_MINUTES = 2;
   private final List<InputSplit> resultSplits = new ArrayList<>();
+  private final List<AribaRunProfile.JobProfile> jobProfiles = new ArrayList<>();
   private final ObjectMapper objectMapper = new ObjectMapper();
+  // Registry of the run, set from the job configuration
+  private AribaMetrics metrics = AribaMetrics.get();
 
   @Override
   public List<InputSplit> getSplits(JobContext jobContext) throws IOException {
     AribaPluginConfig pluginConfig = getPluginConfig(jobContext);
-    AribaServices aribaServices = new AribaServices(pluginConfig.getConnection(),
-      pluginConfig.getMaxRetryCount(),
-      pluginConfig.getInitialRetryDuration(),
-      pluginConfig.getMaxRetryDuration(),
-      pluginConfig.getRetryMultiplier(),
-      true);
+    metrics = AribaMetrics.forRun(jobContext.getConfiguration().get(ResourceConstants.RUN_METRICS_KEY));
+    AribaServices aribaServices = AribaServices.getShared(pluginConfig, true,
+      jobContext.getConfiguration().getLong(ResourceConstants.RUN_DEADLINE_MILLIS, 0), metrics);
     boolean previewEnabled = Boolean.parseBoolean(jobContext.getConfiguration().
                                                     get(ResourceConstants.IS_PREVIEW_ENABLED));
 
-    createJob(pluginConfig, aribaServices, previewEnabled, null);
-    return resultSplits;
+    List<InputSplit> splits;
+    if (previewEnabled) {
+      // Preview shows a few records, which the synchronous view endpoint returns without waiting for a job
+      LOG.info("Preview reads at most {} records per view template from the synchronous view endpoint",
+               ResourceConstants.PREVIEW_RECORD_LIMIT);
+      splits = createSyncSplits(pluginConfig.getViewTemplateNames());
+    } else if (pluginConfig.isSyncRead()) {
+      // Pages of the synchronous view endpoint are read by the record readers, there is no job to wait for
+      splits = createSyncSplits(pluginConfig.getViewTemplateNames());
+    } else if (pluginConfig.isAutoRead()) {
+      splits = createRoutedSplits(pluginConfig, aribaServices, previewEnabled, pluginConfig.getViewTemplateNames(),
+                                  readVolumeStats(jobContext.getConfiguration()));
+    } else {
+      // All the view templates share one session, so the access token is fetched once for all the jobs
+      splits = createJobs(pluginConfig, aribaServices, previewEnabled, pluginConfig.getViewTemplateNames());
+    }
+    LOG.info("Ariba requests while planning {} splits:{}", splits.size(),
+             metrics.getRequestStats().summary());
+    String runProfileDir = jobContext.getConfiguration().get(ResourceConstants.RUN_PROFILE_DIR);
+    if (runProfileDir != null) {
+      writeRunProfile(jobContext.getConfiguration(), runProfileDir);
+    }
+    return splits;
   }
 
   @Override
   public RecordReader<NullWritable, StructuredRecord> createRecordReader(InputSplit inputSplit, TaskAttemptContext
     taskAttemptContext) throws IOException {
     AribaPluginConfig pluginConfig = getPluginConfig(taskAttemptContext);
-    AribaServices aribaServices = new AribaServices(pluginConfig.getConnection(),
-      pluginConfig.getMaxRetryCount(),
-      pluginConfig.getInitialRetryDuration(),
-      pluginConfig.getMaxRetryDuration(),
-      pluginConfig.getRetryMultiplier(),
-      true);
+    // Shared by the readers of the run in this JVM: one pooled client, token and rate limit state
+    AribaServices aribaServices = AribaServices.getShared(pluginConfig, true,
+      taskAttemptContext.getConfiguration().getLong(ResourceConstants.RUN_DEADLINE_MILLIS, 0),
+      AribaMetrics.forRun(taskAttemptContext.getConfiguration().get(ResourceConstants.RUN_METRICS_KEY)));
     Schema outputSchema = Schema.parseJson(taskAttemptContext.getConfiguration().get(ResourceConstants.OUTPUT_SCHEMA));
-    return new AribaRecordReader(aribaServices, outputSchema, pluginConfig);
+    boolean previewEnabled = Boolean.parseBoolean(taskAttemptContext.getConfiguration()
+                                                    .get(ResourceConstants.IS_PREVIEW_ENABLED));
+    int recordLimit = previewEnabled ? ResourceConstants.PREVIEW_RECORD_LIMIT : 0;
+    String templateName = ((AribaInputSplit) inputSplit).getTemplateName();
+    if (templateName != null) {
+      // Records of the view template are read with its schema and emitted within the union of the view templates
+      return new AribaRecordReader(aribaServices, AribaSchemaGenerator.getTemplateSchema(outputSchema, templateName),
+                                   outputSchema, pluginConfig, recordLimit);
+    }
+    return new AribaRecordReader(aribaServices, outputSchema, pluginConfig, recordLimit);
   }
 
   private AribaPluginConfig getPluginConfig(JobContext taskAttemptContext) {
@@ -101,46 +145,235 @@ public class AribaInputFormat extends InputFormat<NullWritable, StructuredRecord
   void createJob(AribaPluginConfig pluginConfig,
                  AribaServices aribaServices, boolean isPreviewEnabled,
                  @Nullable String pageToken) throws IOException {
-    JsonNode jobData;
-    String jobId;
+    scheduleJobs(pluginConfig, aribaServices, isPreviewEnabled,
+                 Collections.singletonList(pluginConfig.getViewTemplateName()), pageToken);
+  }
+
+  /**
+   * Creates the jobs of all the given view templates and polls them round-robin, so that the jobs run on the Ariba
+   * side concurrently while sharing one session and one polling cycle.
+   *
+   * @param pluginConfig     Plugin config
+   * @param aribaServices    Ariba services
+   * @param isPreviewEnabled Is preview enabled
+   * @param templateNames    View template names
+   * @return splits of all the jobs
+   * @throws IOException
+   */
+  @VisibleForTesting
+  List<InputSplit> createJobs(AribaPluginConfig pluginConfig, AribaServices aribaServices, boolean isPreviewEnabled,
+                              List<String> templateNames) throws IOException {
+    scheduleJobs(pluginConfig, aribaServices, isPreviewEnabled, templateNames, null);
+    return resultSplits;
+  }
+
+  /**
+   * One split per view template, reading its pages of the synchronous view endpoint in order, as every page token
+   * is returned with the previous page.
+   *
+   * @param templateNames View template names
+   * @return splits of all the view templates
+   */
+  @VisibleForTesting
+  List<InputSplit> createSyncSplits(List<String> templateNames) {
+    addSyncSplits(templateNames, templateNames.size() > 1, 0);
+    return resultSplits;
+  }
+
+  /**
+   * Reads every view template through the synchronous view endpoint or a job, depending on its number of records.
+   * View templates with more records than the threshold in the last successful run are read through a job. The
+   * others are read synchronously, and their reader switches to a job as soon as the threshold is exceeded, before
+   * it returns any record, so that the pages are requested once and a view template that grew is still read
+   * through a job.
+   *
+   * @param pluginConfig     Plugin config
+   * @param aribaServices    Ariba services
+   * @param isPreviewEnabled Is preview enabled
+   * @param templateNames    View template names
+   * @param lastRecords      records read per view template by the last successful run
+   * @return splits of all the view templates
+   * @throws IOException
+   */
+  @VisibleForTesting
+  List<InputSplit> createRoutedSplits(AribaPluginConfig pluginConfig, AribaServices aribaServices,
+                                      boolean isPreviewEnabled, List<String> templateNames,
+                                      Map<String, Long> lastRecords) throws IOException {
+    int threshold = pluginConfig.getSyncRecordThreshold();
+    List<String> syncTemplates = new ArrayList<>();
+    List<String> jobTemplates = new ArrayList<>();
+    for (String templateName : templateNames) {
+      Long records = lastRecords.get(templateName);
+      boolean sync = records == null || records <= threshold;
+      LOG.info("View template: {} is read through {}, records of the last run: {}", templateName,
+               sync ? "the synchronous view endpoint up to " + threshold + " records" : "a job",
+               records == null ? "unknown" : records);
+      (sync ? syncTemplates : jobTemplates).add(templateName);
+    }
+
+    boolean multiTemplate = templateNames.size() > 1;
+    addSyncSplits(syncTemplates, multiTemplate, threshold);
+    if (!jobTemplates.isEmpty()) {
+      scheduleJobs(pluginConfig, aribaServices, isPreviewEnabled, jobTemplates, null, multiTemplate);
+    }
+    return resultSplits;
+  }
+
+  private void addSyncSplits(List<String> templateNames, boolean multiTemplate, int syncRecordThreshold) {
+    for (String templateName : templateNames) {
+      resultSplits.add(AribaInputSplit.sync(multiTemplate ? templateName : null, syncRecordThreshold));
+    }
+  }
 
+  private Map<String, Long> readVolumeStats(Configuration conf) {
+    String statsPath = conf.get(ResourceConstants.VOLUME_STATS_PATH);
+    if (statsPath == null) {
+      return Collections.emptyMap();
+    }
     try {
-      JsonNode createJobResponse = aribaServices.createJob(pluginConfig, pageToken, pluginConfig.getViewTemplateName());
-      jobId = createJobResponse.get(ResourceConstants.JOB_ID).asText();
-    } catch (AribaException | InterruptedException exception) {
-      throw new IOException(exception.getMessage(), exception);
+      return AribaVolumeStats.read(conf, statsPath);
+    } catch (IOException e) {
+      LOG.warn("Unable to read the records of the last run from: {}, probing the view templates.", statsPath, e);
+      return Collections.emptyMap();
     }
+  }
 
-    while (true) {
-      try {
-        LOG.info("Fetching Data For Job Id: {}", jobId);
-        jobData = aribaServices.fetchJobStatus(aribaServices.getAccessToken(), jobId);
-        if (jobData.get(ResourceConstants.STATUS).asText().equals(ResourceConstants.COMPLETED) ||
-          jobData.get(ResourceConstants.STATUS).asText().equals(ResourceConstants.COMPLETED_ZERO_RECORDS)) {
-          break;
-        }
-        TimeUnit.MINUTES.sleep(2);
-      } catch (AribaException | InterruptedException exception) {
-        throw new IOException(exception.getMessage(), exception);
-      }
+  private void scheduleJobs(AribaPluginConfig pluginConfig, AribaServices aribaServices, boolean isPreviewEnabled,
+                            List<String> templateNames, @Nullable String pageToken) throws IOException {
+    // Splits are tagged with their view template only when records of several templates share the output
+    scheduleJobs(pluginConfig, aribaServices, isPreviewEnabled, templateNames, pageToken, templateNames.size() > 1);
+  }
+
+  private void scheduleJobs(AribaPluginConfig pluginConfig, AribaServices aribaServices, boolean isPreviewEnabled,
+                            List<String> templateNames, @Nullable String pageToken, boolean multiTemplate)
+    throws IOException {
+    List<PendingJob> pendingJobs = new ArrayList<>();
+    for (String templateName : templateNames) {
+      pendingJobs.add(submitJob(pluginConfig, aribaServices, templateName, pageToken));
     }
+
     ObjectReader reader = objectMapper.readerFor(new TypeReference<List<String>>() {
     });
+    // Status of the pending jobs is polled concurrently
+    ExecutorService pollingExecutor = AribaExecutors.newBlockingIoExecutor(
+      POLLING_THREAD_NAME, pluginConfig.isUseVirtualThreads(), Math.min(templateNames.size(), MAX_POLLING_THREADS));
+    try {
+      while (!pendingJobs.isEmpty()) {
+        Map<PendingJob, Future<JsonNode>> jobStatuses = fetchJobStatuses(aribaServices, pendingJobs, pollingExecutor);
+        List<PendingJob> nextPageJobs = new ArrayList<>();
+        for (Map.Entry<PendingJob, Future<JsonNode>> jobStatus : jobStatuses.entrySet()) {
+          PendingJob pendingJob = jobStatus.getKey();
+          JsonNode jobData = getJobStatus(jobStatus.getValue());
+          if (!jobData.get(ResourceConstants.STATUS).asText().equals(ResourceConstants.COMPLETED) &&
+            !jobData.get(ResourceConstants.STATUS).asText().equals(ResourceConstants.COMPLETED_ZERO_RECORDS)) {
+            continue;
+          }
+          pendingJobs.remove(pendingJob);
+
+          List<String> files = reader.readValue(jobData.get(ResourceConstants.FILES));
+          pendingJob.profile.completed(jobData.get(ResourceConstants.STATUS).asText(),
+                                       jobData.path(ResourceConstants.CURRENT_PAGE).asInt(),
+                                       jobData.path(ResourceConstants.TOTAL_PAGES).asInt(), files);
+          LOG.info("Total Number of files for job id: {} is: {}", pendingJob.jobId, files.size());
+          for (String fileName : files) {
+            resultSplits.add(new AribaInputSplit(fileName, pendingJob.jobId,
+                                                 multiTemplate ? pendingJob.templateName : null));
+          }
+
+          LOG.info("Completed page: {} & Total number of pages are: {}",
+                   jobData.get(ResourceConstants.CURRENT_PAGE), jobData.get(ResourceConstants.TOTAL_PAGES));
+          String nextPageToken = jobData.get(ResourceConstants.PAGE_TOKEN).asText();
+          LOG.info("Page Token for Next Job is: {}", nextPageToken);
+          if (!ResourceConstants.NULL.equalsIgnoreCase(nextPageToken)
+            && !isPreviewEnabled) {
+            nextPageJobs.add(submitJob(pluginConfig, aribaServices, pendingJob.templateName, nextPageToken));
+          }
+        }
+
+        // Jobs of the next pages are polled with the others, after the wait
+        pendingJobs.addAll(nextPageJobs);
+        if (!pendingJobs.isEmpty()) {
+          try {
+            long start = System.nanoTime();
+            TimeUnit.MINUTES.sleep(JOB_POLL_MINUTES);
+            metrics.recordMillisSince(AribaMetrics.JOB_POLL_WAIT_MS, start);
+          } catch (InterruptedException exception) {
+            throw new IOException(exception.getMessage(), exception);
+          }
+        }
+      }
+    } finally {
+      pollingExecutor.shutdownNow();
+    }
+  }
+
+  private Map<PendingJob, Future<JsonNode>> fetchJobStatuses(AribaServices aribaServices, List<PendingJob> pendingJobs,
+                                                             ExecutorService pollingExecutor) throws IOException {
+    String accessToken;
+    try {
+      accessToken = aribaServices.getAccessToken();
+    } catch (AribaException exception) {
+      throw new IOException(exception.getMessage(), exception);
+    }
+    Map<PendingJob, Future<JsonNode>> jobStatuses = new LinkedHashMap<>();
+    for (PendingJob pendingJob : pendingJobs) {
+      LOG.info("Fetching Data For Job Id: {}", pendingJob.jobId);
+      jobStatuses.put(pendingJob, pollingExecutor.submit(
+        () -> aribaServices.fetchJobStatus(accessToken, pendingJob.jobId)));
+    }
+    return jobStatuses;
+  }
+
+  private JsonNode getJobStatus(Future<JsonNode> jobStatus) throws IOException {
+    try {
+      return jobStatus.get();
+    } catch (ExecutionException exception) {
+      Throwable cause = exception.getCause();
+      throw new IOException(cause.getMessage(), cause);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new IOException(exception.getMessage(), exception);
+    }
+  }
+
+  private void writeRunProfile(Configuration conf, String runProfileDir) {
+    AribaRunProfile profile = new AribaRunProfile();
+    profile.getJobs().addAll(jobProfiles);
+    metrics.getRequestStats().drainRateLimitSamples(profile.getRateLimits());
+    try {
+      profile.writeFragment(conf, runProfileDir, "jobs");
+    } catch (IOException e) {
+      // The profile is a diagnostic aid, it must not fail the run
+      LOG.warn("Failed to write the jobs of the run profile to: {}", runProfileDir, e);
+    }
+  }
 
-    List<String> files = reader.readValue(jobData.get(ResourceConstants.FILES));
-    LOG.info("Total Number of files for job id: {} is: {}", jobId, files.size());
-    for (String fileName : files) {
-      AribaInputSplit inputSplit = new AribaInputSplit(fileName, jobId);
-      resultSplits.add(inputSplit);
+  private PendingJob submitJob(AribaPluginConfig pluginConfig, AribaServices aribaServices, String templateName,
+                               @Nullable String pageToken) throws IOException {
+    try {
+      long submittedAt = System.currentTimeMillis();
+      JsonNode createJobResponse = aribaServices.createJob(pluginConfig, pageToken, templateName);
+      PendingJob pendingJob = new PendingJob(templateName, createJobResponse.get(ResourceConstants.JOB_ID).asText(),
+                                             submittedAt);
+      jobProfiles.add(pendingJob.profile);
+      return pendingJob;
+    } catch (AribaException | InterruptedException exception) {
+      throw new IOException(exception.getMessage(), exception);
     }
+  }
+
+  /**
+   * Job created on Ariba whose result files are not yet available.
+   */
+  private static final class PendingJob {
+    private final String templateName;
+    private final String jobId;
+    private final AribaRunProfile.JobProfile profile;
 
-    LOG.info("Completed page: {} & Total number of pages are: {}",
-             jobData.get(ResourceConstants.CURRENT_PAGE), jobData.get(ResourceConstants.TOTAL_PAGES));
-    String nextPageToken = jobData.get(ResourceConstants.PAGE_TOKEN).asText();
-    LOG.info("Page Token for Next Job is: {}", nextPageToken);
-    if (!ResourceConstants.NULL.equalsIgnoreCase(nextPageToken)
-      && !isPreviewEnabled) {
-      createJob(pluginConfig, aribaServices, isPreviewEnabled, nextPageToken);
+    private PendingJob(String templateName, String jobId, long submittedAt) {
+      this.templateName = templateName;
+      this.jobId = jobId;
+      this.profile = new AribaRunProfile.JobProfile(jobId, templateName, submittedAt);
     }
   }
 
@@ -21,6 +21,7 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import javax.annotation.Nullable;
 
 /**
  * Ariba InputSlipt class for creating splits
@@ -29,12 +30,45 @@ public class AribaInputSplit extends InputSplit implements Writable {
 
   private String fileName;
   private String jobId;
+  // View template of the job, null when the source extracts a single template
+  @Nullable
+  private String templateName;
+  // Records read page by page from the synchronous view endpoint instead of a result file of a job
+  private boolean sync;
+  // Records of a sync split past which the view template is read through a job instead, 0 for no limit
+  private int syncRecordThreshold;
 
   public AribaInputSplit() { }
 
   public AribaInputSplit(String fileName, String jobId) {
+    this(fileName, jobId, null);
+  }
+
+  public AribaInputSplit(String fileName, String jobId, @Nullable String templateName) {
     this.fileName = fileName;
     this.jobId = jobId;
+    this.templateName = templateName;
+  }
+
+  /**
+   * @param templateName view template to tag the records with, null when the source extracts a single template
+   * @return split reading all the records of the view template from the synchronous view endpoint
+   */
+  public static AribaInputSplit sync(@Nullable String templateName) {
+    return sync(templateName, 0);
+  }
+
+  /**
+   * @param templateName        view template to tag the records with, null when the source extracts a single
+   *                            template
+   * @param syncRecordThreshold records past which the view template is read through a job instead, 0 for no limit
+   * @return split reading the records of the view template from the synchronous view endpoint while they are few
+   */
+  public static AribaInputSplit sync(@Nullable String templateName, int syncRecordThreshold) {
+    AribaInputSplit split = new AribaInputSplit("", "", templateName);
+    split.sync = true;
+    split.syncRecordThreshold = syncRecordThreshold;
+    return split;
   }
 
   public String getFileName() {
@@ -45,10 +79,26 @@ public class AribaInputSplit extends InputSplit implements Writable {
     return jobId;
   }
 
+  @Nullable
+  public String getTemplateName() {
+    return templateName;
+  }
+
+  public boolean isSync() {
+    return sync;
+  }
+
+  public int getSyncRecordThreshold() {
+    return syncRecordThreshold;
+  }
+
   @Override
   public void write(DataOutput dataOutput) throws IOException {
     dataOutput.writeUTF(this.fileName);
     dataOutput.writeUTF(this.jobId);
+    dataOutput.writeUTF(this.templateName == null ? "" : this.templateName);
+    dataOutput.writeBoolean(this.sync);
+    dataOutput.writeInt(this.syncRecordThreshold);
 
   }
 
@@ -56,6 +106,10 @@ public class AribaInputSplit extends InputSplit implements Writable {
   public void readFields(DataInput dataInput) throws IOException {
     this.fileName = dataInput.readUTF();
     this.jobId = dataInput.readUTF();
+    String template = dataInput.readUTF();
+    this.templateName = template.isEmpty() ? null : template;
+    this.sync = dataInput.readBoolean();
+    this.syncRecordThreshold = dataInput.readInt();
   }
 
   @Override
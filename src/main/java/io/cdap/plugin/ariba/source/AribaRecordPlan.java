@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source;
+
+import io.cdap.cdap.api.data.schema.Schema;
+
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Pre-compiled read plan for a record {@code Schema} produced by the
+ * {@code AribaSchemaGenerator}. All per-field schema resolution (nullable
+ * unwrapping, logical type lookup, nested record and array component plans) is
+ * done once when the plan is compiled, so that converting a record only walks a
+ * flat array of {@link FieldPlan}.
+ */
+final class AribaRecordPlan {
+
+  private final Schema schema;
+  private final FieldPlan[] fields;
+
+  private AribaRecordPlan(Schema schema, FieldPlan[] fields) {
+    this.schema = schema;
+    this.fields = fields;
+  }
+
+  /**
+   * Compiles the read plan for the given record schema.
+   *
+   * @param recordSchema non nullable schema of type {@code RECORD}
+   * @return {@code AribaRecordPlan}
+   */
+  static AribaRecordPlan compile(Schema recordSchema) {
+    return compile(recordSchema, false);
+  }
+
+  /**
+   * Compiles the read plan for the given record schema.
+   *
+   * @param recordSchema     non nullable schema of type {@code RECORD}
+   * @param stringDictionary whether plain string fields get an {@link AribaStringDictionary}
+   * @return {@code AribaRecordPlan}
+   */
+  static AribaRecordPlan compile(Schema recordSchema, boolean stringDictionary) {
+    List<Schema.Field> schemaFields = recordSchema.getFields();
+    FieldPlan[] fieldPlans = new FieldPlan[schemaFields == null ? 0 : schemaFields.size()];
+    for (int i = 0; i < fieldPlans.length; i++) {
+      fieldPlans[i] = new FieldPlan(schemaFields.get(i), stringDictionary);
+    }
+    return new AribaRecordPlan(recordSchema, fieldPlans);
+  }
+
+  Schema getSchema() {
+    return schema;
+  }
+
+  FieldPlan[] getFields() {
+    return fields;
+  }
+
+  /**
+   * Resolved details of a single schema field.
+   */
+  static final class FieldPlan {
+    private final String name;
+    private final Schema nonNullSchema;
+    private final boolean simpleType;
+    @Nullable
+    private final AribaRecordPlan recordPlan;
+    @Nullable
+    private final Schema componentSchema;
+    @Nullable
+    private final AribaRecordPlan componentPlan;
+    @Nullable
+    private final Schema simpleComponentSchema;
+    @Nullable
+    private final AribaStringDictionary dictionary;
+
+    private FieldPlan(Schema.Field field, boolean stringDictionary) {
+      Schema fieldSchema = field.getSchema();
+      this.name = field.getName();
+      this.nonNullSchema = fieldSchema.isNullable() ? fieldSchema.getNonNullable() : fieldSchema;
+      this.simpleType = fieldSchema.getType().isSimpleType();
+      this.recordPlan = nonNullSchema.getType() == Schema.Type.RECORD ? compile(nonNullSchema, stringDictionary)
+        : null;
+      this.componentSchema = nonNullSchema.getType() == Schema.Type.ARRAY ? nonNullSchema.getComponentSchema() : null;
+
+      Schema nonNullComponent = componentSchema == null ? null
+        : componentSchema.isNullable() ? componentSchema.getNonNullable() : componentSchema;
+      this.componentPlan = nonNullComponent != null && nonNullComponent.getType() == Schema.Type.RECORD ?
+        compile(nonNullComponent, stringDictionary) : null;
+      this.simpleComponentSchema = nonNullComponent != null && nonNullComponent.getType().isSimpleType() ?
+        nonNullComponent : null;
+      this.dictionary = stringDictionary && nonNullSchema.getType() == Schema.Type.STRING
+        && nonNullSchema.getLogicalType() == null ? new AribaStringDictionary() : null;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    Schema getNonNullSchema() {
+      return nonNullSchema;
+    }
+
+    boolean isSimpleType() {
+      return simpleType;
+    }
+
+    @Nullable
+    AribaRecordPlan getRecordPlan() {
+      return recordPlan;
+    }
+
+    @Nullable
+    Schema getComponentSchema() {
+      return componentSchema;
+    }
+
+    @Nullable
+    AribaRecordPlan getComponentPlan() {
+      return componentPlan;
+    }
+
+    /**
+     * @return non nullable component schema, if the field is an array of simple values
+     */
+    @Nullable
+    Schema getSimpleComponentSchema() {
+      return simpleComponentSchema;
+    }
+
+    @Nullable
+    AribaStringDictionary getDictionary() {
+      return dictionary;
+    }
+  }
+}
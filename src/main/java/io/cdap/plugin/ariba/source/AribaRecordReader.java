@@ -15,11 +15,19 @@
  */
 package io.cdap.plugin.ariba.source;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.ariba.source.config.AribaPluginConfig;
 import io.cdap.plugin.ariba.source.exception.AribaException;
+import io.cdap.plugin.ariba.source.metadata.AribaSchemaGenerator;
+import io.cdap.plugin.ariba.source.metrics.AribaMetrics;
+import io.cdap.plugin.ariba.source.metrics.AribaRunProfile;
+import io.cdap.plugin.ariba.source.util.ResourceConstants;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
@@ -28,9 +36,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 /**
  * A {@link AribaRecordReader} contains Hadoop Job RecordReader implementation
@@ -38,31 +52,120 @@ import java.util.ListIterator;
 public class AribaRecordReader extends RecordReader<NullWritable, StructuredRecord> {
 
   private static final Logger LOG = LoggerFactory.getLogger(AribaRecordReader.class);
+  // Job id of the run profile entries of splits read from the synchronous view endpoint
+  private static final String SYNC_JOB_ID = "sync";
   private final AribaServices aribaServices;
   private final Schema outputSchema;
+  // Tagged union the records are emitted within, set only when the source reads several view templates
+  @Nullable
+  private final Schema unionSchema;
   private final AribaStructuredTransformer transformer;
+  // Registry of the run, set from the job configuration
+  private AribaMetrics metrics = AribaMetrics.get();
   private int pos;
   private JsonNode row;
   private ListIterator<JsonNode> jsonNodeListIterator;
   private final AribaPluginConfig config;
+  // Top level fields of the output schema, only these are parsed from the result files
+  @Nullable
+  private final Set<String> projectedFields;
+  // View template of the split, set only when the source reads several view templates
+  @Nullable
+  private String templateName;
+  // Field of the union holding the records of the view template of the split
+  @Nullable
+  private String templateFieldName;
+  // Set only when a run profile is written
+  @Nullable
+  private String runProfileDir;
+  @Nullable
+  private Configuration conf;
+  private AribaRunProfile.FileProfile fileProfile;
+  private long transformNanos;
+  // Set while a split of the synchronous view endpoint has pages left
+  @Nullable
+  private String viewTemplateName;
+  @Nullable
+  private String nextPageToken;
+  // Result files left to read once a split of the synchronous view endpoint switched to a job
+  private final Deque<AribaInputSplit> jobFiles = new ArrayDeque<>();
+  // Maximum number of records read from the split, 0 if not limited
+  private final int recordLimit;
 
   public AribaRecordReader(AribaServices aribaServices, Schema outputSchema, AribaPluginConfig pluginConfig) {
+    this(aribaServices, outputSchema, pluginConfig, 0);
+  }
+
+  /**
+   * @param recordLimit maximum number of records read from the split, 0 if not limited. Pages of the synchronous
+   *                    view endpoint past the limit are not requested.
+   */
+  public AribaRecordReader(AribaServices aribaServices, Schema outputSchema, AribaPluginConfig pluginConfig,
+                           int recordLimit) {
+    this(aribaServices, outputSchema, null, pluginConfig, recordLimit);
+  }
+
+  /**
+   * @param outputSchema schema of the records of the view template of the split
+   * @param unionSchema  tagged union of the view templates the records are emitted within, null if the source reads
+   *                     a single view template
+   */
+  public AribaRecordReader(AribaServices aribaServices, Schema outputSchema, @Nullable Schema unionSchema,
+                           AribaPluginConfig pluginConfig, int recordLimit) {
+    this.recordLimit = recordLimit;
+    this.unionSchema = unionSchema;
     this.config = pluginConfig;
     this.aribaServices = aribaServices;
     this.outputSchema = outputSchema;
-    this.transformer = new AribaStructuredTransformer();
+    this.projectedFields = outputSchema == null || outputSchema.getFields() == null ? null :
+      outputSchema.getFields().stream().map(Schema.Field::getName).collect(Collectors.toSet());
+    this.transformer = new AribaStructuredTransformer(pluginConfig.isInternStringValues());
   }
 
   @Override
   public void initialize(InputSplit split, TaskAttemptContext taContext) throws IOException {
     AribaInputSplit aribaInputSplit = (AribaInputSplit) split;
+    templateName = aribaInputSplit.getTemplateName();
+    if (unionSchema != null) {
+      templateFieldName = AribaSchemaGenerator.getTemplateFieldName(templateName);
+    }
+    if (taContext != null) {
+      conf = taContext.getConfiguration();
+      runProfileDir = conf.get(ResourceConstants.RUN_PROFILE_DIR);
+      metrics = AribaMetrics.forRun(conf.get(ResourceConstants.RUN_METRICS_KEY));
+    }
+    if (aribaInputSplit.isSync()) {
+      viewTemplateName = templateName == null ? config.getViewTemplateName() : templateName;
+      fileProfile = new AribaRunProfile.FileProfile(SYNC_JOB_ID, viewTemplateName, templateName);
+      if (aribaInputSplit.getSyncRecordThreshold() > 0) {
+        readViewWithinThreshold(aribaInputSplit.getSyncRecordThreshold());
+      } else {
+        readViewPage(null);
+      }
+      return;
+    }
+    fileProfile = new AribaRunProfile.FileProfile(aribaInputSplit.getJobId(), aribaInputSplit.getFileName(),
+                                                  templateName);
+    readFile(aribaInputSplit, fileProfile);
+  }
+
+  /**
+   * Reads a result file of a job.
+   *
+   * @param aribaInputSplit split of the result file
+   * @param profile         run profile entry of the file, null if it has none
+   */
+  private void readFile(AribaInputSplit aribaInputSplit, @Nullable AribaRunProfile.FileProfile profile)
+    throws IOException {
     List<JsonNode> nodeData = new ArrayList<>();
     try {
-      JsonNode nodeRecord = aribaServices.fetchData(aribaInputSplit.getJobId(), aribaInputSplit.getFileName());
+      JsonNode nodeRecord = aribaServices.fetchData(aribaInputSplit.getJobId(), aribaInputSplit.getFileName(),
+                                                    projectedFields, profile);
       for (JsonNode records : nodeRecord) {
         nodeData.add(records);
       }
       jsonNodeListIterator = nodeData.listIterator();
+      metrics.add(AribaMetrics.RECORDS_READ, nodeData.size());
       LOG.info("Data size is: {} in file: {} and jobId: {}",
                nodeData.size(), aribaInputSplit.getFileName(), aribaInputSplit.getJobId());
       if (nodeData.isEmpty()) {
@@ -74,15 +177,118 @@ public class AribaRecordReader extends RecordReader<NullWritable, StructuredReco
     }
   }
 
+  /**
+   * Reads a page of the synchronous view endpoint, the records are returned before the next page is requested.
+   *
+   * @param pageToken token of the page, null for the first page
+   */
+  private void readViewPage(@Nullable String pageToken) throws IOException {
+    JsonNode page = fetchViewPage(pageToken);
+    List<JsonNode> nodeData = new ArrayList<>();
+    for (JsonNode record : page.path(ResourceConstants.VIEW_RECORDS)) {
+      nodeData.add(record);
+    }
+    jsonNodeListIterator = nodeData.listIterator();
+    metrics.add(AribaMetrics.RECORDS_READ, nodeData.size());
+    nextPageToken = getNextPageToken(page);
+    LOG.debug("Read {} records of view template: {}, last page: {}", nodeData.size(), viewTemplateName,
+              nextPageToken == null);
+  }
+
+  /**
+   * Reads all the pages of the synchronous view endpoint before their records are returned. Once the records
+   * exceed the threshold, the pages read are dropped and the view template is read through a job instead, so that
+   * a view template which grew since the last run is not paged through and no record is returned twice.
+   *
+   * @param threshold maximum number of records read from the synchronous view endpoint
+   */
+  private void readViewWithinThreshold(int threshold) throws IOException {
+    List<JsonNode> nodeData = new ArrayList<>();
+    String pageToken = null;
+    do {
+      JsonNode page = fetchViewPage(pageToken);
+      for (JsonNode record : page.path(ResourceConstants.VIEW_RECORDS)) {
+        nodeData.add(record);
+      }
+      if (nodeData.size() > threshold) {
+        LOG.info("View template: {} has more than {} records, reading it through a job", viewTemplateName,
+                 threshold);
+        readThroughJob();
+        return;
+      }
+      pageToken = getNextPageToken(page);
+    } while (pageToken != null);
+    jsonNodeListIterator = nodeData.listIterator();
+    metrics.add(AribaMetrics.RECORDS_READ, nodeData.size());
+  }
+
+  /**
+   * Creates the jobs of the view template, one per page of jobs, and waits for their result files, which are read
+   * by {@link #nextKeyValue()}.
+   */
+  private void readThroughJob() throws IOException {
+    ObjectReader filesReader = new ObjectMapper().readerFor(new TypeReference<List<String>>() {
+    });
+    try {
+      String pageToken = null;
+      do {
+        String jobId = aribaServices.createJob(config, pageToken, viewTemplateName)
+          .get(ResourceConstants.JOB_ID).asText();
+        JsonNode jobData = aribaServices.fetchJobStatus(aribaServices.getAccessToken(), jobId);
+        while (!isCompleted(jobData)) {
+          long start = System.nanoTime();
+          TimeUnit.MINUTES.sleep(AribaInputFormat.JOB_POLL_MINUTES);
+          metrics.recordMillisSince(AribaMetrics.JOB_POLL_WAIT_MS, start);
+          jobData = aribaServices.fetchJobStatus(aribaServices.getAccessToken(), jobId);
+        }
+        List<String> files = filesReader.readValue(jobData.get(ResourceConstants.FILES));
+        LOG.info("Total Number of files for job id: {} is: {}", jobId, files.size());
+        for (String fileName : files) {
+          jobFiles.add(new AribaInputSplit(fileName, jobId));
+        }
+        pageToken = jobData.get(ResourceConstants.PAGE_TOKEN).asText();
+      } while (!ResourceConstants.NULL.equalsIgnoreCase(pageToken));
+    } catch (AribaException | InterruptedException exception) {
+      throw new IOException(exception.getMessage(), exception);
+    }
+  }
+
+  private static boolean isCompleted(JsonNode jobData) {
+    String status = jobData.get(ResourceConstants.STATUS).asText();
+    return status.equals(ResourceConstants.COMPLETED) || status.equals(ResourceConstants.COMPLETED_ZERO_RECORDS);
+  }
+
+  private JsonNode fetchViewPage(@Nullable String pageToken) throws IOException {
+    try {
+      return aribaServices.fetchViewPage(config, viewTemplateName, pageToken, projectedFields);
+    } catch (AribaException | InterruptedException exception) {
+      throw new IOException(exception.getMessage(), exception);
+    }
+  }
+
+  @Nullable
+  private static String getNextPageToken(JsonNode page) {
+    String token = page.path(ResourceConstants.VIEW_PAGE_TOKEN).asText(null);
+    return token == null || token.isEmpty() ? null : token;
+  }
+
   @Override
-  public boolean nextKeyValue() {
-    if (jsonNodeListIterator != null && jsonNodeListIterator.hasNext()) {
-      row = jsonNodeListIterator.next();
-      pos++;
-      return true;
-    } else {
+  public boolean nextKeyValue() throws IOException {
+    if (recordLimit > 0 && pos >= recordLimit) {
       return false;
     }
+    while (jsonNodeListIterator == null || !jsonNodeListIterator.hasNext()) {
+      if (!jobFiles.isEmpty()) {
+        readFile(jobFiles.poll(), null);
+      } else if (nextPageToken == null) {
+        return false;
+      } else {
+        readViewPage(nextPageToken);
+      }
+    }
+    row = jsonNodeListIterator.next();
+    pos++;
+    return true;
   }
 
   @Override
@@ -92,7 +298,18 @@ public class AribaRecordReader extends RecordReader<NullWritable, StructuredReco
 
   @Override
   public StructuredRecord getCurrentValue() {
-    return transformer.readFields(row, outputSchema);
+    long start = System.nanoTime();
+    StructuredRecord record = transformer.readFields(row, outputSchema);
+    if (unionSchema != null) {
+      record = StructuredRecord.builder(unionSchema)
+        .set(ResourceConstants.TEMPLATE_NAME_FIELD, templateName)
+        .set(templateFieldName, record)
+        .build();
+    }
+    long elapsed = System.nanoTime() - start;
+    transformNanos += elapsed;
+    metrics.record(AribaMetrics.TRANSFORM_NS, elapsed);
+    return record;
   }
 
   @Override
@@ -102,7 +319,20 @@ public class AribaRecordReader extends RecordReader<NullWritable, StructuredReco
 
   @Override
   public void close() {
-    // No-op
+    // Statistics are kept per run in the JVM, so they cover all the splits of the run read by this executor so far
+    LOG.info("Ariba requests after reading {} records:{}", pos, metrics.getRequestStats().summary());
+    if (runProfileDir != null && conf != null) {
+      fileProfile.transformed(pos, transformNanos);
+      AribaRunProfile profile = new AribaRunProfile();
+      profile.getFiles().add(fileProfile);
+      metrics.getRequestStats().drainRateLimitSamples(profile.getRateLimits());
+      try {
+        profile.writeFragment(conf, runProfileDir, fileProfile.getJobId() + "-" + fileProfile.getFileName());
+      } catch (IOException e) {
+        // The profile is a diagnostic aid, it must not fail the run
+        LOG.warn("Failed to write the file of the run profile to: {}", runProfileDir, e);
+      }
+    }
   }
 
 }
@@ -16,15 +16,27 @@
 
 package io.cdap.plugin.ariba.source;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.gson.Gson;
+import dev.failsafe.CircuitBreaker;
+import dev.failsafe.CircuitBreakerOpenException;
 import dev.failsafe.Failsafe;
 import dev.failsafe.FailsafeException;
 import dev.failsafe.RetryPolicy;
+import dev.failsafe.function.CheckedSupplier;
 import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.ariba.source.config.AribaJobFilter;
 import io.cdap.plugin.ariba.source.config.AribaPluginConfig;
 import io.cdap.plugin.ariba.source.connector.AribaConnectorConfig;
 import io.cdap.plugin.ariba.source.exception.AribaException;
@@ -37,30 +49,60 @@ import io.cdap.plugin.ariba.source.metadata.proto.ArrayFields;
 import io.cdap.plugin.ariba.source.metadata.proto.ObjectFields;
 import io.cdap.plugin.ariba.source.metadata.proto.Properties;
 import io.cdap.plugin.ariba.source.metadata.proto.SimpleFields;
+import io.cdap.plugin.ariba.source.metrics.AribaCompressionInterceptor;
+import io.cdap.plugin.ariba.source.metrics.AribaEndpoint;
+import io.cdap.plugin.ariba.source.metrics.AribaMetrics;
+import io.cdap.plugin.ariba.source.metrics.AribaRequestInterceptor;
+import io.cdap.plugin.ariba.source.metrics.AribaRequestStats;
+import io.cdap.plugin.ariba.source.metrics.AribaRunProfile;
+import io.cdap.plugin.ariba.source.util.AribaBackoff;
+import io.cdap.plugin.ariba.source.util.AribaExecutors;
+import io.cdap.plugin.ariba.source.util.AribaJobLimiter;
+import io.cdap.plugin.ariba.source.util.AribaResumableInputStream;
 import io.cdap.plugin.ariba.source.util.AribaUtil;
 import io.cdap.plugin.ariba.source.util.ResourceConstants;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.zip.ZipInputStream;
 import javax.annotation.Nullable;
 import javax.ws.rs.core.MediaType;
@@ -79,11 +121,15 @@ public class AribaServices {
   private static final String VIEW_TEMPLATE_NAME = "viewTemplateName";
   private static final String CONTENT_TYPE = "Content-Type";
   private static final String VIEW_TEMPLATES = "viewTemplates";
+  private static final String VIEWS = "views";
   private static final String URL_PATTERN = "(api\\S*?).com";
   private static final String TOKEN_PATH_SEGMENT = "v2/oauth/token";
   private static final String TOKEN_GRANT_TYPE = "grant_type=client_credentials";
   private static final String METADATA = "metadata";
   private static final String ACCESS_TOKEN = "access_token";
+  private static final String EXPIRES_IN = "expires_in";
+  // Tokens are refreshed this long before they expire, so that a request never carries a stale token
+  private static final long TOKEN_EXPIRY_MARGIN_SECONDS = 60;
   private static final String JSON_SCHEMA = "jsonSchema";
   private static final String METADATA_PATH = "api/analytics-reporting-view/v1";
   private static final String TRUE = "true";
@@ -93,6 +139,7 @@ public class AribaServices {
   private static final String APP_JSON = "application/json; charset=utf-8";
   private static final String FILTER_EXPRESSIONS = "filterExpressions";
   private static final String UPDATE_DATE = "updatedDate";
+  private static final String FILTERS = "filters";
   private static final String RATE_LIMIT_DAY = "X-RateLimit-Remaining-Day";
   private static final String RATE_LIMIT_HOUR = "X-RateLimit-Remaining-Hour";
   private static final String RATE_LIMIT_MINUTE = "X-RateLimit-Remaining-Minute";
@@ -101,15 +148,63 @@ public class AribaServices {
   private static final String NAME = "name";
   private static final String TYPE = "type";
   private static final String UTC = "UTC";
+  private static final String RANGE = "Range";
+  private static final String IF_RANGE = "If-Range";
+  private static final String CONTENT_RANGE = "Content-Range";
+  private static final String ACCEPT_RANGES = "Accept-Ranges";
+  private static final String ETAG = "ETag";
+  private static final String LAST_MODIFIED = "Last-Modified";
+  private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
   private static final Logger LOG = LoggerFactory.getLogger(AribaServices.class);
+  // Consecutive 5xx or 429 responses opening the circuit, and the time it stays open
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+  private static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+  private static final Duration CIRCUIT_OPEN_DELAY = Duration.ofSeconds(30);
+  // Asynchronous calls in flight per host, the OkHttp default of 5 would queue concurrent polls and their hedges
+  private static final int MAX_ASYNC_REQUESTS_PER_HOST = 32;
+  // Wait for a status response before a second request is sent, the p95 latency once known
+  private static final double HEDGE_PERCENTILE = 95;
+  private static final long DEFAULT_HEDGE_DELAY_MILLIS = 2000;
+  private static final long MIN_HEDGE_DELAY_MILLIS = 500;
+  // Hedges per request of an endpoint family, and min remaining calls per second and minute to send one
+  private static final double MAX_HEDGE_RATIO = 0.1;
+  private static final int MIN_HEDGE_LIMIT_REMAINING = 2;
+  // Times a result file failing midway is resumed from the byte it stopped at, before it is downloaded again
+  private static final int MAX_DOWNLOAD_RESUMES = 3;
+  // Clients shared by the tasks of the JVM, per connection
+  private static final int MAX_SHARED_CONNECTIONS = 32;
+  private static final int MAX_CACHED_SCHEMAS = 256;
+  private static final long SCHEMA_CACHE_MINUTES = 15;
+  // Schemas of browsed view templates built ahead of their selection, one started per second at most and only
+  // while the per second and per minute limits are not almost exhausted
+  private static final double PREFETCH_SCHEMAS_PER_SECOND = 1;
+  private static final int MIN_PREFETCH_LIMIT_REMAINING = 5;
+  // Started by the connection browser, which has no run and so no virtual thread setting
+  private static final ExecutorService PREFETCH_EXECUTOR =
+    AribaExecutors.newBlockingIoExecutor("ariba-schema-prefetch", false, 2);
+  // Keyed on a hash of the connection fields, so that no secret is held in the key. Removed clients are not shut
+  // down as instances may still use them, their idle threads and connections time out once no longer referenced.
+  private static final Cache<String, SharedConnection> SHARED_CONNECTIONS = CacheBuilder.newBuilder()
+    .maximumSize(MAX_SHARED_CONNECTIONS)
+    .expireAfterAccess(1, TimeUnit.HOURS)
+    .build();
   private final AribaConnectorConfig pluginConfig;
   private final ObjectMapper objectMapper = new ObjectMapper();
   private final Gson gson = new Gson();
-  private int availableLimit;
-  boolean isDayLimitExhausted;
-  boolean isHourLimitExhausted;
-  boolean isMinuteLimitExhausted;
-  boolean isSecondsLimitExhausted;
+  private final SharedConnection connection;
+  // filterExpressions of the view templates, fetched once per template
+  private final Map<String, JsonNode> filterExpressions;
+  // Output schemas of the view templates, rebuilt once expired so that changed view templates are picked up
+  private final Cache<String, Schema> outputSchemas;
+  private final RateLimiter prefetchRateLimiter;
+  // View templates whose schema is queued or being built by a prefetch
+  private final Set<String> prefetchingSchemas;
+  private volatile int availableLimit;
+  // Limit found exhausted by the last call of isApiLimitExhausted, calls decide on their own response only
+  volatile boolean isDayLimitExhausted;
+  volatile boolean isHourLimitExhausted;
+  volatile boolean isMinuteLimitExhausted;
+  volatile boolean isSecondsLimitExhausted;
 
   private final Integer initialRetryDuration;
   private final Integer maxRetryDuration;
@@ -122,16 +217,138 @@ public class AribaServices {
    * If false, then the service call will not be retried.
    */
   private final boolean retryRequired;
+  // Built once per connection and shared by the instances using it, so that connections are reused
+  private final OkHttpClient httpClient;
+  private final RetryPolicy<Object> retryPolicy;
+  private final CircuitBreaker<Object> circuitBreaker;
+  // Registry of the run, every request of this instance is tagged with it
+  private final AribaMetrics metrics;
+  // epoch millis after which no call is started, 0 when the run has no deadline
+  private volatile long runDeadlineMillis;
+  // percentile of the download times after which a file is requested a second time, 0 for no hedging
+  private volatile double downloadHedgePercentile;
 
   public AribaServices(AribaConnectorConfig pluginConfig, Integer maxRetryCount,
                        Integer initialRetryDuration, Integer maxRetryDuration, Integer retryMultiplier,
                        boolean retryRequired) {
+    this(pluginConfig, getSharedConnection(pluginConfig), AribaMetrics.get(), maxRetryCount, initialRetryDuration,
+         maxRetryDuration, retryMultiplier, retryRequired);
+  }
+
+  private AribaServices(AribaConnectorConfig pluginConfig, SharedConnection connection, AribaMetrics metrics,
+                        Integer maxRetryCount, Integer initialRetryDuration, Integer maxRetryDuration,
+                        Integer retryMultiplier, boolean retryRequired) {
     this.pluginConfig = pluginConfig;
+    this.metrics = metrics;
+    this.connection = connection;
     this.maxRetryCount = maxRetryCount;
     this.initialRetryDuration = initialRetryDuration;
     this.maxRetryDuration = maxRetryDuration;
     this.retryMultiplier = retryMultiplier;
     this.retryRequired = retryRequired;
+    this.httpClient = connection.httpClient;
+    this.circuitBreaker = connection.circuitBreaker;
+    this.filterExpressions = connection.filterExpressions;
+    this.outputSchemas = connection.outputSchemas;
+    this.prefetchRateLimiter = connection.prefetchRateLimiter;
+    this.prefetchingSchemas = connection.prefetchingSchemas;
+    this.retryPolicy = buildRetryPolicy();
+  }
+
+  /**
+   * Returns an instance using the client shared by all the users of the JVM with the same connection, so that
+   * the pooled connections, the access token and the state of the circuit breaker are shared by all the tasks of
+   * an executor. The retry settings are those of the returned instance only. Instances are thread-safe.
+   *
+   * @param connection           connection to Ariba
+   * @param maxRetryCount        max retries of a call
+   * @param initialRetryDuration first retry delay in seconds
+   * @param maxRetryDuration     max retry delay in seconds
+   * @param retryMultiplier      growth of the retry delay
+   * @param retryRequired        whether calls are retried
+   * @return shared {@code AribaServices}
+   */
+  public static AribaServices getShared(AribaConnectorConfig connection, int maxRetryCount, int initialRetryDuration,
+                                        int maxRetryDuration, int retryMultiplier, boolean retryRequired) {
+    return getShared(connection, maxRetryCount, initialRetryDuration, maxRetryDuration, retryMultiplier,
+                     retryRequired, 0, 0, AribaMetrics.get());
+  }
+
+  /**
+   * Returns an instance of a run, using the client shared by all the tasks of the JVM.
+   *
+   * @param pluginConfig      plugin config of the run
+   * @param retryRequired     whether calls are retried
+   * @param runDeadlineMillis epoch millis of the run deadline, 0 for no deadline
+   * @param metrics           registry of the run the calls are recorded into
+   * @return shared {@code AribaServices}
+   * @see #getShared(AribaConnectorConfig, int, int, int, int, boolean)
+   */
+  public static AribaServices getShared(AribaPluginConfig pluginConfig, boolean retryRequired,
+                                        long runDeadlineMillis, AribaMetrics metrics) {
+    return getShared(pluginConfig.getConnection(), pluginConfig.getMaxRetryCount(),
+                     pluginConfig.getInitialRetryDuration(), pluginConfig.getMaxRetryDuration(),
+                     pluginConfig.getRetryMultiplier(), retryRequired, runDeadlineMillis,
+                     pluginConfig.getDownloadHedgePercentile(), metrics);
+  }
+
+  private static AribaServices getShared(AribaConnectorConfig connection, int maxRetryCount,
+                                         int initialRetryDuration, int maxRetryDuration, int retryMultiplier,
+                                         boolean retryRequired, long runDeadlineMillis,
+                                         double downloadHedgePercentile, AribaMetrics metrics) {
+    AribaServices services = new AribaServices(connection, getSharedConnection(connection), metrics, maxRetryCount,
+                                               initialRetryDuration, maxRetryDuration, retryMultiplier,
+                                               retryRequired);
+    services.setRunDeadline(runDeadlineMillis);
+    services.setDownloadHedgePercentile(downloadHedgePercentile);
+    return services;
+  }
+
+  private static SharedConnection getSharedConnection(AribaConnectorConfig connection) {
+    // Only the connection is part of the key, the run settings stay with the instances
+    Hasher key = Hashing.sha256().newHasher();
+    for (Object field : Arrays.asList(
+      connection.getBaseURL(), connection.getTokenURL(), connection.getRealm(), connection.getSystemType(),
+      connection.getClientId(), connection.getClientSecret(), connection.getApiKey(),
+      connection.getConnectTimeout(), connection.getTokenTimeout(), connection.getMetadataTimeout(),
+      connection.getPollTimeout(), connection.getDownloadTimeout())) {
+      key.putUnencodedChars(String.valueOf(field)).putChar('\0');
+    }
+    try {
+      return SHARED_CONNECTIONS.get(key.hash().toString(), () -> new SharedConnection(connection));
+    } catch (ExecutionException e) {
+      // the constructor throws no checked exception
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  @VisibleForTesting
+  static void invalidateSharedConnections() {
+    SHARED_CONNECTIONS.invalidateAll();
+  }
+
+  @VisibleForTesting
+  OkHttpClient getHttpClient() {
+    return httpClient;
+  }
+
+  /**
+   * Sets the deadline of the run. Calls are not started after it, and calls in flight are cut at it.
+   *
+   * @param runDeadlineMillis epoch millis of the deadline, 0 for no deadline
+   */
+  public void setRunDeadline(long runDeadlineMillis) {
+    this.runDeadlineMillis = runDeadlineMillis;
+  }
+
+  /**
+   * Enables hedged downloads: a result file still downloading after the given percentile of the download times
+   * of the previous files is requested a second time, the first complete download is used.
+   *
+   * @param downloadHedgePercentile percentile between 0 and 100, 0 for no hedging
+   */
+  public void setDownloadHedgePercentile(double downloadHedgePercentile) {
+    this.downloadHedgePercentile = downloadHedgePercentile;
   }
 
   /**
@@ -220,17 +437,42 @@ public class AribaServices {
   }
 
   /**
-   * Calls to check Ariba Connection.
+   * Calls to check Ariba Connection. Tokens having an expiry are cached and reused by all calls made through
+   * the instances sharing the connection until shortly before they expire.
    */
   public String getAccessToken() throws AribaException, IOException {
+    CachedToken token = connection.cachedToken;
+    if (token != null && System.currentTimeMillis() < token.validUntilMillis) {
+      return token.value;
+    }
+    // One refresh for all the tasks sharing the connection
+    synchronized (connection.tokenLock) {
+      token = connection.cachedToken;
+      if (token != null && System.currentTimeMillis() < token.validUntilMillis) {
+        return token.value;
+      }
+      return fetchAccessToken();
+    }
+  }
+
+  private String fetchAccessToken() throws AribaException, IOException {
     LOG.trace("Initiating Ariba connection for access token");
+    long start = System.nanoTime();
     AribaResponseContainer responseContainer = callAribaForToken(generateTokenURL());
+    metrics.recordMillisSince(AribaMetrics.TOKEN_FETCH_MS, start);
     try (InputStream responseStream = responseContainer.getResponseBody()) {
       if (responseContainer.getHttpStatusCode() != HttpURLConnection.HTTP_OK) {
         String errMsg = ResourceConstants.ERR_FETCHING_TOKEN.getMsgForKey();
         throw new AribaException(errMsg, responseContainer.getHttpStatusCode());
       }
-      return objectMapper.readTree(responseStream).get(ACCESS_TOKEN).asText();
+      JsonNode tokenNode = objectMapper.readTree(responseStream);
+      String accessToken = tokenNode.get(ACCESS_TOKEN).asText();
+      JsonNode expiresIn = tokenNode.get(EXPIRES_IN);
+      if (expiresIn != null && expiresIn.asLong() > TOKEN_EXPIRY_MARGIN_SECONDS) {
+        connection.cachedToken = new CachedToken(accessToken, System.currentTimeMillis() +
+          TimeUnit.SECONDS.toMillis(expiresIn.asLong() - TOKEN_EXPIRY_MARGIN_SECONDS));
+      }
+      return accessToken;
     }
   }
 
@@ -273,13 +515,132 @@ public class AribaServices {
    * @return {@code AribaResponseContainer}
    */
   public AribaResponseContainer tokenResponse(Response res) throws IOException {
+    AribaResponseContainer.Builder builder = AribaResponseContainer.builder()
+      .httpStatusCode(res.code())
+      .httpStatusMsg(res.message());
+    try (ResponseBody body = res.body()) {
+      if (body != null) {
+        // Small JSON bodies are read into pooled segments rather than a new array per call
+        Buffer buffer = new Buffer();
+        body.source().readAll(buffer);
+        builder.bufferedBody(buffer);
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Prepares a {@code AribaResponseContainer} streaming the body of the given open {@code Response}. The body is
+   * read once, directly from the connection, and the container must be closed to release the connection.
+   *
+   * @param res {@code Response}
+   * @return streaming {@code AribaResponseContainer}
+   */
+  public AribaResponseContainer streamingResponse(Response res) {
+    ResponseBody body = res.body();
+    if (body == null) {
+      return AribaResponseContainer.builder().httpStatusCode(res.code()).httpStatusMsg(res.message()).build();
+    }
+    return AribaResponseContainer.builder()
+      .httpStatusCode(res.code())
+      .httpStatusMsg(res.message())
+      .streamingBody(body.byteStream())
+      .build();
+  }
+
+  /**
+   * Prepares a streaming {@code AribaResponseContainer} of a result file, which continues with a range request
+   * for the remainder when reading the body fails midway. Resumed only if the remainder can be told to be of the
+   * same file, by its ETag, last modified date or length.
+   *
+   * @param req file request
+   * @param res open {@code Response} of the request
+   * @return streaming {@code AribaResponseContainer}
+   */
+  private AribaResponseContainer resumableResponse(Request req, Response res) {
+    ResponseBody body = res.body();
+    String etag = res.header(ETAG);
+    String lastModified = res.header(LAST_MODIFIED);
+    if (body == null || "none".equalsIgnoreCase(res.header(ACCEPT_RANGES)) ||
+      (etag == null && lastModified == null && body.contentLength() < 0)) {
+      return streamingResponse(res);
+    }
+    long length = body.contentLength();
     return AribaResponseContainer.builder()
       .httpStatusCode(res.code())
       .httpStatusMsg(res.message())
-      .responseStream(res.body() != null ? Objects.requireNonNull(res.body()).bytes() : null)
+      .streamingBody(new AribaResumableInputStream(body.byteStream(), MAX_DOWNLOAD_RESUMES,
+                                                   offset -> openRemainder(req, etag, lastModified, length, offset)))
       .build();
   }
 
+  /**
+   * Requests a result file from the given byte on. The {@code If-Range} validator makes Ariba send the complete
+   * file instead if it changed, which is then discarded like a remainder not matching the expected range.
+   *
+   * @param req          file request
+   * @param etag         ETag of the file, null if not known
+   * @param lastModified last modified date of the file, null if not known
+   * @param length       length of the file, -1 if not known
+   * @param offset       first byte of the remainder
+   * @return stream of the remainder, null if Ariba did not send it
+   * @throws IOException if the remainder could not be requested
+   */
+  @Nullable
+  private InputStream openRemainder(Request req, @Nullable String etag, @Nullable String lastModified, long length,
+                                    long offset) throws IOException {
+    Request.Builder range = req.newBuilder().header(RANGE, "bytes=" + offset + "-");
+    if (etag != null || lastModified != null) {
+      range.header(IF_RANGE, etag != null ? etag : lastModified);
+    }
+    Response response;
+    try {
+      // the token of the first request may have expired during a long download
+      range.header(AUTHORIZATION, getAuthenticationKey(getAccessToken()));
+      Request rangeRequest = range.build();
+      response = executeWithRetries(() -> executeRetryableRequest(rangeRequest, false));
+    } catch (AribaException e) {
+      throw new IOException(e.getMessage(), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+    }
+    String remainderEtag = response.header(ETAG);
+    if (response.code() != HttpURLConnection.HTTP_PARTIAL || response.body() == null ||
+      !isRangeOf(response.header(CONTENT_RANGE), offset, length) ||
+      (etag != null && remainderEtag != null && !etag.equals(remainderEtag))) {
+      LOG.info("Ariba did not send the remainder of {} from byte {}, status code {}.", req.url().encodedPath(),
+               offset, response.code());
+      response.close();
+      return null;
+    }
+    metrics.increment(AribaMetrics.DOWNLOAD_RESUMES);
+    LOG.info("Resumed the download of {} at byte {}.", req.url().encodedPath(), offset);
+    return response.body().byteStream();
+  }
+
+  /**
+   * @param contentRange {@code Content-Range} header, e.g. {@code bytes 100-999/1000}
+   * @param offset       first byte requested
+   * @param length       length of the file, -1 if not known
+   * @return true if the header covers the file from the offset to its end
+   */
+  @VisibleForTesting
+  static boolean isRangeOf(@Nullable String contentRange, long offset, long length) {
+    if (contentRange == null) {
+      return false;
+    }
+    Matcher matcher = CONTENT_RANGE_PATTERN.matcher(contentRange.trim());
+    if (!matcher.matches() || Long.parseLong(matcher.group(1)) != offset) {
+      return false;
+    }
+    if (length < 0) {
+      return true;
+    }
+    String total = matcher.group(3);
+    return Long.parseLong(matcher.group(2)) == length - 1 && ("*".equals(total) || Long.parseLong(total) == length);
+  }
+
   /**
    * Make an HTTP/S call to the given URL for token.
    *
@@ -289,26 +650,108 @@ public class AribaServices {
    */
   @VisibleForTesting
   Response httpAribaTokenCall(URL endpoint) throws IOException {
-    OkHttpClient enhancedOkHttpClient = getConfiguredClient().build();
     Request req = buildTokenRequest(endpoint);
     // No API limit on this call
-    return enhancedOkHttpClient.newCall(req).execute();
+    return newCall(req).execute();
   }
 
   /**
    * Builds the {@code OkHttpClient.Builder} with following optimized configuration parameters.
    * <p>
-   * Connection Timeout in seconds: 300
+   * Connection Timeout in seconds: from the connection, 30 by default
    * Read Timeout in seconds: 300
    * Write Timeout in seconds: 300
+   * <p>
+   * The read and write timeouts only bound the time between two packets, the time of a complete call is
+   * bounded per endpoint by {@link #newCall(Request)}.
+   * JSON responses are requested gzip or deflate compressed and decompressed while they are parsed.
    *
    * @return {@code OkHttpClient.Builder}
    */
-  private OkHttpClient.Builder getConfiguredClient() {
+  private static OkHttpClient.Builder getConfiguredClient(AribaConnectorConfig pluginConfig, AribaMetrics metrics) {
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequestsPerHost(MAX_ASYNC_REQUESTS_PER_HOST);
     return new OkHttpClient.Builder()
-      .readTimeout(300, TimeUnit.SECONDS)
-      .writeTimeout(300, TimeUnit.SECONDS)
-      .connectTimeout(300, TimeUnit.SECONDS);
+      .dispatcher(dispatcher)
+      // Every read and write waits at most the timeout of the endpoint, so that a stalled result file fails midway
+      // and is resumed instead of waiting out the run
+      .addInterceptor(chain -> {
+        int timeout = getTimeout(pluginConfig, AribaEndpoint.of(chain.request().url().encodedPath()));
+        return chain.withReadTimeout(timeout, TimeUnit.SECONDS)
+          .withWriteTimeout(timeout, TimeUnit.SECONDS)
+          .proceed(chain.request());
+      })
+      .addInterceptor(new AribaRequestInterceptor(metrics))
+      .addNetworkInterceptor(new AribaCompressionInterceptor(metrics))
+      .connectTimeout(pluginConfig.getConnectTimeout(), TimeUnit.SECONDS);
+  }
+
+  /**
+   * Creates a call for the given request, bounded by the timeout of its endpoint and by the deadline of the run.
+   * Result files have no call timeout, as their body is parsed while it arrives: the download timeout bounds the
+   * wait for each read of the body instead.
+   *
+   * @param req request
+   * @return {@code Call}
+   */
+  @VisibleForTesting
+  Call newCall(Request req) {
+    Call call = httpClient.newCall(req.newBuilder().tag(AribaMetrics.class, metrics).build());
+    AribaEndpoint endpoint = AribaEndpoint.of(req.url().encodedPath());
+    long timeoutMillis = endpoint == AribaEndpoint.FILES ? 0 : TimeUnit.SECONDS.toMillis(getCallTimeout(endpoint));
+    if (runDeadlineMillis > 0) {
+      long remainingMillis = Math.max(1, runDeadlineMillis - System.currentTimeMillis());
+      timeoutMillis = timeoutMillis == 0 ? remainingMillis : Math.min(timeoutMillis, remainingMillis);
+    }
+    call.timeout().timeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    return call;
+  }
+
+  /**
+   * @param endpoint endpoint family of the call
+   * @return time in seconds for a complete call to the endpoint, or for each read of a result file
+   */
+  @VisibleForTesting
+  int getCallTimeout(AribaEndpoint endpoint) {
+    return getTimeout(pluginConfig, endpoint);
+  }
+
+  private static int getTimeout(AribaConnectorConfig connection, AribaEndpoint endpoint) {
+    switch (endpoint) {
+      case TOKEN:
+        return connection.getTokenTimeout();
+      case METADATA:
+      case VIEW_TEMPLATES:
+      case VIEWS:
+        return connection.getMetadataTimeout();
+      case JOBS:
+      case JOB_STATUS:
+        return connection.getPollTimeout();
+      default:
+        return connection.getDownloadTimeout();
+    }
+  }
+
+  /**
+   * Fails when the deadline of the run has passed. Not retried, the run is over.
+   */
+  private void checkRunDeadline() throws AribaException {
+    if (runDeadlineMillis > 0 && System.currentTimeMillis() >= runDeadlineMillis) {
+      throw new AribaException(ResourceConstants.ERR_RUN_DEADLINE_EXCEEDED.getMsgForKey(),
+                               ResourceConstants.DEFAULT_CODE);
+    }
+  }
+
+  /**
+   * Converts a timed out call to a retryable failure. The connection of a timed out call is not reused, so the
+   * retry runs on a fresh connection.
+   */
+  private Exception toRetryable(InterruptedIOException e, Request req) {
+    if (Thread.currentThread().isInterrupted()) {
+      return e;
+    }
+    LOG.warn("Ariba call to {} timed out.", req.url().encodedPath(), e);
+    return new AribaRetryableException(ResourceConstants.ERR_CALL_TIMEOUT.getMsgForKey(req.url().encodedPath()), e);
   }
 
   /**
@@ -350,6 +793,66 @@ public class AribaServices {
     return schemaGenerator.buildSchema();
   }
 
+  /**
+   * Returns the output schema of the view template, built at most once per
+   * {@value #SCHEMA_CACHE_MINUTES} minutes for all the calls made through this instance.
+   *
+   * @param templateName view template name
+   * @return output schema of the view template
+   */
+  public Schema getOutputSchema(String templateName) throws IOException, AribaException, InterruptedException {
+    try {
+      // A call for a schema being built, by a prefetch or another call, waits for it instead of building it again
+      return outputSchemas.get(templateName, () -> buildOutputSchema(getAccessToken(), templateName));
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof AribaException) {
+        throw (AribaException) cause;
+      }
+      if (cause instanceof InterruptedException) {
+        throw (InterruptedException) cause;
+      }
+      throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+  }
+
+  /**
+   * Builds the output schemas of the view templates in the background, so that {@link #getOutputSchema(String)}
+   * returns them without calling Ariba. View templates whose schema is cached or already queued are skipped.
+   *
+   * @param templateNames view template names
+   */
+  public void prefetchOutputSchemas(List<String> templateNames) {
+    for (String templateName : templateNames) {
+      if (outputSchemas.getIfPresent(templateName) != null || !prefetchingSchemas.add(templateName)) {
+        continue;
+      }
+      PREFETCH_EXECUTOR.execute(() -> {
+        try {
+          prefetchOutputSchema(templateName);
+        } finally {
+          prefetchingSchemas.remove(templateName);
+        }
+      });
+    }
+  }
+
+  private void prefetchOutputSchema(String templateName) {
+    prefetchRateLimiter.acquire();
+    if (!metrics.getRequestStats().isShortTermLimitAvailable(MIN_PREFETCH_LIMIT_REMAINING)) {
+      // The calls left are kept for the view template actually selected
+      LOG.debug("Schema of view template: {} not prefetched, the API limit is almost exhausted", templateName);
+      return;
+    }
+    try {
+      getOutputSchema(templateName);
+    } catch (IOException | AribaException | RuntimeException e) {
+      LOG.debug("Failed to prefetch the schema of view template: {}", templateName, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   /**
    * Fetch metadata from Ariba.
    *
@@ -386,13 +889,24 @@ public class AribaServices {
   public JsonNode createJob(AribaPluginConfig aribaPluginConfig, @Nullable String pageToken, String templateName)
     throws AribaException, IOException, InterruptedException {
     Request req = buildJobRequest(jobBuilder(pageToken).build().url(), aribaPluginConfig, templateName);
+    // Paced across all the runs of the connection, so that their jobs are not created in a burst
+    connection.jobLimiter.acquire();
+    long start = System.nanoTime();
     Response response = executeRequest(req);
-    AribaResponseContainer responseContainer = tokenResponse(response);
-    InputStream responseStream = responseContainer.getResponseBody();
-    if (responseContainer.getHttpStatusCode() == HttpURLConnection.HTTP_OK) {
-      availableLimit = Integer.parseInt(Objects.requireNonNull(response.header(RATE_LIMIT_DAY)));
-      LOG.info("Available limit from Create Job API: {}", availableLimit);
-      return objectMapper.readTree(responseStream);
+    metrics.recordMillisSince(AribaMetrics.JOB_CREATE_MS, start);
+    connection.jobLimiter.update(getRemainingLimit(response, RATE_LIMIT_SECOND),
+                                 getRemainingLimit(response, RATE_LIMIT_MINUTE),
+                                 getRemainingLimit(response, RATE_LIMIT_HOUR));
+    try (AribaResponseContainer responseContainer = tokenResponse(response)) {
+      InputStream responseStream = responseContainer.getResponseBody();
+      if (responseContainer.getHttpStatusCode() == HttpURLConnection.HTTP_OK) {
+        int remainingDay = getRemainingLimit(response, RATE_LIMIT_DAY);
+        if (remainingDay != Integer.MAX_VALUE) {
+          availableLimit = remainingDay;
+        }
+        LOG.info("Available limit from Create Job API: {}", availableLimit);
+        return objectMapper.readTree(responseStream);
+      }
     }
     throw new AribaException(response.message(), response.code());
   }
@@ -408,11 +922,16 @@ public class AribaServices {
     Request req = buildFetchRequest(url, accessToken);
     Response response = null;
     try {
-      response = executeRequest(req);
-      AribaResponseContainer responseContainer = tokenResponse(response);
-      if (responseContainer.getHttpStatusCode() == HttpURLConnection.HTTP_OK) {
-        InputStream responseStream = responseContainer.getResponseBody();
-        JsonNode responseNode = objectMapper.readTree(responseStream);
+      long start = System.nanoTime();
+      response = executeHedgedRequest(req, AribaEndpoint.JOB_STATUS);
+      metrics.recordMillisSince(AribaMetrics.JOB_POLL_MS, start);
+      JsonNode responseNode = null;
+      try (AribaResponseContainer responseContainer = tokenResponse(response)) {
+        if (responseContainer.getHttpStatusCode() == HttpURLConnection.HTTP_OK) {
+          responseNode = objectMapper.readTree(responseContainer.getResponseBody());
+        }
+      }
+      if (responseNode != null) {
         String status = responseNode.get(ResourceConstants.STATUS).asText();
         if (status.equals(ResourceConstants.ERROR_MAX_REACHED) || status.equals(ResourceConstants.ERROR_INTERNAL) ||
           status.equals(ResourceConstants.ERROR_INVALID_DATE_RANGE)) {
@@ -492,7 +1011,9 @@ public class AribaServices {
   @VisibleForTesting
   public AribaResponseContainer fetchAribaResponse(URL endpoint, String accessToken)
     throws IOException, AribaException, InterruptedException {
+    long start = System.nanoTime();
     Response res = httpAribaCall(endpoint, accessToken);
+    metrics.recordMillisSince(AribaMetrics.METADATA_CALL_MS, start);
     return aribaResponse(res);
   }
 
@@ -546,6 +1067,24 @@ public class AribaServices {
       .addQueryParameter(ResourceConstants.PAGE_TOKEN, pageToken);
   }
 
+  /**
+   * Create URL for a page of the synchronous view endpoint
+   *
+   * @return HttpUrl.Builder
+   */
+  @VisibleForTesting
+  HttpUrl.Builder viewBuilder(String templateName, @Nullable String pageToken) {
+    return Objects.requireNonNull(HttpUrl.parse(pluginConfig.getBaseURL()))
+      .newBuilder()
+      .addPathSegments(METADATA_PATH)
+      .addPathSegments(pluginConfig.getSystemType())
+      .addPathSegments(VIEWS)
+      .addPathSegment(templateName)
+      .addQueryParameter(ResourceConstants.PRODUCT, ResourceConstants.ANALYTICS)
+      .addQueryParameter(ResourceConstants.REALM, pluginConfig.getRealm())
+      .addQueryParameter(ResourceConstants.PAGE_TOKEN, pageToken);
+  }
+
   /**
    * Builds the Authentication key with the help of access token.
    *
@@ -562,11 +1101,7 @@ public class AribaServices {
    * @return {@code AribaResponseContainer}
    */
   private AribaResponseContainer aribaResponse(Response res) throws IOException {
-    return AribaResponseContainer.builder()
-      .httpStatusCode(res.code())
-      .httpStatusMsg(res.message())
-      .responseStream(res.body() != null ? Objects.requireNonNull(res.body()).bytes() : null)
-      .build();
+    return tokenResponse(res);
   }
 
   /**
@@ -637,19 +1172,154 @@ public class AribaServices {
    * @throws IOException          IOException
    */
   public Response executeRequest(Request req) throws AribaException, InterruptedException, IOException {
-    int actualMaxRetryCount = retryRequired ? maxRetryCount : 0;
-    RetryPolicy<Object> retryPolicy = RetryPolicy.builder()
-      .handle(AribaRetryableException.class)
-      .withBackoff(initialRetryDuration, maxRetryDuration, ChronoUnit.SECONDS, retryMultiplier)
-      .withMaxRetries(actualMaxRetryCount)
-      .onRetry(event -> LOG.info("Retrying Ariba call with plugin. Retry count: " + event.getAttemptCount()))
-      .onSuccess(event -> LOG.debug("Ariba plugin call has been executed successfully."))
-      .onRetriesExceeded(event -> LOG.error("Retry limit for the Ariba plugin has been exceeded.",
-        event.getException()))
-      .build();
+    return executeWithRetries(() -> executeRetryableRequest(req, false));
+  }
+
+  /**
+   * Executes the given idempotent Ariba request with a hedge: if no response arrived after the p95 latency of the
+   * endpoint, a second identical request is sent and the first response of either is used, the other request is
+   * cancelled. Cuts the tail latency of calls stuck on a slow node. Not hedged when retries are disabled.
+   *
+   * @param req      idempotent request
+   * @param endpoint endpoint family of the request
+   * @return Response
+   */
+  @VisibleForTesting
+  Response executeHedgedRequest(Request req, AribaEndpoint endpoint)
+    throws AribaException, InterruptedException, IOException {
+    if (!isRetryEnabled()) {
+      return executeRequest(req);
+    }
+    long percentile = metrics.getRequestStats().getLatencyPercentile(endpoint, HEDGE_PERCENTILE);
+    long hedgeDelay = percentile == 0 ? DEFAULT_HEDGE_DELAY_MILLIS : Math.max(MIN_HEDGE_DELAY_MILLIS, percentile);
+    return hedge(() -> executeRequestAsync(req), hedgeDelay, req, endpoint, Response::close);
+  }
 
+  /**
+   * Sends a request and, if it did not complete within the hedge delay and the hedge budget of the endpoint
+   * allows it, a second identical one. The first successful result is returned, the other request is cancelled.
+   *
+   * @param send       sends the request
+   * @param hedgeDelay wait in millis before the second request is sent
+   * @param req        request, for logging
+   * @param endpoint   endpoint family of the request
+   * @param discard    releases a result completing after the first one
+   * @return first successful result, or the last failure if both requests failed
+   */
+  private <T> T hedge(Supplier<CompletableFuture<T>> send, long hedgeDelay, Request req, AribaEndpoint endpoint,
+                      Consumer<T> discard) throws AribaException, InterruptedException, IOException {
+    CompletableFuture<T> primary = send.get();
+    try {
+      return await(primary, hedgeDelay);
+    } catch (TimeoutException e) {
+      // still running, hedge below
+    }
+    if (!metrics.getRequestStats().tryHedge(endpoint, MAX_HEDGE_RATIO, MIN_HEDGE_LIMIT_REMAINING)) {
+      return awaitCompletion(primary);
+    }
+    metrics.increment(AribaMetrics.HEDGED_REQUESTS);
+    LOG.debug("Hedging Ariba request {} after {} ms", req.url().encodedPath(), hedgeDelay);
+    CompletableFuture<T> hedge = send.get();
+    CompletableFuture<T> first = new CompletableFuture<>();
+    BiConsumer<T, Throwable> complete = (result, failure) -> {
+      if (failure == null) {
+        if (!first.complete(result)) {
+          discard.accept(result);
+        }
+      } else if (primary.isCompletedExceptionally() && hedge.isCompletedExceptionally()) {
+        first.completeExceptionally(failure);
+      }
+    };
+    primary.whenComplete(complete);
+    hedge.whenComplete(complete);
     try {
-      return Failsafe.with(retryPolicy).get(() -> executeRetryableRequest(req, actualMaxRetryCount > 0));
+      return awaitCompletion(first);
+    } finally {
+      primary.cancel(true);
+      hedge.cancel(true);
+    }
+  }
+
+  private <T> T awaitCompletion(CompletableFuture<T> future) throws AribaException, InterruptedException,
+    IOException {
+    try {
+      return await(future, 0);
+    } catch (TimeoutException e) {
+      // no timeout given
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Waits for the result of an asynchronous request, rethrowing its failure as {@link #executeRequest(Request)}.
+   *
+   * @param future        future result
+   * @param timeoutMillis max wait, 0 to wait until the future completes
+   */
+  private <T> T await(CompletableFuture<T> future, long timeoutMillis)
+    throws AribaException, InterruptedException, IOException, TimeoutException {
+    try {
+      return timeoutMillis > 0 ? future.get(timeoutMillis, TimeUnit.MILLISECONDS) : future.get();
+    } catch (ExecutionException e) {
+      Throwable t = e.getCause();
+      if (t instanceof FailsafeException && t.getCause() != null) {
+        t = t.getCause();
+      }
+      if (t instanceof AribaException) {
+        throw (AribaException) t;
+      } else if (t instanceof IOException) {
+        throw (IOException) t;
+      } else if (t instanceof CircuitBreakerOpenException) {
+        throw circuitOpen();
+      }
+      throw new RuntimeException(t);
+    }
+  }
+
+  private AribaException circuitOpen() {
+    return new AribaException(ResourceConstants.ERR_CIRCUIT_OPEN.getMsgForKey(CIRCUIT_FAILURE_THRESHOLD),
+                              ResourceConstants.DEFAULT_CODE);
+  }
+
+  /**
+   * Downloads a result file, streaming its body from the connection. When hedging is enabled, a second request is
+   * sent if the file did not start arriving within the configured percentile of the response times of the file
+   * requests, or within the default hedge delay before the first file request was timed. The first response is
+   * streamed and the other request is cancelled. Both requests are single attempts of the caller's retry, so a
+   * failed download is retried once together with its parse and counted once by the circuit breaker.
+   *
+   * @param req file request
+   * @return {@code AribaResponseContainer} of the file, to be closed by the caller
+   */
+  private AribaResponseContainer executeDownload(Request req)
+    throws AribaException, InterruptedException, IOException, AribaRetryableException {
+    if (downloadHedgePercentile <= 0 || !isRetryEnabled()) {
+      // resumed when the body fails midway, retried by the caller together with the read of the body otherwise
+      return resumableResponse(req, executeRetryableRequest(req, false));
+    }
+    long percentile = metrics.getRequestStats().getLatencyPercentile(AribaEndpoint.FILES, downloadHedgePercentile);
+    long hedgeDelay = percentile == 0 ? DEFAULT_HEDGE_DELAY_MILLIS : Math.max(MIN_HEDGE_DELAY_MILLIS, percentile);
+    checkRunDeadline();
+    Response response;
+    try {
+      // calls are bounded by the run deadline, the hedge included
+      response = hedge(() -> enqueueRetryableRequest(newCall(req)), hedgeDelay, req, AribaEndpoint.FILES,
+                       Response::close);
+    } catch (RuntimeException e) {
+      if (e.getCause() instanceof AribaRetryableException) {
+        throw (AribaRetryableException) e.getCause();
+      }
+      throw e;
+    }
+    return resumableResponse(req, response);
+  }
+
+  private <T> T executeWithRetries(CheckedSupplier<T> supplier)
+    throws AribaException, InterruptedException, IOException {
+    try {
+      return Failsafe.with(retryPolicy, circuitBreaker).get(supplier);
+    } catch (CircuitBreakerOpenException e) {
+      throw circuitOpen();
     } catch (FailsafeException fse) {
       Throwable t = fse.getCause();
       if (t instanceof AribaException) {
@@ -678,12 +1348,148 @@ public class AribaServices {
     throws AribaException, InterruptedException, IOException, AribaRetryableException {
 
     LOG.debug("Retryable Ariba URL: " + req.url());
-    OkHttpClient enhancedOkHttpClient = getConfiguredClient().build();
-    Response response = enhancedOkHttpClient.newCall(req).execute();
-    checkAndThrowException(response, shouldWait);
+    checkRunDeadline();
+    Response response;
+    try {
+      response = newCall(req).execute();
+    } catch (InterruptedIOException e) {
+      Exception failure = toRetryable(e, req);
+      if (failure instanceof AribaRetryableException) {
+        throw (AribaRetryableException) failure;
+      }
+      throw e;
+    }
+    try {
+      checkAndThrowException(response, shouldWait);
+    } catch (AribaException | AribaRetryableException | InterruptedException e) {
+      // The connection goes back to the pool of the shared client
+      response.close();
+      throw e;
+    }
     return response;
   }
 
+  /**
+   * Executes the given Ariba request without blocking the calling thread. The call is enqueued on the shared
+   * client and retried with the same policy as {@link #executeRequest(Request)}, but waits for exhausted API
+   * limits are scheduled delays instead of sleeping threads, so many calls can be in flight on a few threads.
+   *
+   * @param req request
+   * @return future completed with the response, or exceptionally with {@code AribaException},
+   * {@code AribaRetryableException} or {@code IOException}
+   */
+  public CompletableFuture<Response> executeRequestAsync(Request req) {
+    return Failsafe.with(retryPolicy, circuitBreaker).getStageAsync(context -> {
+      checkRunDeadline();
+      Call call = newCall(req);
+      context.onCancel(call::cancel);
+      return enqueueRetryableRequest(call);
+    });
+  }
+
+  private CompletableFuture<Response> enqueueRetryableRequest(Call call) {
+    LOG.debug("Retryable Ariba URL: " + call.request().url());
+    CompletableFuture<Response> future = new CompletableFuture<>();
+    call.enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        future.completeExceptionally(e instanceof InterruptedIOException && !call.isCanceled()
+                                       ? toRetryable((InterruptedIOException) e, call.request()) : e);
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) {
+        try {
+          checkAndThrowException(response, false);
+          if (!future.complete(response)) {
+            // cancelled while the response arrived
+            response.close();
+          }
+        } catch (AribaException | AribaRetryableException | InterruptedException e) {
+          response.close();
+          future.completeExceptionally(e);
+        }
+      }
+    });
+    future.whenComplete((response, failure) -> {
+      if (future.isCancelled()) {
+        call.cancel();
+      }
+    });
+    return future;
+  }
+
+  private boolean isRetryEnabled() {
+    return retryRequired && maxRetryCount > 0;
+  }
+
+  /**
+   * Builds the retry policy shared by all the calls of this instance. Retryable failures carrying the reset time
+   * advertised by Ariba are delayed until that reset, calls rejected by the open circuit until it half-opens, all
+   * others by the configured backoff with decorrelated jitter, so that parallel tasks do not retry in lockstep.
+   */
+  private RetryPolicy<Object> buildRetryPolicy() {
+    long baseMillis = TimeUnit.SECONDS.toMillis(initialRetryDuration);
+    long maxMillis = TimeUnit.SECONDS.toMillis(maxRetryDuration);
+    return RetryPolicy.builder()
+      .handle(AribaRetryableException.class, CircuitBreakerOpenException.class)
+      // fallback of the delay function, which always returns a delay
+      .withDelay(Duration.ofMillis(baseMillis))
+      .withDelayFn(context -> {
+        Throwable failure = context.getLastException();
+        if (failure instanceof CircuitBreakerOpenException) {
+          return circuitBreaker.getRemainingDelay().plusMillis(AribaBackoff.untilReset(0));
+        }
+        long retryAfterSeconds = failure instanceof AribaRetryableException ?
+          ((AribaRetryableException) failure).getRetryAfterSeconds() : 0;
+        return Duration.ofMillis(retryAfterSeconds > 0 ? AribaBackoff.untilReset(retryAfterSeconds) :
+                                   AribaBackoff.decorrelatedJitter(baseMillis, maxMillis, retryMultiplier,
+                                                                   context.getAttemptCount()));
+      })
+      .withMaxRetries(isRetryEnabled() ? maxRetryCount : 0)
+      // the circuit is shared by the runs of the connection, the calls of this run it suspends are counted
+      .onFailedAttempt(event -> {
+        if (event.getLastException() instanceof CircuitBreakerOpenException) {
+          metrics.increment(AribaMetrics.CIRCUIT_OPENED);
+        }
+      })
+      .onRetry(event -> {
+        metrics.increment(AribaMetrics.RETRIES);
+        LOG.info("Retrying Ariba call with plugin. Retry count: " + event.getAttemptCount());
+      })
+      .onSuccess(event -> LOG.debug("Ariba plugin call has been executed successfully."))
+      .onRetriesExceeded(event -> LOG.error("Retry limit for the Ariba plugin has been exceeded.",
+        event.getException()))
+      .build();
+  }
+
+  /**
+   * Builds the circuit breaker shared by all the calls of a connection. It opens after consecutive server errors
+   * or rejected calls, so that a failing or throttling Ariba is not hammered by every task. While it is open,
+   * calls wait for it to half-open, a single trial call then closes it again.
+   */
+  private static CircuitBreaker<Object> buildCircuitBreaker() {
+    return CircuitBreaker.builder()
+      .handleIf(failure -> failure instanceof AribaRetryableException &&
+        isOverloaded(((AribaRetryableException) failure).getErrorCode()))
+      .withFailureThreshold(CIRCUIT_FAILURE_THRESHOLD)
+      .withDelay(CIRCUIT_OPEN_DELAY)
+      .onOpen(event -> LOG.warn("Circuit to Ariba opened after {} consecutive failures, calls wait for {} seconds.",
+                                CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_DELAY.getSeconds()))
+      .onClose(event -> LOG.info("Circuit to Ariba closed."))
+      .build();
+  }
+
+  // partial content is the answer to the range request resuming a download
+  private static boolean isSuccessful(int statusCode) {
+    return statusCode == HttpURLConnection.HTTP_OK || statusCode == HttpURLConnection.HTTP_PARTIAL;
+  }
+
+  private static boolean isOverloaded(@Nullable Integer statusCode) {
+    return statusCode != null && (statusCode == HTTP_TOO_MANY_REQUESTS ||
+      statusCode >= HttpURLConnection.HTTP_INTERNAL_ERROR);
+  }
+
   /**
    * Calls given Ariba API.
    * @param jobId Ariba Job Id
@@ -691,18 +1497,256 @@ public class AribaServices {
    */
   public JsonNode fetchData(String jobId, String fileName)
     throws IOException, InterruptedException, AribaException {
+    return fetchData(jobId, fileName, null);
+  }
+
+  /**
+   * Downloads the given result file of a job and parses the records in it.
+   *
+   * @param jobId      Ariba Job Id
+   * @param fileName   result file name
+   * @param fieldNames top level fields to keep in every record, null to keep all of them
+   * @return JsonNode
+   */
+  public JsonNode fetchData(String jobId, String fileName, @Nullable Set<String> fieldNames)
+    throws IOException, InterruptedException, AribaException {
+    return fetchData(jobId, fileName, fieldNames, null);
+  }
+
+  /**
+   * Downloads the given result file of a job and parses the records in it.
+   *
+   * @param jobId       Ariba Job Id
+   * @param fileName    result file name
+   * @param fieldNames  top level fields to keep in every record, null to keep all of them
+   * @param fileProfile run profile entry of the file, receives its size and download time
+   * @return JsonNode
+   */
+  public JsonNode fetchData(String jobId, String fileName, @Nullable Set<String> fieldNames,
+                            @Nullable AribaRunProfile.FileProfile fileProfile)
+    throws IOException, InterruptedException, AribaException {
 
     HttpUrl.Builder zipUrl = zipBuilder(jobId, fileName);
-    Response zipResponse = executeRequest(fetchZipFileData(zipUrl.build().url(), getAccessToken()));
+    Request req = fetchZipFileData(zipUrl.build().url(), getAccessToken());
+    // A streamed body is read during the parse, so a download failing midway is retried with its parse
+    return executeWithRetries(() -> {
+      try {
+        return readFile(req, jobId, fileName, fieldNames, fileProfile);
+      } catch (InterruptedIOException e) {
+        throw toRetryable(e, req);
+      }
+    });
+  }
 
-    LOG.info("Fetch Data Response Code is: {} for Job Id: {} , and File: {}", zipResponse.code(), jobId, fileName);
+  private JsonNode readFile(Request req, String jobId, String fileName, @Nullable Set<String> fieldNames,
+                            @Nullable AribaRunProfile.FileProfile fileProfile)
+    throws IOException, InterruptedException, AribaException, AribaRetryableException {
+    long start = System.nanoTime();
+    try (AribaResponseContainer responseContainer = executeDownload(req)) {
+      long requestMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+      LOG.info("Fetch Data Response Code is: {} for Job Id: {} , and File: {}",
+               responseContainer.getHttpStatusCode(), jobId, fileName);
+
+      // Download, inflate and parse are interleaved in one stream, each one is timed by the stream it reads
+      try (AribaMetrics.MeteredInputStream responseStream =
+             new AribaMetrics.MeteredInputStream(Objects.requireNonNull(responseContainer.getResponseBody()));
+           ZipInputStream zipStream = new ZipInputStream(responseStream);
+           AribaMetrics.MeteredInputStream zis = new AribaMetrics.MeteredInputStream(zipStream)) {
+        long parseStart = System.nanoTime();
+        zipStream.getNextEntry();
+        JsonNode records = fieldNames == null ? objectMapper.readTree(zis) : readProjectedRecords(zis, fieldNames);
+        long totalNanos = System.nanoTime() - parseStart;
+        long downloadMillis = requestMillis + responseStream.getMillis();
+        metrics.record(AribaMetrics.DOWNLOAD_MS, downloadMillis);
+        metrics.getRequestStats().recordTransfer(AribaEndpoint.FILES, downloadMillis);
+        metrics.add(AribaMetrics.DOWNLOAD_BYTES, responseStream.getBytes());
+        metrics.record(AribaMetrics.INFLATE_MS,
+                       TimeUnit.NANOSECONDS.toMillis(zis.getNanos() - responseStream.getNanos()));
+        metrics.record(AribaMetrics.PARSE_MS, TimeUnit.NANOSECONDS.toMillis(totalNanos - zis.getNanos()));
+        if (fileProfile != null) {
+          fileProfile.downloaded(responseStream.getBytes(),
+                                 TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        return records;
+      }
+    }
+  }
 
-    AribaResponseContainer responseContainer = tokenResponse(zipResponse);
-    try (InputStream responseStream = responseContainer.getResponseBody();
-         ZipInputStream zis = new ZipInputStream(Objects.requireNonNull(responseStream))) {
-      zis.getNextEntry();
-      return objectMapper.readTree(zis);
+  /**
+   * Reads a page of the records of a view template from the synchronous view endpoint, with the date range and
+   * job filters of the config. Small extracts are read this way without creating and polling a job.
+   *
+   * @param aribaPluginConfig plugin config
+   * @param templateName      view template name
+   * @param pageToken         token of the page, null for the first page
+   * @param fieldNames        top level fields to keep in every record, null to keep all of them
+   * @return JsonNode with the records of the page in {@code Records} and the token of the next page in
+   * {@code PageToken}, which is missing on the last page
+   */
+  public JsonNode fetchViewPage(AribaPluginConfig aribaPluginConfig, String templateName, @Nullable String pageToken,
+                                @Nullable Set<String> fieldNames)
+    throws IOException, InterruptedException, AribaException {
+    HttpUrl.Builder viewUrl = viewBuilder(templateName, pageToken);
+    ObjectNode filters = buildFilters(aribaPluginConfig, templateName);
+    if (filters.size() > 0) {
+      viewUrl.addQueryParameter(FILTERS, objectMapper.writeValueAsString(filters));
     }
+    Request req = buildFetchRequest(viewUrl.build().url(), getAccessToken());
+    // Pages are small, so the body is read with the call and retried with it
+    return executeWithRetries(() -> {
+      long start = System.nanoTime();
+      try (Response response = executeRetryableRequest(req, false);
+           AribaResponseContainer responseContainer = tokenResponse(response)) {
+        JsonNode page = readViewPage(responseContainer.getResponseBody(), fieldNames);
+        metrics.recordMillisSince(AribaMetrics.VIEW_PAGE_MS, start);
+        return page;
+      } catch (InterruptedIOException e) {
+        throw toRetryable(e, req);
+      }
+    });
+  }
+
+  /**
+   * Reads the first records of the view template from the synchronous view endpoint. Pages are requested until the
+   * limit is reached, and the body of the last page is closed as soon as it is, without reading its remaining
+   * records.
+   *
+   * @param templateName view template name
+   * @param limit        maximum number of records
+   * @return at most {@code limit} records of the view template
+   */
+  public List<JsonNode> sampleView(String templateName, int limit)
+    throws IOException, InterruptedException, AribaException {
+    List<JsonNode> records = new ArrayList<>();
+    String pageToken = null;
+    do {
+      Request req = buildFetchRequest(viewBuilder(templateName, pageToken).build().url(), getAccessToken());
+      int pageStart = records.size();
+      pageToken = executeWithRetries(() -> {
+        // A retried page replaces the records its failed attempt read
+        records.subList(pageStart, records.size()).clear();
+        long start = System.nanoTime();
+        // Parsed from the connection, so that the records past the limit are not transferred
+        try (Response response = executeRetryableRequest(req, false);
+             AribaResponseContainer responseContainer = streamingResponse(response)) {
+          String nextPageToken = readViewRecords(responseContainer.getResponseBody(), limit, records);
+          metrics.recordMillisSince(AribaMetrics.VIEW_PAGE_MS, start);
+          return nextPageToken;
+        } catch (InterruptedIOException e) {
+          throw toRetryable(e, req);
+        }
+      });
+    } while (pageToken != null && records.size() < limit);
+    return records;
+  }
+
+  /**
+   * Parses the records of a page of the synchronous view endpoint until the list holds {@code limit} records.
+   *
+   * @return token of the next page, null if this is the last page or the limit is reached
+   */
+  @VisibleForTesting
+  @Nullable
+  String readViewRecords(InputStream stream, int limit, List<JsonNode> records) throws IOException {
+    String pageToken = null;
+    try (JsonParser parser = objectMapper.getFactory().createParser(stream)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException(ResourceConstants.ERR_INVALID_VIEW_PAGE.getMsgForKey());
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String fieldName = parser.getCurrentName();
+        parser.nextToken();
+        if (ResourceConstants.VIEW_RECORDS.equals(fieldName) && parser.getCurrentToken() == JsonToken.START_ARRAY) {
+          while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (records.size() >= limit) {
+              // The rest of the body is not needed
+              return null;
+            }
+            records.add(objectMapper.readTree(parser));
+          }
+        } else if (ResourceConstants.VIEW_PAGE_TOKEN.equals(fieldName) &&
+          parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+          pageToken = parser.getText();
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return pageToken == null || pageToken.isEmpty() || records.size() >= limit ? null : pageToken;
+  }
+
+  /**
+   * Parses a page of the synchronous view endpoint, projecting its records on the given fields.
+   */
+  @VisibleForTesting
+  JsonNode readViewPage(InputStream stream, @Nullable Set<String> fieldNames) throws IOException {
+    ObjectNode page = objectMapper.createObjectNode();
+    try (JsonParser parser = objectMapper.getFactory().createParser(stream)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException(ResourceConstants.ERR_INVALID_VIEW_PAGE.getMsgForKey());
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String fieldName = parser.getCurrentName();
+        parser.nextToken();
+        if (ResourceConstants.VIEW_RECORDS.equals(fieldName)) {
+          page.set(fieldName, fieldNames == null ? objectMapper.readTree(parser) :
+            readProjectedRecords(parser, fieldNames));
+        } else if (ResourceConstants.VIEW_PAGE_TOKEN.equals(fieldName) &&
+          parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+          page.put(fieldName, parser.getText());
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return page;
+  }
+
+  /**
+   * Parses an array of records keeping only the given top level fields. Values of all other fields are skipped
+   * in the token stream, so that no {@code JsonNode} is built for them.
+   *
+   * @param stream     JSON content
+   * @param fieldNames top level fields to keep in every record
+   * @return {@code ArrayNode} of the projected records, or the complete tree if the content is not an array
+   * @throws IOException
+   */
+  @VisibleForTesting
+  JsonNode readProjectedRecords(InputStream stream, Set<String> fieldNames) throws IOException {
+    try (JsonParser parser = objectMapper.getFactory().createParser(stream)) {
+      parser.nextToken();
+      return readProjectedRecords(parser, fieldNames);
+    }
+  }
+
+  /**
+   * Parses the array of records at the current token of the parser, keeping only the given top level fields.
+   */
+  private JsonNode readProjectedRecords(JsonParser parser, Set<String> fieldNames) throws IOException {
+    if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+      return objectMapper.readTree(parser);
+    }
+
+    ArrayNode records = objectMapper.createArrayNode();
+    JsonToken token;
+    while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+      if (token != JsonToken.START_OBJECT) {
+        records.add(objectMapper.<JsonNode>readTree(parser));
+        continue;
+      }
+      ObjectNode record = records.addObject();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String fieldName = parser.getCurrentName();
+        // null values are left out as well, the transformer treats missing and null fields alike
+        if (parser.nextToken() == JsonToken.VALUE_NULL || !fieldNames.contains(fieldName)) {
+          parser.skipChildren();
+        } else {
+          record.set(fieldName, objectMapper.readTree(parser));
+        }
+      }
+    }
+    return records;
   }
 
   /**
@@ -717,25 +1761,29 @@ public class AribaServices {
    * @return boolean
    */
   public boolean isApiLimitExhausted(Response response) {
-    isDayLimitExhausted = isHourLimitExhausted = isMinuteLimitExhausted = isSecondsLimitExhausted = false;
-    if (response.code() != HttpURLConnection.HTTP_OK &&
-      Integer.parseInt(Objects.requireNonNull(response.header(RATE_LIMIT_DAY))) < 1) {
-      isDayLimitExhausted = true;
-      return true;
-    } else if (response.code() != HttpURLConnection.HTTP_OK &&
-      Integer.parseInt(Objects.requireNonNull(response.header(RATE_LIMIT_HOUR))) < 1) {
-      isHourLimitExhausted = true;
-      return true;
-    } else if (response.code() != HttpURLConnection.HTTP_OK &&
-      Integer.parseInt(Objects.requireNonNull(response.header(RATE_LIMIT_MINUTE))) < 1) {
-      isMinuteLimitExhausted = true;
-      return true;
-    } else if (response.code() != HttpURLConnection.HTTP_OK &&
-      Integer.parseInt(Objects.requireNonNull(response.header(RATE_LIMIT_SECOND))) < 1) {
-      isSecondsLimitExhausted = true;
-      return true;
+    LimitWindow exhausted = getExhaustedLimit(response);
+    isDayLimitExhausted = exhausted == LimitWindow.DAY;
+    isHourLimitExhausted = exhausted == LimitWindow.HOUR;
+    isMinuteLimitExhausted = exhausted == LimitWindow.MINUTE;
+    isSecondsLimitExhausted = exhausted == LimitWindow.SECOND;
+    return exhausted != null;
+  }
+
+  /**
+   * @param response response of a call
+   * @return longest limit window exhausted by a failed call, null if the call did not fail on a limit
+   */
+  @Nullable
+  private static LimitWindow getExhaustedLimit(Response response) {
+    if (isSuccessful(response.code())) {
+      return null;
     }
-    return false;
+    for (LimitWindow window : LimitWindow.values()) {
+      if (getRemainingLimit(response, window.header) < 1) {
+        return window;
+      }
+    }
+    return null;
   }
 
   /**
@@ -753,50 +1801,89 @@ public class AribaServices {
       throw new AribaException(response.message(), response.code());
     }
 
-    boolean limitExhausted = isApiLimitExhausted(response);
+    // Decided on this response only, the instance is shared by concurrent calls
+    LimitWindow exhausted = getExhaustedLimit(response);
 
-    if (limitExhausted && isDayLimitExhausted) {
-      int retryAfter =
-        (Integer.parseInt(Objects.requireNonNull(response.header(ResourceConstants.RETRY_AFTER))) / 3600) + 1;
+    if (exhausted == LimitWindow.DAY) {
+      metrics.increment(AribaMetrics.RATE_LIMITED_DAY);
+      long retryAfter = (getRetryAfterSeconds(response) / 3600) + 1;
       LOG.info("API rate limit exceeded for the Day, Please retry after {} hours", retryAfter);
       throw new AribaException(ResourceConstants.ERR_API_LIMIT_EXCEED_FOR_DAY.getMsgForKey(retryAfter),
                                ResourceConstants.LIMIT_EXCEED_ERROR_CODE);
-    } else if (limitExhausted && isHourLimitExhausted) {
+    } else if (exhausted == LimitWindow.HOUR) {
+      metrics.increment(AribaMetrics.RATE_LIMITED_HOUR);
       if (shouldWait) {
-        int retryAfter =
-          (Integer.parseInt(Objects.requireNonNull(response.header(ResourceConstants.RETRY_AFTER))) / 60) + 1;
+        long retryAfter = (getRetryAfterSeconds(response) / 60) + 1;
         LOG.info("API rate limit exceeded for the Hour, waiting for {} min", retryAfter);
         TimeUnit.MINUTES.sleep(retryAfter);
       }
       String errorMsg = String.format("Call to Ariba failed. Status Code: %s, Root Cause: %s.", response.code(),
         response.message());
-      throw new AribaRetryableException(errorMsg, response.code());
-    } else if (limitExhausted && isMinuteLimitExhausted) {
+      throw new AribaRetryableException(errorMsg, response.code(), shouldWait ? 0 : getRetryAfterSeconds(response));
+    } else if (exhausted == LimitWindow.MINUTE) {
+      metrics.increment(AribaMetrics.RATE_LIMITED_MINUTE);
       if (shouldWait) {
-        int retryAfter =
-          (Integer.parseInt(Objects.requireNonNull(response.header(ResourceConstants.RETRY_AFTER))));
+        long retryAfter = getRetryAfterSeconds(response);
         LOG.debug("API rate limit exceeded for the Minute, waiting for {} Seconds", retryAfter);
         TimeUnit.SECONDS.sleep(retryAfter);
       }
       String errorMsg = String.format("Call to Ariba failed. Status Code: %s, Root Cause: %s.", response.code(),
         response.message());
-      throw new AribaRetryableException(errorMsg, response.code());
-    } else if (limitExhausted && isSecondsLimitExhausted) {
+      throw new AribaRetryableException(errorMsg, response.code(), shouldWait ? 0 : getRetryAfterSeconds(response));
+    } else if (exhausted == LimitWindow.SECOND) {
+      metrics.increment(AribaMetrics.RATE_LIMITED_SECOND);
       if (shouldWait) {
-        int retryAfter =
-                (Integer.parseInt(Objects.requireNonNull(response.header(ResourceConstants.RETRY_AFTER))));
+        long retryAfter = getRetryAfterSeconds(response);
         LOG.debug("API rate limit exceeded for the Second, waiting for {} Seconds", retryAfter);
         TimeUnit.SECONDS.sleep(retryAfter);
       }
       String errorMsg = String.format("Call to Ariba failed. Status Code: %s, Root Cause: %s.", response.code(),
         response.message());
-      throw new AribaRetryableException(errorMsg, response.code());
-    } else if (response.code() != HttpURLConnection.HTTP_OK) {
+      throw new AribaRetryableException(errorMsg, response.code(), shouldWait ? 0 : getRetryAfterSeconds(response));
+    } else if (isOverloaded(response.code())) {
+      // Throttled without an exhausted limit, or a server error: transient, counted by the circuit breaker
+      String errorMsg = String.format("Call to Ariba failed. Status Code: %s, Root Cause: %s.", response.code(),
+        response.message());
+      throw new AribaRetryableException(errorMsg, response.code(), getRetryAfterSeconds(response));
+    } else if (!isSuccessful(response.code())) {
       throw new AribaException(response.message(), response.code());
     }
 
   }
 
+  /**
+   * @param response response of a call
+   * @param header   remaining limit header
+   * @return remaining calls of the limit, {@code Integer.MAX_VALUE} if Ariba did not report it
+   */
+  private static int getRemainingLimit(Response response, String header) {
+    String remaining = response.header(header);
+    if (remaining == null) {
+      return Integer.MAX_VALUE;
+    }
+    try {
+      return Integer.parseInt(remaining.trim());
+    } catch (NumberFormatException e) {
+      return Integer.MAX_VALUE;
+    }
+  }
+
+  /**
+   * @param response response of a call exceeding an API limit
+   * @return seconds until the limit is reset, 0 if Ariba did not advertise it
+   */
+  private static long getRetryAfterSeconds(Response response) {
+    String retryAfter = response.header(ResourceConstants.RETRY_AFTER);
+    if (retryAfter == null) {
+      return 0;
+    }
+    try {
+      return Math.max(0, Long.parseLong(retryAfter.trim()));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
   /**
    * @param endpoint
    * @param aribaPluginConfig
@@ -805,34 +1892,14 @@ public class AribaServices {
   @VisibleForTesting
   protected Request buildJobRequest(URL endpoint, AribaPluginConfig aribaPluginConfig, String templateName)
     throws AribaException, IOException, InterruptedException {
-    LocalDateTime date = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
-    okhttp3.MediaType.parse(APP_JSON);
-    String fromDate = aribaPluginConfig.getFromDate() != null ?
-      aribaPluginConfig.getFromDate() : String.valueOf(date.minusYears(1)
-                                                         .atZone((ZoneId.of(UTC))).withFixedOffsetZone());
-    String toDate = aribaPluginConfig.getToDate() != null ?
-      aribaPluginConfig.getToDate() : String.valueOf(date.atZone((ZoneId.of(UTC))).withFixedOffsetZone());
-    RequestBody body;
-
-    if (!checkUpdateFilter(templateName)) {
-      body = RequestBody.create(okhttp3.MediaType.parse(APP_JSON),
-                                String.format("{ " + "\"" + VIEW_TEMPLATE_NAME + "\": \"%s\",\"filters\": {\n" +
-                                                "        \"createdDateFrom\": \"%s\",\n" +
-                                                "        \"createdDateTo\": \"%s\"\n" +
-                                                "    }}", aribaPluginConfig.getViewTemplateName(),
-                                              fromDate, toDate));
-    } else if (checkUpdateFilter(templateName) && aribaPluginConfig.getFromDate() != null) {
-      body = RequestBody.create(okhttp3.MediaType.parse(APP_JSON),
-                                String.format("{ " + "\"" + VIEW_TEMPLATE_NAME + "\": \"%s\",\"filters\": {\n" +
-                                                "        \"updatedDateFrom\": \"%s\",\n" +
-                                                "        \"updatedDateTo\": \"%s\"\n" +
-                                                "    }}", aribaPluginConfig.getViewTemplateName(),
-                                              fromDate, toDate));
-    } else {
-      body = RequestBody.create(okhttp3.MediaType.parse(APP_JSON),
-                                String.format("{ " + "\"" + VIEW_TEMPLATE_NAME + "\": \"%s\"}",
-                                              aribaPluginConfig.getViewTemplateName()));
+    ObjectNode filters = buildFilters(aribaPluginConfig, templateName);
+    ObjectNode jobRequest = objectMapper.createObjectNode();
+    jobRequest.put(VIEW_TEMPLATE_NAME, templateName);
+    if (filters.size() > 0) {
+      jobRequest.set(FILTERS, filters);
     }
+    RequestBody body = RequestBody.create(okhttp3.MediaType.parse(APP_JSON),
+                                          objectMapper.writeValueAsString(jobRequest));
     return new Request.Builder()
       .addHeader(AUTHORIZATION, getAuthenticationKey(getAccessToken()))
       .addHeader(ResourceConstants.API_KEY, pluginConfig.getApiKey())
@@ -842,6 +1909,45 @@ public class AribaServices {
       .build();
   }
 
+  /**
+   * Filters of the records to extract, the date range and the job filters of the config, shared by the jobs and
+   * the synchronous view endpoint.
+   *
+   * @param aribaPluginConfig plugin config
+   * @param templateName      view template name
+   * @return filters, empty if the records are not filtered
+   */
+  private ObjectNode buildFilters(AribaPluginConfig aribaPluginConfig, String templateName)
+    throws AribaException, IOException, InterruptedException {
+    LocalDateTime date = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+    String fromDate = aribaPluginConfig.getFromDate() != null ?
+      aribaPluginConfig.getFromDate() : String.valueOf(date.minusYears(1)
+                                                         .atZone((ZoneId.of(UTC))).withFixedOffsetZone());
+    String toDate = aribaPluginConfig.getToDate() != null ?
+      aribaPluginConfig.getToDate() : String.valueOf(date.atZone((ZoneId.of(UTC))).withFixedOffsetZone());
+    ObjectNode filters = objectMapper.createObjectNode();
+    if (!checkUpdateFilter(templateName)) {
+      filters.put(AribaJobFilter.CREATED_DATE_FROM, fromDate);
+      filters.put(AribaJobFilter.CREATED_DATE_TO, toDate);
+    } else if (aribaPluginConfig.getFromDate() != null) {
+      filters.put(AribaJobFilter.UPDATED_DATE_FROM, fromDate);
+      filters.put(AribaJobFilter.UPDATED_DATE_TO, toDate);
+    }
+
+    List<AribaJobFilter> jobFilters = getJobFilters(aribaPluginConfig);
+    if (!jobFilters.isEmpty()) {
+      Set<String> supportedFilters = getFilterNames(templateName);
+      for (AribaJobFilter jobFilter : jobFilters) {
+        if (!supportedFilters.contains(jobFilter.getName())) {
+          throw new AribaException(ResourceConstants.ERR_UNSUPPORTED_JOB_FILTER.getMsgForKey(
+            jobFilter.getName(), templateName, supportedFilters), HttpURLConnection.HTTP_BAD_REQUEST);
+        }
+        filters.set(jobFilter.getName(), jobFilter.getValue());
+      }
+    }
+    return filters;
+  }
+
   /**
    * calls for update filter
    *
@@ -852,17 +1958,61 @@ public class AribaServices {
   @VisibleForTesting
   protected boolean checkUpdateFilter(String templateName) throws AribaException,
     IOException, InterruptedException {
+    JsonNode expressions = getFilterExpressions(templateName);
+    return !expressions.isEmpty() && expressions.get(0).path(ResourceConstants.NAME).asText().contains(UPDATE_DATE);
+  }
+
+  /**
+   * Names of the filters supported by the view template.
+   *
+   * @param templateName view template name
+   * @return set of filter names
+   */
+  Set<String> getFilterNames(String templateName) throws AribaException, IOException, InterruptedException {
+    Set<String> filterNames = new LinkedHashSet<>();
+    for (JsonNode expression : getFilterExpressions(templateName)) {
+      filterNames.add(expression.path(ResourceConstants.NAME).asText());
+    }
+    return filterNames;
+  }
+
+  /**
+   * Fetches the filterExpressions of the view template. Successful responses are cached, so that every page of
+   * a job reuses them.
+   *
+   * @param templateName view template name
+   * @return array of filter expressions, empty if the template has none or could not be fetched
+   */
+  private JsonNode getFilterExpressions(String templateName) throws AribaException, IOException,
+    InterruptedException {
+    JsonNode cached = filterExpressions.get(templateName);
+    if (cached != null) {
+      return cached;
+    }
+
     HttpUrl.Builder templateBuilder = filterTemplateBuilder(templateName);
     AribaResponseContainer responseContainer = fetchAribaResponse(templateBuilder.build().url(), getAccessToken());
     InputStream responseStream = responseContainer.getResponseBody();
     JsonNode jsonNode = objectMapper.readTree(responseStream);
-    if (responseContainer.getHttpStatusCode() != HttpURLConnection.HTTP_OK ||
-      jsonNode.get(FILTER_EXPRESSIONS) == null) {
-      return false;
-    } else {
-      return !jsonNode.get(FILTER_EXPRESSIONS).isEmpty() && jsonNode.get(FILTER_EXPRESSIONS)
-        .get(0).get(ResourceConstants.NAME).
-        asText().contains(UPDATE_DATE);
+    if (responseContainer.getHttpStatusCode() != HttpURLConnection.HTTP_OK) {
+      return objectMapper.createArrayNode();
+    }
+    JsonNode expressions = jsonNode.get(FILTER_EXPRESSIONS);
+    if (expressions == null || !expressions.isArray()) {
+      expressions = objectMapper.createArrayNode();
+    }
+    filterExpressions.put(templateName, expressions);
+    return expressions;
+  }
+
+  /**
+   * Reads the additional job filters, reporting an invalid property as {@code AribaException}.
+   */
+  private List<AribaJobFilter> getJobFilters(AribaPluginConfig aribaPluginConfig) throws AribaException {
+    try {
+      return aribaPluginConfig.getJobFilters();
+    } catch (IllegalArgumentException e) {
+      throw new AribaException(e.getMessage(), HttpURLConnection.HTTP_BAD_REQUEST);
     }
   }
 
@@ -912,4 +2062,57 @@ public class AribaServices {
       .build();
   }
 
+  /**
+   * Windows of the Ariba API limits, from the longest to the shortest.
+   */
+  private enum LimitWindow {
+    DAY(RATE_LIMIT_DAY),
+    HOUR(RATE_LIMIT_HOUR),
+    MINUTE(RATE_LIMIT_MINUTE),
+    SECOND(RATE_LIMIT_SECOND);
+
+    private final String header;
+
+    LimitWindow(String header) {
+      this.header = header;
+    }
+  }
+
+  /**
+   * Client and caches of a connection, shared by the instances using it.
+   */
+  private static final class SharedConnection {
+    private final OkHttpClient httpClient;
+    private final CircuitBreaker<Object> circuitBreaker;
+    private final Map<String, JsonNode> filterExpressions = new ConcurrentHashMap<>();
+    private final Cache<String, Schema> outputSchemas = CacheBuilder.newBuilder()
+      .maximumSize(MAX_CACHED_SCHEMAS)
+      .expireAfterWrite(SCHEMA_CACHE_MINUTES, TimeUnit.MINUTES)
+      .build();
+    private final RateLimiter prefetchRateLimiter = RateLimiter.create(PREFETCH_SCHEMAS_PER_SECOND);
+    private final Set<String> prefetchingSchemas = ConcurrentHashMap.newKeySet();
+    private final AribaJobLimiter jobLimiter = new AribaJobLimiter();
+    private final Object tokenLock = new Object();
+    @Nullable
+    private volatile CachedToken cachedToken;
+
+    private SharedConnection(AribaConnectorConfig connection) {
+      // requests not tagged with the registry of a run are recorded outside of any run
+      this.httpClient = getConfiguredClient(connection, AribaMetrics.get()).build();
+      this.circuitBreaker = buildCircuitBreaker();
+    }
+  }
+
+  /**
+   * Access token together with the time until which it can be used.
+   */
+  private static final class CachedToken {
+    private final String value;
+    private final long validUntilMillis;
+
+    private CachedToken(String value, long validUntilMillis) {
+      this.value = value;
+      this.validUntilMillis = validUntilMillis;
+    }
+  }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded dictionary of the values of a single string field. Ariba views repeat a small set of values for many
+ * fields (source system, status and currency codes), so that every record can share one instance per value
+ * instead of retaining its own copy.
+ * <p>
+ * Cardinality is detected from the first {@link #SAMPLE_SIZE} values: if the field has more than
+ * {@link #MAX_ENTRIES} distinct values within the sample, the dictionary is dropped and values are passed through.
+ * Once the sample is complete the field is considered low cardinality, new values are added until the dictionary
+ * is full and are passed through afterwards. Not thread safe, each reader owns its own instance.
+ */
+final class AribaStringDictionary {
+
+  static final int SAMPLE_SIZE = 1000;
+  static final int MAX_ENTRIES = 256;
+
+  private Map<String, String> values = new HashMap<>();
+  private int observed;
+
+  /**
+   * Returns the shared instance of the given value.
+   *
+   * @param value field value
+   * @return previously seen instance equal to {@code value}, or {@code value} itself
+   */
+  String canonicalize(String value) {
+    if (values == null) {
+      return value;
+    }
+
+    String canonical = values.get(value);
+    if (canonical == null) {
+      if (values.size() >= MAX_ENTRIES) {
+        if (observed < SAMPLE_SIZE) {
+          // High cardinality field, stop paying for the lookups
+          values = null;
+        }
+        return value;
+      }
+      values.put(value, value);
+      canonical = value;
+    }
+    if (observed < SAMPLE_SIZE) {
+      observed++;
+    }
+    return canonical;
+  }
+
+  @VisibleForTesting
+  boolean isEnabled() {
+    return values != null;
+  }
+}
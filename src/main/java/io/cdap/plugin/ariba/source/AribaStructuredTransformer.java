@@ -16,15 +16,14 @@
 
 package io.cdap.plugin.ariba.source;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.format.UnexpectedFormatException;
 import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.ariba.source.util.AribaDateTimeUtil;
+import io.cdap.plugin.ariba.source.util.AribaNumberUtil;
 import io.cdap.plugin.ariba.source.util.ResourceConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,11 +34,13 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -48,16 +49,46 @@ import javax.annotation.Nullable;
  */
 public class AribaStructuredTransformer {
   private static final Logger LOG = LoggerFactory.getLogger(AribaStructuredTransformer.class);
+  // Date and timestamp fields in Ariba may have default/uninitialized values starting with 0000
+  private static final String DEFAULT_DATE_PREFIX = "0000";
+  // Value that could not be converted, its field is left unset
+  private static final Object UNCONVERTED = new Object();
+
+  // Read plans are compiled once per output schema instance and reused for every record
+  private final Map<Schema, AribaRecordPlan> recordPlans = new IdentityHashMap<>();
+  private final boolean stringDictionary;
+
+  public AribaStructuredTransformer() {
+    this(false);
+  }
+
+  /**
+   * @param stringDictionary share the instances of repeated values of low cardinality string fields
+   */
+  public AribaStructuredTransformer(boolean stringDictionary) {
+    this.stringDictionary = stringDictionary;
+  }
 
   public StructuredRecord readFields(JsonNode nativeRawRecord, Schema outputSchema) {
-    StructuredRecord.Builder recBuilder = StructuredRecord.builder(outputSchema);
-    List<Schema.Field> cdapFields = outputSchema.getFields();
+    return readFields(nativeRawRecord, getRecordPlan(outputSchema));
+  }
+
+  @VisibleForTesting
+  AribaRecordPlan getRecordPlan(Schema outputSchema) {
+    return recordPlans.computeIfAbsent(outputSchema, schema -> AribaRecordPlan.compile(schema, stringDictionary));
+  }
+
+  private StructuredRecord readFields(JsonNode nativeRawRecord, AribaRecordPlan recordPlan) {
+    StructuredRecord.Builder recBuilder = StructuredRecord.builder(recordPlan.getSchema());
 
-    cdapFields.forEach(field -> {
+    for (AribaRecordPlan.FieldPlan field : recordPlan.getFields()) {
       String fieldName = field.getName();
-      Object fieldVal = getFieldNativeValue(nativeRawRecord, fieldName);
-      Schema childSchema = field.getSchema();
+      JsonNode fieldNode = nativeRawRecord.get(fieldName);
+      if (fieldNode == null) {
+        continue;
+      }
 
+      switch (fieldNode.getNodeType()) {
 //       eg.
 //        {
 //          "Owner": {
@@ -66,11 +97,10 @@ public class AribaStructuredTransformer {
 //            "PasswordAdapter": "PasswordAdapter"
 //            }
 //        }
-      if (nativeRawRecord.get(fieldName) != null &&
-        nativeRawRecord.get(fieldName).getNodeType().name()
-          .equalsIgnoreCase(ResourceConstants.OBJECT) && !childSchema.getType().isSimpleType()) {
-        fieldVal = readFields((JsonNode) fieldVal, childSchema.getUnionSchema(0));
-      }
+        case OBJECT:
+          recBuilder.set(fieldName, field.getRecordPlan() != null && !field.isSimpleType() ?
+            readFields(fieldNode, field.getRecordPlan()) : null);
+          break;
 
 //       e.g.
 //       {
@@ -82,220 +112,293 @@ public class AribaStructuredTransformer {
 //              }
 //           }]
 //       }
-      if (nativeRawRecord.get(fieldName) != null &&
-        nativeRawRecord.get(fieldName).getNodeType().name()
-          .equalsIgnoreCase(ResourceConstants.ARRAY) && !childSchema.getType().isSimpleType()) {
-        fieldVal = readInternalDeltaFeed(childSchema, (JsonNode) fieldVal);
-      }
+        case ARRAY:
+          recBuilder.set(fieldName, field.isSimpleType() ? null : readInternalDeltaFeed(field, fieldNode));
+          break;
+
+//         "Amount": 12.5
+        case NUMBER:
+        case BOOLEAN:
+          setValue(recBuilder, fieldName, readScalarValue(field.getNonNullSchema(), fieldName, fieldNode));
+          break;
 
 //         "State": "Active"
-      if (fieldVal != null) {
-        processSchemaTypeValue(childSchema, recBuilder, fieldName, fieldVal);
+        case STRING:
+          AribaStringDictionary dictionary = field.getDictionary();
+          String text = dictionary == null ? fieldNode.asText() : dictionary.canonicalize(fieldNode.asText());
+          setValue(recBuilder, fieldName, getSchemaTypeValue(field.getNonNullSchema(), fieldName, text));
+          break;
+
+        default:
+          // null or unsupported node types are left unset
+          break;
       }
-    });
+    }
     return recBuilder.build();
   }
 
-  private List<StructuredRecord> readInternalDeltaFeed(Schema recordSchema, JsonNode fieldValStr) {
-    ObjectMapper mapper = new ObjectMapper();
-    if (fieldValStr.isArray() && recordSchema.getNonNullable().getComponentSchema() != null) {
-      try {
-        List<JsonNode> jsonList = mapper.readValue(fieldValStr.toString(), new TypeReference<List<JsonNode>>() {
-        });
-        return jsonList.stream().map(
-          field -> readFields(field.get(recordSchema.getNonNullable().getComponentSchema().getRecordName()),
-                              recordSchema.getNonNullable().getComponentSchema())).collect(Collectors.toList());
-      } catch (JsonProcessingException e) {
-        LOG.error("Error in Processing Structured Transformer from Json, cause: {}", e.getMessage());
+  private List<Object> readInternalDeltaFeed(AribaRecordPlan.FieldPlan field, JsonNode arrayNode) {
+    if (field.getComponentSchema() == null) {
+      return Collections.emptyList();
+    }
+
+    AribaRecordPlan componentPlan = field.getComponentPlan();
+    Schema simpleComponentSchema = field.getSimpleComponentSchema();
+    List<Object> values = new ArrayList<>(arrayNode.size());
+    for (JsonNode element : arrayNode) {
+      if (componentPlan != null) {
+        // Each array element wraps the record under a key named after the record, fall back to the element itself
+        JsonNode wrapped = element.get(componentPlan.getSchema().getRecordName());
+        values.add(readFields(wrapped != null ? wrapped : element, componentPlan));
+      } else if (simpleComponentSchema != null) {
+        values.add(readComponentValue(simpleComponentSchema, field.getName(), element));
+      } else {
+        values.add(getNativeValue(element));
       }
     }
-    return Collections.emptyList();
+    return values;
   }
 
+  /**
+   * Converts an element of an array of simple values to the component type, the same way a scalar field of that
+   * type is converted.
+   */
+  @Nullable
+  private Object readComponentValue(Schema nonNullSchema, String fieldName, JsonNode element) {
+    Object value;
+    switch (element.getNodeType()) {
+      case NUMBER:
+      case BOOLEAN:
+        value = readScalarValue(nonNullSchema, fieldName, element);
+        break;
 
-  private void processSchemaTypeValue(Schema fieldSchema, StructuredRecord.Builder recordBuilder,
-                                      String fieldName, Object fieldValue) {
+      case STRING:
+        value = getSchemaTypeValue(nonNullSchema, fieldName, element.asText());
+        break;
 
-    // Get Non-nullable schema object for the current field
-    Schema nonNullSchema = fieldSchema.isNullable() ? fieldSchema.getNonNullable() : fieldSchema;
-    if (fieldValue instanceof StructuredRecord || fieldValue instanceof List) {
-      recordBuilder.set(fieldName, fieldValue);
-    } else if (fieldValue instanceof String) {
-      boolean isBlank = handleBlankVal(recordBuilder, fieldName, (String) fieldValue);
+      default:
+        return getNativeValue(element);
+    }
+    return value == UNCONVERTED ? null : value;
+  }
 
-      // If value is NOT null or empty then transform acc. to the field's data type
-      if (!isBlank) {
-        try {
-          processValue(nonNullSchema, recordBuilder, fieldName, (String) fieldValue);
-        } catch (IOException e) {
-          LOG.error("Error in Processing Schema type value, cause: {}", e.getMessage());
-        }
-      }
-    } else {
-      recordBuilder.set(fieldName, null);
+  private static void setValue(StructuredRecord.Builder recBuilder, String fieldName, @Nullable Object value) {
+    if (value != UNCONVERTED) {
+      recBuilder.set(fieldName, value);
     }
   }
 
+  /**
+   * Converts a JSON number or boolean to the given type, directly from the parsed token when it maps losslessly to
+   * the type, from its text otherwise.
+   */
   @Nullable
-  @VisibleForTesting
-  Object getFieldNativeValue(JsonNode nativeRawRecord, String fieldName) {
-    JsonNode recordValue = nativeRawRecord.get(fieldName);
-    if (recordValue != null) {
-      if (nativeRawRecord.get(fieldName).getNodeType().name().equalsIgnoreCase(ResourceConstants.ARRAY) ||
-        nativeRawRecord.get(fieldName).getNodeType().name().equalsIgnoreCase(ResourceConstants.OBJECT)) {
-        return nativeRawRecord.get(fieldName);
+  private Object readScalarValue(Schema nonNullSchema, String fieldName, JsonNode scalarNode) {
+    Object value = getNativeScalarValue(nonNullSchema, scalarNode);
+    return value != UNCONVERTED ? value : getSchemaTypeValue(nonNullSchema, fieldName, scalarNode.asText());
+  }
+
+  /**
+   * Converts the value of a JSON number or boolean directly from the parsed token, without converting it to a string
+   * first.
+   *
+   * @return the value, or {@link #UNCONVERTED} if it does not map losslessly to the type and has to go through the
+   * string conversion instead
+   */
+  @Nullable
+  private Object getNativeScalarValue(Schema nonNullSchema, JsonNode scalarNode) {
+    Schema.LogicalType logicalType = nonNullSchema.getLogicalType();
+    if (logicalType == Schema.LogicalType.DECIMAL && scalarNode.isNumber()) {
+      BigDecimal decimal = scalarNode.decimalValue();
+      // Values needing rounding or too precise are reported by the string conversion
+      if (decimal.scale() > nonNullSchema.getScale()) {
+        return UNCONVERTED;
+      }
+      decimal = decimal.setScale(nonNullSchema.getScale());
+      return decimal.precision() > nonNullSchema.getPrecision() ? UNCONVERTED : decimal.unscaledValue().toByteArray();
+    }
+    if (logicalType != null) {
+      return UNCONVERTED;
+    }
 
-      } else if (nativeRawRecord.get(fieldName).getNodeType().name().equals(ResourceConstants.STRING) ||
-        nativeRawRecord.get(fieldName).getNodeType().name().equals(ResourceConstants.NUMBER) ||
-        nativeRawRecord.get(fieldName).getNodeType().name().equals(ResourceConstants.BOOLEAN)) {
+    switch (nonNullSchema.getType()) {
+      case DOUBLE:
+        return scalarNode.isNumber() ? scalarNode.doubleValue() : UNCONVERTED;
 
-        return nativeRawRecord.get(fieldName).asText();
+      case LONG:
+        return scalarNode.isIntegralNumber() && scalarNode.canConvertToLong() ? scalarNode.longValue() : UNCONVERTED;
 
-      }
+      case INT:
+        return scalarNode.isIntegralNumber() && scalarNode.canConvertToInt() ? scalarNode.intValue() : UNCONVERTED;
+
+      case BOOLEAN:
+        return scalarNode.isBoolean() ? scalarNode.booleanValue() : UNCONVERTED;
+
+      default:
+        return UNCONVERTED;
     }
-    return null;
   }
 
   /**
-   * Checks and sets null or original (whitespace filled) string as value in the
-   * {@code StructuredRecord.Builder} for field represented by {@code fieldName}
+   * Converts a text value to the given type. Null or blank values are kept as they are, whatever the type.
    *
-   * @param recBuilder
-   * @param fieldName
-   * @param fieldValStr
-   * @return True, if native value is null or empty. False, otherwise.
+   * @return the value, or {@link #UNCONVERTED} if it could not be converted
    */
-  @VisibleForTesting
-  boolean handleBlankVal(StructuredRecord.Builder recBuilder, String fieldName,
-                         @Nullable String fieldValStr) {
-
-    if (fieldValStr == null || fieldValStr.trim().isEmpty()) {
-      // If no non-whitespace char is present in value and field type is String, then
-      // set original value (consisting of only whitespace) to CDAP field
-      recBuilder.set(fieldName, fieldValStr);
-      return true;
+  @Nullable
+  private Object getSchemaTypeValue(Schema nonNullSchema, String fieldName, @Nullable String fieldValue) {
+    if (fieldValue == null || fieldValue.trim().isEmpty()) {
+      return fieldValue;
+    }
+    try {
+      return getValue(nonNullSchema, fieldName, fieldValue);
+    } catch (IOException e) {
+      LOG.error("Error in Processing Schema type value, cause: {}", e.getMessage());
+      return UNCONVERTED;
     }
+  }
+
+  @Nullable
+  @VisibleForTesting
+  Object getFieldNativeValue(JsonNode nativeRawRecord, String fieldName) {
+    JsonNode recordValue = nativeRawRecord.get(fieldName);
+    return recordValue == null ? null : getNativeValue(recordValue);
+  }
+
+  @Nullable
+  private Object getNativeValue(JsonNode recordValue) {
+    switch (recordValue.getNodeType()) {
+      case ARRAY:
+      case OBJECT:
+        return recordValue;
 
-    return false;
+      case STRING:
+      case NUMBER:
+      case BOOLEAN:
+        return recordValue.asText();
+
+      default:
+        return null;
+    }
   }
 
   /**
-   * Processes field native value according to their type based on Schema Simple
+   * Converts field native value according to their type based on Schema Simple
    * Type or Logical Type
    *
    * @param nonNullSchema
-   * @param recBuilder
    * @param encodedFieldName
    * @param fieldValStr
+   * @return value of the field, as stored in a {@code StructuredRecord}
    * @throws IOException
    */
-  private void processValue(Schema nonNullSchema, StructuredRecord.Builder recBuilder, String encodedFieldName,
-                            String fieldValStr)
+  @Nullable
+  private Object getValue(Schema nonNullSchema, String encodedFieldName, String fieldValStr)
     throws IOException {
 
     try {
       if (nonNullSchema.getLogicalType() != null) {
-        processLogicalTypeVal(nonNullSchema, recBuilder, encodedFieldName, fieldValStr.trim());
-      } else {
-        processTypeVal(nonNullSchema.getType(), recBuilder, encodedFieldName, fieldValStr);
+        return getLogicalTypeVal(nonNullSchema, encodedFieldName, fieldValStr.trim());
       }
+      return getTypeVal(nonNullSchema.getType(), encodedFieldName, fieldValStr);
     } catch (Exception e) {
       handleConversionException(nonNullSchema.getLogicalType() != null ? nonNullSchema.getLogicalType().toString()
                                   : nonNullSchema.getType().toString(), encodedFieldName, fieldValStr, e);
     }
+    // not reached, the conversion error is thrown
+    return UNCONVERTED;
   }
 
   /**
-   * Process the value for field which is mapped to a {@code Schema.LogicalType}
-   * and set into the {@code StructuredRecord.Builder}.
+   * Converts the value for field which is mapped to a {@code Schema.LogicalType}
+   * to the value stored in a {@code StructuredRecord}.
    *
    * @param nonNullSchema non nullable Schema
-   * @param recBuilder    Structured record builder
    * @param fieldName     Ariba objects's field name (may be encoded to remove CDAP
    *                      unsupported chars)
    * @param fieldValTrim  trimmed value corresponding to an Ariba object's field
    *                      name
    */
-  private void processLogicalTypeVal(Schema nonNullSchema, StructuredRecord.Builder recBuilder, String fieldName,
-                                     String fieldValTrim) {
+  @Nullable
+  private Object getLogicalTypeVal(Schema nonNullSchema, String fieldName, String fieldValTrim) {
 
     switch (Objects.requireNonNull(nonNullSchema.getLogicalType())) {
       case DECIMAL:
-        fieldValTrim = handleMinusAtEnd(fieldValTrim);
-        recBuilder.setDecimal(fieldName, new BigDecimal(fieldValTrim).setScale(nonNullSchema.getScale()));
-        break;
+        BigDecimal decimal = AribaNumberUtil.parseDecimal(fieldValTrim).setScale(nonNullSchema.getScale());
+        if (decimal.precision() > nonNullSchema.getPrecision()) {
+          throw new UnexpectedFormatException(String.format(
+            "Field '%s' has precision '%s' which is higher than schema precision '%s'.", fieldName,
+            decimal.precision(), nonNullSchema.getPrecision()));
+        }
+        return decimal.unscaledValue().toByteArray();
 
       case DATE:
-        recBuilder.setDate(fieldName, getSourceSpecificDateValue(fieldValTrim));
-        break;
+        // Well-formed values are converted directly to epoch days, anything else goes through java.time
+        int epochDay = AribaDateTimeUtil.parseBasicDate(fieldValTrim);
+        if (epochDay == AribaDateTimeUtil.INVALID_DATE || fieldValTrim.startsWith(DEFAULT_DATE_PREFIX)) {
+          LocalDate date = getSourceSpecificDateValue(fieldValTrim);
+          return date == null ? null : Math.toIntExact(date.toEpochDay());
+        }
+        return epochDay;
 
       case TIME_MICROS:
-        recBuilder.setTime(fieldName, getSourceSpecificTimeValue(fieldValTrim));
-        break;
+        long microsOfDay = AribaDateTimeUtil.parseBasicTimeMicros(fieldValTrim);
+        if (microsOfDay == AribaDateTimeUtil.INVALID_TIME) {
+          return TimeUnit.NANOSECONDS.toMicros(getSourceSpecificTimeValue(fieldValTrim).toNanoOfDay());
+        }
+        return microsOfDay;
 
       case TIMESTAMP_MICROS:
-        ZonedDateTime zonedDateTime = null;
         // Check if UTCLONG string having format yyyy-MM-dd HH:mm:ss'Z' does not
         // start with default date value part 0000
-        if (!fieldValTrim.startsWith("0000")) {
+        if (fieldValTrim.startsWith(DEFAULT_DATE_PREFIX)) {
+          return null;
+        }
+        long epochMicros = AribaDateTimeUtil.parseTimestampMicros(fieldValTrim);
+        if (epochMicros == AribaDateTimeUtil.INVALID_TIMESTAMP) {
           String parsableTimestamp = fieldValTrim.replace(' ', 'T');
-          zonedDateTime = ZonedDateTime.parse(parsableTimestamp, DateTimeFormatter.ISO_DATE_TIME);
-          zonedDateTime = zonedDateTime.plus(0, ChronoUnit.NANOS);
+          ZonedDateTime timestamp = ZonedDateTime.parse(parsableTimestamp, DateTimeFormatter.ISO_DATE_TIME);
+          return Math.addExact(TimeUnit.SECONDS.toMicros(timestamp.toEpochSecond()),
+                               TimeUnit.NANOSECONDS.toMicros(timestamp.getNano()));
         }
-        recBuilder.setTimestamp(fieldName, zonedDateTime);
-        break;
+        return epochMicros;
 
       default:
-        recBuilder.set(fieldName, fieldValTrim);
-        break;
+        return fieldValTrim;
     }
   }
 
   /**
-   * Process the value for field which is mapped to a {@code Schema.Type} and set
-   * into the {@code StructuredRecord.Builder}.
+   * Converts the value for field which is mapped to a {@code Schema.Type}.
    *
    * @param fieldType   Schema field logical type
-   * @param recBuilder  Structured record builder
    * @param fieldName   Ariba object's field name (may be encoded to remove CDAP
    *                    unsupported chars)
    * @param fieldValStr value corresponding to an Ariba object's field
    */
-  private void processTypeVal(Schema.Type fieldType, StructuredRecord.Builder recBuilder, String fieldName,
-                              String fieldValStr) {
+  @Nullable
+  private Object getTypeVal(Schema.Type fieldType, String fieldName, String fieldValStr) {
 
-    String colValTrim = fieldValStr.trim();
     switch (fieldType) {
       case INT:
-        colValTrim = handleMinusAtEnd(colValTrim);
-        recBuilder.set(fieldName, Integer.parseInt(colValTrim));
-        break;
+        return AribaNumberUtil.parseInt(fieldValStr);
 
       case LONG:
-        colValTrim = handleMinusAtEnd(colValTrim);
-        recBuilder.set(fieldName, Long.parseLong(colValTrim));
-        break;
+        return AribaNumberUtil.parseLong(fieldValStr);
 
       case DOUBLE:
-        colValTrim = handleMinusAtEnd(colValTrim);
-        recBuilder.set(fieldName, Double.parseDouble(colValTrim));
-        break;
+        return AribaNumberUtil.parseDouble(fieldValStr);
 
       case BYTES:
-        recBuilder.set(fieldName, Bytes.toBytesBinary(colValTrim));
-        break;
+        return Bytes.toBytesBinary(fieldValStr.trim());
 
       case BOOLEAN:
-        recBuilder.set(fieldName, Boolean.parseBoolean(colValTrim));
-        break;
+        return Boolean.parseBoolean(fieldValStr.trim());
 
       case STRING:
-        recBuilder.set(fieldName, fieldValStr);
-        break;
+        return fieldValStr;
 
       case NULL:
-        recBuilder.set(fieldName, null);
-        break;
+        return null;
 
       default:
         // shouldn't ever get here
@@ -315,35 +418,12 @@ public class AribaStructuredTransformer {
     throw new IOException(err, e);
   }
 
-  /**
-   * Removes minus sign from the end of the string and puts it at the beginning.
-   * This handling is required for number values because some profile settings in
-   * Ariba may result in the minus sign being put at the end of the number like
-   * {@code 12345-}.
-   *
-   * @param fieldValTrim Trimmed field native value
-   * @return String with minus appended at the beginning if it was at the end.
-   * Else returns the same string
-   */
-  @VisibleForTesting
-  String handleMinusAtEnd(String fieldValTrim) {
-    char lastChar = fieldValTrim.charAt(fieldValTrim.length() - 1);
-    if (lastChar == ResourceConstants.HYPHEN) {
-      StringBuilder sb = new StringBuilder(fieldValTrim);
-      sb.deleteCharAt(sb.length() - 1).insert(0, lastChar);
-      fieldValTrim = sb.toString();
-    }
-
-    return fieldValTrim;
-  }
-
-
   @Nullable
   @VisibleForTesting
   LocalDate getSourceSpecificDateValue(String rawDateValue) {
     LocalDate localDate = null;
     // Date field in Ariba may have default/uninitialized value starting with 0000
-    if (!rawDateValue.startsWith("0000")) {
+    if (!rawDateValue.startsWith(DEFAULT_DATE_PREFIX)) {
       localDate = LocalDate.parse(rawDateValue, DateTimeFormatter.BASIC_ISO_DATE);
     }
     return localDate;
@@ -353,6 +433,10 @@ public class AribaStructuredTransformer {
   LocalTime getSourceSpecificTimeValue(String rawTimeValue) {
     // Handle invalid time values = 240000. It is invalid and must be rolled over to
     // 000000. Any other invalid values > 235959, must simply throw an error.
+    long microsOfDay = AribaDateTimeUtil.parseBasicTimeMicros(rawTimeValue);
+    if (microsOfDay != AribaDateTimeUtil.INVALID_TIME) {
+      return LocalTime.ofNanoOfDay(TimeUnit.MICROSECONDS.toNanos(microsOfDay));
+    }
     if (ResourceConstants.INVALID_TIME_VALUE.equals(rawTimeValue)) {
       rawTimeValue = "000000";
     }
@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * A single job filter, i.e. one entry of the {@code filters} object of an Ariba job request. The filter name
+ * must be one of the {@code filterExpressions} of the view template. Values are typed as in JSON: {@code true} and
+ * {@code false} are booleans, numbers are numbers, and any other value, or a value in double quotes, is a string.
+ */
+public class AribaJobFilter {
+
+  public static final String CREATED_DATE_FROM = "createdDateFrom";
+  public static final String CREATED_DATE_TO = "createdDateTo";
+  public static final String UPDATED_DATE_FROM = "updatedDateFrom";
+  public static final String UPDATED_DATE_TO = "updatedDateTo";
+  // Date range filters are driven by the 'From Date' and 'To Date' properties
+  public static final Set<String> DATE_RANGE_FILTERS = Collections.unmodifiableSet(
+    new HashSet<>(Arrays.asList(CREATED_DATE_FROM, CREATED_DATE_TO, UPDATED_DATE_FROM, UPDATED_DATE_TO)));
+
+  static final String FILTER_DELIMITER = ";";
+  static final String NAME_VALUE_DELIMITER = "=";
+  private static final String QUOTE = "\"";
+  // Decimals are sent as given, without normalizing their trailing zeros
+  private static final JsonNodeFactory NODES = JsonNodeFactory.withExactBigDecimals(true);
+  private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][-+]?[0-9]+)?");
+
+  private final String name;
+  private final JsonNode value;
+
+  public AribaJobFilter(String name, JsonNode value) {
+    this.name = name;
+    this.value = value;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return value of the filter, a boolean, number or text node
+   */
+  public JsonNode getValue() {
+    return value;
+  }
+
+  /**
+   * Parses filters given as {@code name1=value1;name2=value2}.
+   *
+   * @param filters filters property value
+   * @return list of {@code AribaJobFilter}, empty if no filters are given
+   * @throws IllegalArgumentException if an entry has no name or no value, or a name is repeated
+   */
+  public static List<AribaJobFilter> parse(@Nullable String filters) {
+    if (filters == null || filters.trim().isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    List<AribaJobFilter> jobFilters = new ArrayList<>();
+    Set<String> names = new HashSet<>();
+    for (String entry : filters.split(FILTER_DELIMITER)) {
+      if (entry.trim().isEmpty()) {
+        continue;
+      }
+      int delimiter = entry.indexOf(NAME_VALUE_DELIMITER);
+      String name = delimiter < 0 ? "" : entry.substring(0, delimiter).trim();
+      String value = delimiter < 0 ? "" : entry.substring(delimiter + 1).trim();
+      if (name.isEmpty() || value.isEmpty()) {
+        throw new IllegalArgumentException(String.format("Filter '%s' must have the format 'name=value'.",
+                                                         entry.trim()));
+      }
+      if (!names.add(name)) {
+        throw new IllegalArgumentException(String.format("Filter '%s' is specified more than once.", name));
+      }
+      jobFilters.add(new AribaJobFilter(name, parseValue(value)));
+    }
+    return jobFilters;
+  }
+
+  /**
+   * Parses a filter value. Numbers with leading zeros, such as codes, are not valid JSON numbers and stay strings.
+   */
+  private static JsonNode parseValue(String value) {
+    if (value.length() > 1 && value.startsWith(QUOTE) && value.endsWith(QUOTE)) {
+      return NODES.textNode(value.substring(1, value.length() - 1));
+    }
+    if (Boolean.TRUE.toString().equals(value) || Boolean.FALSE.toString().equals(value)) {
+      return NODES.booleanNode(Boolean.parseBoolean(value));
+    }
+    if (NUMBER.matcher(value).matches()) {
+      BigDecimal number = new BigDecimal(value);
+      if (number.scale() > 0) {
+        return NODES.numberNode(number);
+      }
+      BigInteger integer = number.toBigInteger();
+      return integer.bitLength() < Long.SIZE ? NODES.numberNode(integer.longValue()) : NODES.numberNode(integer);
+    }
+    return NODES.textNode(value);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    AribaJobFilter that = (AribaJobFilter) o;
+    return name.equals(that.name) && value.equals(that.value);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(name, value);
+  }
+
+  @Override
+  public String toString() {
+    return name + NAME_VALUE_DELIMITER + value;
+  }
+}
@@ -32,7 +32,12 @@ import org.slf4j.LoggerFactory;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
@@ -50,6 +55,8 @@ public class AribaPluginConfig extends ReferencePluginConfig {
   public static final String APIKEY = "apiKey";
   public static final String FROM_DATE = "fromDate";
   public static final String TO_DATE = "toDate";
+  public static final String JOB_FILTERS = "jobFilters";
+  public static final String TEMPLATE_NAME_DELIMITER = ",";
   public static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
   public static final String REFERENCE_NAME = "referenceName";
   public static final String TOKEN_URL = "tokenURL";
@@ -57,6 +64,17 @@ public class AribaPluginConfig extends ReferencePluginConfig {
   private static final String NAME_MAX_RETRY_DURATION = "maxRetryDuration";
   private static final String NAME_RETRY_MULTIPLIER = "retryMultiplier";
   private static final String NAME_MAX_RETRY_COUNT = "maxRetryCount";
+  public static final String NAME_INTERN_STRING_VALUES = "internStringValues";
+  public static final String NAME_USE_VIRTUAL_THREADS = "useVirtualThreads";
+  public static final String NAME_RUN_PROFILE_PATH = "runProfilePath";
+  public static final String NAME_RUN_TIMEOUT = "runTimeout";
+  public static final String NAME_DOWNLOAD_HEDGE_PERCENTILE = "downloadHedgePercentile";
+  public static final String NAME_READ_MODE = "readMode";
+  public static final String READ_MODE_JOBS = "jobs";
+  public static final String READ_MODE_SYNC = "sync";
+  public static final String READ_MODE_AUTO = "auto";
+  public static final String NAME_SYNC_RECORD_THRESHOLD = "syncRecordThreshold";
+  public static final int DEFAULT_SYNC_RECORD_THRESHOLD = 5000;
   public static final int DEFAULT_INITIAL_RETRY_DURATION_SECONDS = 2;
   public static final int DEFAULT_RETRY_MULTIPLIER = 2;
   public static final int DEFAULT_MAX_RETRY_COUNT = 3;
@@ -69,7 +87,9 @@ public class AribaPluginConfig extends ReferencePluginConfig {
    */
 
   @Macro
-  @Description("Name of the view template from which data is to be extracted.")
+  @Description("Name of the view template from which data is to be extracted. Multiple templates can be " +
+    "extracted by a single source as a comma separated list, every record then carries the name of its template " +
+    "in the 'templateName' field.")
   private final String viewTemplateName;
 
  @Name(ConfigUtil.NAME_CONNECTION)
@@ -101,6 +121,14 @@ public class AribaPluginConfig extends ReferencePluginConfig {
   @Description("End date of the extract")
   private final String toDate;
 
+  @Name(JOB_FILTERS)
+  @Nullable
+  @Macro
+  @Description("Additional filters of the extraction job as 'name=value' pairs separated by ';'. The names must " +
+    "be filter expressions of the view template. Numbers and booleans are sent typed, a value in double quotes " +
+    "is sent as a string.")
+  private final String jobFilters;
+
   @Name(NAME_INITIAL_RETRY_DURATION)
   @Description("Time taken for the first retry. Default is 2 seconds.")
   @Nullable
@@ -125,6 +153,58 @@ public class AribaPluginConfig extends ReferencePluginConfig {
   @Macro
   private final Integer retryMultiplier;
 
+  @Name(NAME_INTERN_STRING_VALUES)
+  @Description("Share a single instance of repeated values of low cardinality string fields across records. " +
+    "Cardinality is detected per field from the first records read. Default is false.")
+  @Nullable
+  @Macro
+  private final Boolean internStringValues;
+
+  @Name(NAME_USE_VIRTUAL_THREADS)
+  @Description("Poll the status of the jobs of several view templates on virtual threads when the runtime is " +
+    "Java 21 or later. Older runtimes use a bounded pool of platform threads. Default is false.")
+  @Nullable
+  @Macro
+  private final Boolean useVirtualThreads;
+
+  @Name(NAME_RUN_PROFILE_PATH)
+  @Description("Directory to write a JSON profile of every run to, for example, gs://bucket/ariba-profiles. The " +
+    "profile lists the Ariba jobs, the result files read and the rate limit headroom over time. No profile is " +
+    "written if not set.")
+  @Nullable
+  @Macro
+  private final String runProfilePath;
+
+  @Name(NAME_RUN_TIMEOUT)
+  @Description("Maximum time in minutes a run can call Ariba. Once exceeded, calls in flight are cut and no " +
+    "more calls are made, so that a stuck run fails instead of blocking the pipeline. No limit if not set.")
+  @Nullable
+  @Macro
+  private final Integer runTimeout;
+
+  @Name(NAME_DOWNLOAD_HEDGE_PERCENTILE)
+  @Description("Percentile of the response times of the previous result file requests after which a file that " +
+    "did not start arriving is requested a second time, for example, 95. The first file to arrive is used. Hedged " +
+    "requests are limited to a tenth of the downloads. No hedging if not set.")
+  @Nullable
+  @Macro
+  private final Integer downloadHedgePercentile;
+
+  @Name(NAME_READ_MODE)
+  @Description("How the records are read: 'jobs' to create extraction jobs on Ariba and download their result " +
+    "files, 'sync' to page through the synchronous view endpoint, which returns small extracts without waiting " +
+    "for a job, 'auto' to pick one of them per view template from its estimated number of records. Default is " +
+    "'jobs'.")
+  @Nullable
+  @Macro
+  private final String readMode;
+
+  @Name(NAME_SYNC_RECORD_THRESHOLD)
+  @Description("Maximum estimated number of records of a view template read from the synchronous view endpoint " +
+    "in the 'auto' read mode, larger extracts are read with jobs. Default is 5000.")
+  @Nullable
+  @Macro
+  private final Integer syncRecordThreshold;
 
   public AribaPluginConfig(String referenceName,
                            String baseURL,
@@ -139,16 +219,36 @@ public class AribaPluginConfig extends ReferencePluginConfig {
                            @Nullable String toDate,
                            @Nullable Integer initialRetryDuration, @Nullable Integer maxRetryDuration,
                            @Nullable Integer retryMultiplier, @Nullable Integer maxRetryCount) {
+    this(new Builder().referenceName(referenceName).baseURL(baseURL).systemType(systemType).realm(realm)
+           .viewTemplateName(viewTemplateName).clientId(clientId).clientSecret(clientSecret).apiKey(apiKey)
+           .tokenURL(tokenURL).fromDate(fromDate).toDate(toDate).initialRetryDuration(initialRetryDuration)
+           .maxRetryDuration(maxRetryDuration).retryMultiplier(retryMultiplier).maxRetryCount(maxRetryCount));
+  }
 
-    super(referenceName);
-    this.viewTemplateName = viewTemplateName;
-    this.connection = new AribaConnectorConfig(clientId, clientSecret, apiKey, baseURL, realm, systemType, tokenURL);
-    this.fromDate = fromDate;
-    this.toDate = toDate;
-    this.initialRetryDuration = initialRetryDuration;
-    this.maxRetryDuration = maxRetryDuration;
-    this.maxRetryCount = maxRetryCount;
-    this.retryMultiplier = retryMultiplier;
+  /**
+   * Properties added after the positional constructor are set through the {@link Builder} only.
+   */
+  private AribaPluginConfig(Builder builder) {
+    super(builder.referenceName);
+    this.viewTemplateName = builder.viewTemplateName;
+    this.connection = new AribaConnectorConfig(builder.clientId, builder.clientSecret, builder.apiKey,
+                                               builder.baseURL, builder.realm, builder.systemType, builder.tokenURL,
+                                               builder.connectTimeout, builder.tokenTimeout, builder.metadataTimeout,
+                                               builder.pollTimeout, builder.downloadTimeout);
+    this.fromDate = builder.fromDate;
+    this.toDate = builder.toDate;
+    this.initialRetryDuration = builder.initialRetryDuration;
+    this.maxRetryDuration = builder.maxRetryDuration;
+    this.maxRetryCount = builder.maxRetryCount;
+    this.retryMultiplier = builder.retryMultiplier;
+    this.internStringValues = builder.internStringValues;
+    this.jobFilters = builder.jobFilters;
+    this.useVirtualThreads = builder.useVirtualThreads;
+    this.runProfilePath = builder.runProfilePath;
+    this.runTimeout = builder.runTimeout;
+    this.downloadHedgePercentile = builder.downloadHedgePercentile;
+    this.readMode = builder.readMode;
+    this.syncRecordThreshold = builder.syncRecordThreshold;
   }
 
 
@@ -156,6 +256,29 @@ public class AribaPluginConfig extends ReferencePluginConfig {
     return viewTemplateName;
   }
 
+  /**
+   * @return distinct view template names in the configured order
+   */
+  public List<String> getViewTemplateNames() {
+    if (viewTemplateName == null) {
+      return Collections.emptyList();
+    }
+    Set<String> templateNames = new LinkedHashSet<>();
+    for (String templateName : viewTemplateName.split(TEMPLATE_NAME_DELIMITER)) {
+      if (!templateName.trim().isEmpty()) {
+        templateNames.add(templateName.trim());
+      }
+    }
+    return new ArrayList<>(templateNames);
+  }
+
+  /**
+   * @return true if more than one view template is extracted by the source
+   */
+  public boolean isMultiTemplate() {
+    return getViewTemplateNames().size() > 1;
+  }
+
   public String getReferenceName() {
     return this.referenceName;
   }
@@ -170,6 +293,14 @@ public class AribaPluginConfig extends ReferencePluginConfig {
     return toDate;
   }
 
+  /**
+   * @return additional job filters, empty if none are configured
+   * @throws IllegalArgumentException if the filters property is not valid
+   */
+  public List<AribaJobFilter> getJobFilters() {
+    return AribaJobFilter.parse(jobFilters);
+  }
+
   public int getInitialRetryDuration() {
     return initialRetryDuration == null ? DEFAULT_INITIAL_RETRY_DURATION_SECONDS : initialRetryDuration;
   }
@@ -186,6 +317,63 @@ public class AribaPluginConfig extends ReferencePluginConfig {
     return maxRetryCount == null ? DEFAULT_MAX_RETRY_COUNT : maxRetryCount;
   }
 
+  public boolean isInternStringValues() {
+    return internStringValues != null && internStringValues;
+  }
+
+  public boolean isUseVirtualThreads() {
+    return useVirtualThreads != null && useVirtualThreads;
+  }
+
+  @Nullable
+  public String getRunProfilePath() {
+    return AribaUtil.isNullOrEmpty(runProfilePath) ? null : runProfilePath.trim();
+  }
+
+  /**
+   * @return maximum time in minutes a run can call Ariba, 0 for no limit
+   */
+  public int getRunTimeout() {
+    return runTimeout == null ? 0 : runTimeout;
+  }
+
+  /**
+   * @return percentile of the download times after which a file is requested a second time, 0 for no hedging
+   */
+  public int getDownloadHedgePercentile() {
+    return downloadHedgePercentile == null ? 0 : downloadHedgePercentile;
+  }
+
+  /**
+   * @return {@link #READ_MODE_JOBS}, {@link #READ_MODE_SYNC} or {@link #READ_MODE_AUTO}
+   */
+  public String getReadMode() {
+    return AribaUtil.isNullOrEmpty(readMode) ? READ_MODE_JOBS : readMode.trim().toLowerCase();
+  }
+
+  /**
+   * @return true if the records are read from the synchronous view endpoint instead of extraction jobs
+   */
+  public boolean isSyncRead() {
+    return READ_MODE_SYNC.equals(getReadMode());
+  }
+
+  /**
+   * @return true if every view template is read from the synchronous view endpoint or with jobs depending on its
+   * estimated number of records
+   */
+  public boolean isAutoRead() {
+    return READ_MODE_AUTO.equals(getReadMode());
+  }
+
+  /**
+   * @return maximum estimated number of records of a view template read from the synchronous view endpoint in the
+   * automatic read mode
+   */
+  public int getSyncRecordThreshold() {
+    return syncRecordThreshold == null ? DEFAULT_SYNC_RECORD_THRESHOLD : syncRecordThreshold;
+  }
+
   /**
    * Validates the given {@code AribaPluginConfig} and throws the relative error messages.
    *
@@ -207,11 +395,28 @@ public class AribaPluginConfig extends ReferencePluginConfig {
     if (AribaUtil.isNotNullOrEmpty(fromDate) || AribaUtil.isNotNullOrEmpty(toDate)) {
       validateAdvanceParameters(failureCollector);
     }
+    if (!containsMacro(JOB_FILTERS)) {
+      validateJobFilters(failureCollector);
+    }
     LOG.debug("Validating the retry parameters.");
     if (!containsMacro(NAME_INITIAL_RETRY_DURATION) && !containsMacro(NAME_MAX_RETRY_DURATION) &&
       !containsMacro(NAME_MAX_RETRY_COUNT) && !containsMacro(NAME_RETRY_MULTIPLIER)) {
       validateRetryConfiguration(failureCollector);
     }
+    if (!containsMacro(NAME_RUN_TIMEOUT)) {
+      validateRunTimeout(failureCollector);
+    }
+    if (!containsMacro(NAME_DOWNLOAD_HEDGE_PERCENTILE)) {
+      validateDownloadHedgePercentile(failureCollector);
+    }
+    if (!containsMacro(NAME_READ_MODE)) {
+      validateReadMode(failureCollector);
+    }
+    if (!containsMacro(NAME_SYNC_RECORD_THRESHOLD) && syncRecordThreshold != null && syncRecordThreshold <= 0) {
+      failureCollector.addFailure("Sync record threshold must be greater than 0.",
+          "Please specify a valid number of records.")
+        .withConfigProperty(NAME_SYNC_RECORD_THRESHOLD);
+    }
 
     failureCollector.getOrThrowException();
   }
@@ -296,6 +501,59 @@ public class AribaPluginConfig extends ReferencePluginConfig {
     }
   }
 
+  /**
+   * Validates the syntax of the additional job filters. Whether the filters are supported by the view templates
+   * is checked by {@link #validateJobFilters(FailureCollector, String, Set)} once their filter expressions are
+   * fetched.
+   *
+   * @param failureCollector {@code FailureCollector}
+   */
+  private void validateJobFilters(FailureCollector failureCollector) {
+    try {
+      for (AribaJobFilter jobFilter : getJobFilters()) {
+        if (AribaJobFilter.DATE_RANGE_FILTERS.contains(jobFilter.getName())) {
+          failureCollector.addFailure(String.format("Filter '%s' can not be used as additional filter.",
+                                                    jobFilter.getName()),
+                                      "Please use 'From Date' and 'To Date' to filter by date range.")
+            .withConfigProperty(JOB_FILTERS);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      failureCollector.addFailure(e.getMessage(), "Please specify filters as 'name1=value1;name2=value2'.")
+        .withConfigProperty(JOB_FILTERS);
+    }
+  }
+
+  /**
+   * Validates the additional job filters against the filter expressions of a view template, so that an unsupported
+   * filter fails the validation rather than the job creation. Filters with a macro or an invalid syntax are skipped.
+   *
+   * @param failureCollector {@code FailureCollector}
+   * @param templateName     view template name
+   * @param supportedFilters names of the filter expressions of the view template
+   */
+  public void validateJobFilters(FailureCollector failureCollector, String templateName,
+                                 Set<String> supportedFilters) {
+    if (containsMacro(JOB_FILTERS)) {
+      return;
+    }
+    List<AribaJobFilter> filters;
+    try {
+      filters = getJobFilters();
+    } catch (IllegalArgumentException e) {
+      // Reported by the validation of the plugin parameters
+      return;
+    }
+    for (AribaJobFilter jobFilter : filters) {
+      if (!AribaJobFilter.DATE_RANGE_FILTERS.contains(jobFilter.getName()) &&
+        !supportedFilters.contains(jobFilter.getName())) {
+        failureCollector.addFailure(ResourceConstants.ERR_UNSUPPORTED_JOB_FILTER.getMsgForKey(
+          jobFilter.getName(), templateName, supportedFilters), "Please remove the filter or change its name.")
+          .withConfigProperty(JOB_FILTERS);
+      }
+    }
+  }
+
   public void validateRetryConfiguration(FailureCollector failureCollector) {
     if (initialRetryDuration != null && initialRetryDuration <= 0) {
       failureCollector.addFailure("Initial retry duration must be greater than 0.",
@@ -324,6 +582,30 @@ public class AribaPluginConfig extends ReferencePluginConfig {
     }
   }
 
+  private void validateRunTimeout(FailureCollector failureCollector) {
+    if (runTimeout != null && runTimeout <= 0) {
+      failureCollector.addFailure("Run timeout must be greater than 0.", "Please specify a valid run timeout.")
+        .withConfigProperty(NAME_RUN_TIMEOUT);
+    }
+  }
+
+  private void validateDownloadHedgePercentile(FailureCollector failureCollector) {
+    if (downloadHedgePercentile != null && (downloadHedgePercentile < 1 || downloadHedgePercentile > 99)) {
+      failureCollector.addFailure("Download hedge percentile must be between 1 and 99.",
+          "Please specify a valid percentile, for example, 95.")
+        .withConfigProperty(NAME_DOWNLOAD_HEDGE_PERCENTILE);
+    }
+  }
+
+  private void validateReadMode(FailureCollector failureCollector) {
+    String mode = getReadMode();
+    if (!READ_MODE_JOBS.equals(mode) && !READ_MODE_SYNC.equals(mode) && !READ_MODE_AUTO.equals(mode)) {
+      failureCollector.addFailure(String.format("Read mode '%s' is not supported.", readMode),
+          String.format("Please specify '%s', '%s' or '%s'.", READ_MODE_JOBS, READ_MODE_SYNC, READ_MODE_AUTO))
+        .withConfigProperty(NAME_READ_MODE);
+    }
+  }
+
   /**
    * Checks if the call to Ariba service is required for metadata creation.
    * condition parameters: ['host' | 'Realm' | 'Template' | 'Client Id' | 'Client Secret']
@@ -351,12 +633,25 @@ public class AribaPluginConfig extends ReferencePluginConfig {
     private String clientSecret;
     private String apiKey;
     private String tokenURL;
+    private Integer connectTimeout;
+    private Integer tokenTimeout;
+    private Integer metadataTimeout;
+    private Integer pollTimeout;
+    private Integer downloadTimeout;
     private String fromDate;
     private String toDate;
     private Integer initialRetryDuration;
     private Integer maxRetryDuration;
     private Integer retryMultiplier;
     private Integer maxRetryCount;
+    private Boolean internStringValues;
+    private Boolean useVirtualThreads;
+    private String runProfilePath;
+    private Integer runTimeout;
+    private Integer downloadHedgePercentile;
+    private String readMode;
+    private Integer syncRecordThreshold;
+    private String jobFilters;
 
     public Builder referenceName(String referenceName) {
       this.referenceName = referenceName;
@@ -403,6 +698,31 @@ public class AribaPluginConfig extends ReferencePluginConfig {
       return this;
     }
 
+    public Builder connectTimeout(Integer connectTimeout) {
+      this.connectTimeout = connectTimeout;
+      return this;
+    }
+
+    public Builder tokenTimeout(Integer tokenTimeout) {
+      this.tokenTimeout = tokenTimeout;
+      return this;
+    }
+
+    public Builder metadataTimeout(Integer metadataTimeout) {
+      this.metadataTimeout = metadataTimeout;
+      return this;
+    }
+
+    public Builder pollTimeout(Integer pollTimeout) {
+      this.pollTimeout = pollTimeout;
+      return this;
+    }
+
+    public Builder downloadTimeout(Integer downloadTimeout) {
+      this.downloadTimeout = downloadTimeout;
+      return this;
+    }
+
     public Builder fromDate(String fromDate) {
       this.fromDate = fromDate;
       return this;
@@ -433,9 +753,48 @@ public class AribaPluginConfig extends ReferencePluginConfig {
       return this;
     }
 
+    public Builder internStringValues(Boolean internStringValues) {
+      this.internStringValues = internStringValues;
+      return this;
+    }
+
+    public Builder useVirtualThreads(Boolean useVirtualThreads) {
+      this.useVirtualThreads = useVirtualThreads;
+      return this;
+    }
+
+    public Builder runProfilePath(String runProfilePath) {
+      this.runProfilePath = runProfilePath;
+      return this;
+    }
+
+    public Builder runTimeout(Integer runTimeout) {
+      this.runTimeout = runTimeout;
+      return this;
+    }
+
+    public Builder downloadHedgePercentile(Integer downloadHedgePercentile) {
+      this.downloadHedgePercentile = downloadHedgePercentile;
+      return this;
+    }
+
+    public Builder readMode(String readMode) {
+      this.readMode = readMode;
+      return this;
+    }
+
+    public Builder syncRecordThreshold(Integer syncRecordThreshold) {
+      this.syncRecordThreshold = syncRecordThreshold;
+      return this;
+    }
+
+    public Builder jobFilters(String jobFilters) {
+      this.jobFilters = jobFilters;
+      return this;
+    }
+
     public AribaPluginConfig build() {
-      return new AribaPluginConfig(referenceName, baseURL, systemType, realm, viewTemplateName, clientId, clientSecret,
-        apiKey, tokenURL, fromDate, toDate, initialRetryDuration, maxRetryDuration, retryMultiplier, maxRetryCount);
+      return new AribaPluginConfig(this);
     }
   }
 }
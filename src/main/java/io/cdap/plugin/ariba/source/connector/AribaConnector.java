@@ -16,7 +16,8 @@
 package io.cdap.plugin.ariba.source.connector;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -50,25 +51,22 @@ import io.cdap.plugin.common.ConfigUtil;
 import io.cdap.plugin.common.Constants;
 import io.cdap.plugin.common.ReferenceNames;
 import okhttp3.HttpUrl;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 
 /**
@@ -83,20 +81,19 @@ public class AribaConnector implements DirectConnector {
   private static final String ENTITY_TYPE_TEMPLATE = "template";
   private static final String VIEW_TEMPLATE = "viewTemplateName";
   private static final String PATH_SEGMENT = "%s/viewTemplates";
-  private static final String DATA_PATH_SEGMENT = "%s/views";
+  private static final int DEFAULT_SAMPLE_LIMIT = 1000;
+  // View templates of a browse whose schema is prefetched, the first ones listed
+  private static final int MAX_PREFETCHED_SCHEMAS = 20;
   private static final String RECORDS = "Records";
   private static final String TOKEN = "PageToken";
   private static final Gson GSON = new Gson();
   private final AribaConnectorConfig config;
   private final AribaServices aribaServices;
-  private static final String AUTHORIZATION = "Authorization";
   private String accessToken;
-  private final ObjectMapper objectMapper = new ObjectMapper();
-  private ListIterator<JsonNode> jsonNodeListIterator;
 
   public AribaConnector(AribaConnectorConfig config) {
     this.config = config;
-    aribaServices = new AribaServices(config,
+    aribaServices = AribaServices.getShared(config,
       AribaPluginConfig.DEFAULT_MAX_RETRY_COUNT,
       AribaPluginConfig.DEFAULT_INITIAL_RETRY_DURATION_SECONDS,
       AribaPluginConfig.DEFAULT_MAX_RETRY_DURATION_SECONDS,
@@ -113,31 +110,43 @@ public class AribaConnector implements DirectConnector {
     collector.getOrThrowException();
   }
 
+  /**
+   * Lists the view templates of the realm from the shared catalog. The path filters the view templates whose name
+   * contains it, ignoring case, and at most the requested number of them are returned. If enabled, the schemas of
+   * the first view templates returned are built in the background.
+   */
   @Override
   public BrowseDetail browse(ConnectorContext connectorContext, BrowseRequest browseRequest) throws IOException {
     BrowseDetail.Builder browseDetailBuilder = BrowseDetail.builder();
-    int count = 0;
-    JsonArray jsonElements = new JsonArray();
-    JsonArray jsonArray = listTemplates(null, jsonElements);
-    for (JsonElement jsonElement : jsonArray) {
-      JsonObject resultJsonObject = GSON.fromJson(jsonElement, JsonObject.class);
-      String name = resultJsonObject.get(VIEW_TEMPLATE).getAsString();
+    List<String> templateNames = filterTemplates(
+      AribaTemplateCatalog.forConnection(config).getTemplateNames(this::listTemplates), browseRequest.getPath());
+    Integer limit = browseRequest.getLimit();
+    int count = limit == null || limit <= 0 ? templateNames.size() : Math.min(limit, templateNames.size());
+    for (String name : templateNames.subList(0, count)) {
       BrowseEntity.Builder entity = (BrowseEntity.builder(name, name, ENTITY_TYPE_TEMPLATE).
         canBrowse(false).canSample(true));
       browseDetailBuilder.addEntity(entity.build());
-      count++;
     }
-    return browseDetailBuilder.setTotalCount(count).build();
+    if (config.isPrefetchSchemas()) {
+      aribaServices.prefetchOutputSchemas(templateNames.subList(0, Math.min(count, MAX_PREFETCHED_SCHEMAS)));
+    }
+    return browseDetailBuilder.setTotalCount(templateNames.size()).build();
+  }
+
+  @VisibleForTesting
+  static List<String> filterTemplates(List<String> templateNames, @Nullable String path) {
+    String filter = path == null ? "" : CharMatcher.is('/').trimFrom(path).toLowerCase(Locale.ROOT);
+    if (filter.isEmpty()) {
+      return templateNames;
+    }
+    return templateNames.stream()
+      .filter(name -> name.toLowerCase(Locale.ROOT).contains(filter))
+      .collect(Collectors.toList());
   }
 
   @Override
   public ConnectorSpec generateSpec(ConnectorContext connectorContext, ConnectorSpecRequest connectorSpecRequest)
     throws IOException {
-    try {
-      accessToken = aribaServices.getAccessToken();
-    } catch (AribaException e) {
-      throw new IOException("Error in generating token", e);
-    }
     ConnectorSpec.Builder specBuilder = ConnectorSpec.builder();
     Map<String, String> properties = new HashMap<>();
     properties.put(io.cdap.plugin.common.ConfigUtil.NAME_USE_CONNECTION, "true");
@@ -146,90 +155,71 @@ public class AribaConnector implements DirectConnector {
     if (template != null) {
       properties.put(AribaPluginConfig.TEMPLATE_NAME, template);
       properties.put(Constants.Reference.REFERENCE_NAME, ReferenceNames.cleanseReferenceName(template));
-    }
-    try {
-      Schema schema = aribaServices.buildOutputSchema(accessToken, template);
-      specBuilder.setSchema(schema);
-    } catch (AribaException | InterruptedException e) {
-      throw new IOException("Error in generating schema", e);
+      try {
+        Schema schema = aribaServices.getOutputSchema(template);
+        specBuilder.setSchema(schema);
+      } catch (AribaException | InterruptedException e) {
+        throw new IOException("Error in generating schema", e);
+      }
     }
     return specBuilder.addRelatedPlugin(new PluginSpec(AribaBatchSource.NAME, BatchSource.PLUGIN_TYPE,
       properties)).build();
   }
 
   /**
-   * returns the list of all the templates present in Ariba.
+   * returns the list of all the templates present in Ariba, following the page tokens up to the last page.
    */
-  private JsonArray listTemplates(String pageToken, JsonArray jsonElements) throws IOException {
-    try {
-      accessToken = aribaServices.getAccessToken();
-    } catch (AribaException e) {
-      throw new IOException("unable to generate access token", e);
-    }
-    URL viewTemplatesURL = HttpUrl.parse(config.getBaseURL()).
-      newBuilder()
-      .addPathSegments(METADATA_PATH)
-      .addPathSegments(String.format(PATH_SEGMENT, config.getSystemType()))
-      .addQueryParameter(ResourceConstants.PRODUCT, ResourceConstants.ANALYTICS)
-      .addQueryParameter(ResourceConstants.PAGE_TOKEN, pageToken)
-      .addQueryParameter(ResourceConstants.REALM, config.getRealm()).build().url();
-    AribaResponseContainer responseContainer = null;
-    try {
-      responseContainer = aribaServices.fetchAribaResponse(viewTemplatesURL, accessToken);
-    } catch (AribaException | InterruptedException e) {
-      throw new IOException("Unable to fetch response", e);
-    }
-    InputStream responseStream = responseContainer.getResponseBody();
-    BufferedReader reader = new BufferedReader(new InputStreamReader(responseStream, StandardCharsets.UTF_8));
-    String result = reader.lines().collect(Collectors.joining(""));
-    JsonObject jsonObject = GSON.fromJson(result, JsonObject.class);
-    JsonElement nextPageToken = jsonObject.get(TOKEN);
-    if (nextPageToken != null) {
-      listTemplates(nextPageToken.getAsString(), jsonElements);
-      jsonElements.addAll(jsonObject.getAsJsonArray(RECORDS));
-    }
-    return jsonElements;
-  }
-
-  private List<StructuredRecord> listTemplateData(String templateName)
-    throws IOException, AribaException, InterruptedException {
-    try {
-      accessToken = aribaServices.getAccessToken();
-    } catch (AribaException e) {
-      throw new IOException("unable to generate access token", e);
-    }
-    Schema schema = aribaServices.buildOutputSchema(accessToken, templateName);
-    URL dataURL = HttpUrl.parse(config.getBaseURL()).
-      newBuilder()
-      .addPathSegments(METADATA_PATH)
-      .addPathSegments(String.format(DATA_PATH_SEGMENT, config.getSystemType()))
-      .addPathSegments(templateName)
-      .addQueryParameter(ResourceConstants.PRODUCT, ResourceConstants.ANALYTICS)
-      .addQueryParameter(ResourceConstants.REALM, config.getRealm()).build().url();
-    Request request = new Request.Builder().get().url(dataURL).addHeader(ResourceConstants.API_KEY, config.getApiKey())
-      .addHeader(AUTHORIZATION, aribaServices.getAuthenticationKey(accessToken)).build();
-    OkHttpClient enhancedOkHttpClient = new OkHttpClient();
-    Response response = enhancedOkHttpClient.newCall(request).execute();
-    AribaResponseContainer aribaResponseContainer = aribaServices.tokenResponse(response);
-    List<JsonNode> nodeData = new ArrayList<>();
-    List<StructuredRecord> recordList = new ArrayList<>();
-    try (InputStream responseStream = aribaResponseContainer.getResponseBody()) {
-      JsonNode nodeRecord = objectMapper.readTree(responseStream);
-      for (JsonNode records : nodeRecord) {
-        nodeData.add(records);
+  private List<String> listTemplates() throws IOException {
+    List<String> templateNames = new ArrayList<>();
+    String pageToken = null;
+    do {
+      try {
+        accessToken = aribaServices.getAccessToken();
+      } catch (AribaException e) {
+        throw new IOException("unable to generate access token", e);
       }
-      jsonNodeListIterator = nodeData.listIterator();
-      if (jsonNodeListIterator != null && jsonNodeListIterator.hasNext()) {
-        AribaStructuredTransformer transformer = new AribaStructuredTransformer();
-        JsonNode row = jsonNodeListIterator.next();
-        for (JsonNode record : row) {
-          recordList.add(transformer.readFields(record, schema));
+      URL viewTemplatesURL = HttpUrl.parse(config.getBaseURL()).
+        newBuilder()
+        .addPathSegments(METADATA_PATH)
+        .addPathSegments(String.format(PATH_SEGMENT, config.getSystemType()))
+        .addQueryParameter(ResourceConstants.PRODUCT, ResourceConstants.ANALYTICS)
+        .addQueryParameter(ResourceConstants.PAGE_TOKEN, pageToken)
+        .addQueryParameter(ResourceConstants.REALM, config.getRealm()).build().url();
+      JsonObject jsonObject;
+      try (AribaResponseContainer responseContainer = aribaServices.fetchAribaResponse(viewTemplatesURL,
+                                                                                        accessToken)) {
+        Reader reader = new InputStreamReader(responseContainer.getResponseBody(), StandardCharsets.UTF_8);
+        jsonObject = GSON.fromJson(reader, JsonObject.class);
+      } catch (AribaException | InterruptedException e) {
+        throw new IOException("Unable to fetch response", e);
+      }
+      // The records of every page are listed, including the last one, which has no page token
+      JsonArray records = jsonObject.getAsJsonArray(RECORDS);
+      if (records != null) {
+        for (JsonElement record : records) {
+          templateNames.add(record.getAsJsonObject().get(VIEW_TEMPLATE).getAsString());
         }
       }
+      JsonElement nextPageToken = jsonObject.get(TOKEN);
+      pageToken = nextPageToken == null || nextPageToken.isJsonNull() || nextPageToken.getAsString().isEmpty() ?
+        null : nextPageToken.getAsString();
+    } while (pageToken != null);
+    return templateNames;
+  }
 
-      return recordList;
+  /**
+   * Reads at most {@code limit} records of the view template, reusing the output schema built for the view template
+   * by an earlier call.
+   */
+  private List<StructuredRecord> listTemplateData(String templateName, int limit)
+    throws IOException, AribaException, InterruptedException {
+    Schema schema = aribaServices.getOutputSchema(templateName);
+    AribaStructuredTransformer transformer = new AribaStructuredTransformer();
+    List<StructuredRecord> recordList = new ArrayList<>();
+    for (JsonNode record : aribaServices.sampleView(templateName, limit)) {
+      recordList.add(transformer.readFields(record, schema));
     }
-
+    return recordList;
   }
 
   @Override
@@ -240,7 +230,8 @@ public class AribaConnector implements DirectConnector {
       throw new IllegalArgumentException("Path should contain a template");
     }
     try {
-      return listTemplateData(template);
+      int limit = sampleRequest.getLimit() > 0 ? sampleRequest.getLimit() : DEFAULT_SAMPLE_LIMIT;
+      return listTemplateData(template, limit);
     } catch (AribaException | InterruptedException e) {
       throw new IOException("Unable to fetch the data.", e);
     }
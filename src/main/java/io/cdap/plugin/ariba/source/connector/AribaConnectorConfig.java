@@ -37,6 +37,7 @@ import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.UnknownHostException;
+import javax.annotation.Nullable;
 
 /**
  * AribaConnectorConfig class
@@ -50,6 +51,17 @@ public class AribaConnectorConfig extends PluginConfig {
   public static final String BASE_URL = "baseURL";
   public static final String REALM = "realm";
   public static final String TOKEN_URL = "tokenURL";
+  public static final String CONNECT_TIMEOUT = "connectTimeout";
+  public static final String TOKEN_TIMEOUT = "tokenTimeout";
+  public static final String METADATA_TIMEOUT = "metadataTimeout";
+  public static final String POLL_TIMEOUT = "pollTimeout";
+  public static final String DOWNLOAD_TIMEOUT = "downloadTimeout";
+  public static final String PREFETCH_SCHEMAS = "prefetchSchemas";
+  public static final int DEFAULT_CONNECT_TIMEOUT_SECONDS = 30;
+  public static final int DEFAULT_TOKEN_TIMEOUT_SECONDS = 60;
+  public static final int DEFAULT_METADATA_TIMEOUT_SECONDS = 120;
+  public static final int DEFAULT_POLL_TIMEOUT_SECONDS = 60;
+  public static final int DEFAULT_DOWNLOAD_TIMEOUT_SECONDS = 300;
   private static final String COMMON_ACTION = ResourceConstants.ERR_MISSING_PARAM_OR_MACRO_ACTION.getMsgForKey();
   private static final String METADATA_PATH = "api/analytics-reporting-view/v1";
   private static final String PATH_SEGMENT = "%s/viewTemplates";
@@ -82,8 +94,47 @@ public class AribaConnectorConfig extends PluginConfig {
   @Description("Type of system the Ariba instance is running on: Production or Sandbox.")
   private final String systemType;
 
+  @Nullable
+  @Macro
+  @Description("Time in seconds to establish a connection to Ariba. Default is 30.")
+  private Integer connectTimeout;
+
+  @Nullable
+  @Macro
+  @Description("Time in seconds for a complete access token call. Default is 60.")
+  private Integer tokenTimeout;
+
+  @Nullable
+  @Macro
+  @Description("Time in seconds for a complete metadata or view template call. Default is 120.")
+  private Integer metadataTimeout;
+
+  @Nullable
+  @Macro
+  @Description("Time in seconds for a complete call creating a job or polling its status. Default is 60.")
+  private Integer pollTimeout;
+
+  @Nullable
+  @Macro
+  @Description("Time in seconds a download of a result file can wait for data before it is resumed or retried. " +
+    "Default is 300.")
+  private Integer downloadTimeout;
+
+  @Nullable
+  @Macro
+  @Description("Whether the schemas of the browsed view templates are built in the background, so that selecting " +
+    "one does not wait for its metadata calls. Default is No.")
+  private Boolean prefetchSchemas;
+
   public AribaConnectorConfig(String clientId, String clientSecret, String apiKey, String baseURL, String realm,
                               String systemType, String tokenURL) {
+    this(clientId, clientSecret, apiKey, baseURL, realm, systemType, tokenURL, null, null, null, null, null);
+  }
+
+  public AribaConnectorConfig(String clientId, String clientSecret, String apiKey, String baseURL, String realm,
+                              String systemType, String tokenURL, @Nullable Integer connectTimeout,
+                              @Nullable Integer tokenTimeout, @Nullable Integer metadataTimeout,
+                              @Nullable Integer pollTimeout, @Nullable Integer downloadTimeout) {
     this.clientId = clientId;
     this.clientSecret = clientSecret;
     this.apiKey = apiKey;
@@ -91,6 +142,11 @@ public class AribaConnectorConfig extends PluginConfig {
     this.realm = realm;
     this.systemType = systemType;
     this.tokenURL = tokenURL;
+    this.connectTimeout = connectTimeout;
+    this.tokenTimeout = tokenTimeout;
+    this.metadataTimeout = metadataTimeout;
+    this.pollTimeout = pollTimeout;
+    this.downloadTimeout = downloadTimeout;
   }
 
   public String getClientId() {
@@ -121,6 +177,30 @@ public class AribaConnectorConfig extends PluginConfig {
     return tokenURL;
   }
 
+  public int getConnectTimeout() {
+    return connectTimeout == null ? DEFAULT_CONNECT_TIMEOUT_SECONDS : connectTimeout;
+  }
+
+  public int getTokenTimeout() {
+    return tokenTimeout == null ? DEFAULT_TOKEN_TIMEOUT_SECONDS : tokenTimeout;
+  }
+
+  public int getMetadataTimeout() {
+    return metadataTimeout == null ? DEFAULT_METADATA_TIMEOUT_SECONDS : metadataTimeout;
+  }
+
+  public int getPollTimeout() {
+    return pollTimeout == null ? DEFAULT_POLL_TIMEOUT_SECONDS : pollTimeout;
+  }
+
+  public int getDownloadTimeout() {
+    return downloadTimeout == null ? DEFAULT_DOWNLOAD_TIMEOUT_SECONDS : downloadTimeout;
+  }
+
+  public boolean isPrefetchSchemas() {
+    return prefetchSchemas != null && prefetchSchemas;
+  }
+
   /**
    * Validates the credentials parameters.
    *
@@ -152,10 +232,22 @@ public class AribaConnectorConfig extends PluginConfig {
       String errMsg = ResourceConstants.ERR_MISSING_PARAM_PREFIX.getMsgForKey(ResourceConstants.TOKEN_URL);
       failureCollector.addFailure(errMsg, COMMON_ACTION).withConfigProperty(TOKEN_URL);
     }
+    validateTimeout(connectTimeout, CONNECT_TIMEOUT, failureCollector);
+    validateTimeout(tokenTimeout, TOKEN_TIMEOUT, failureCollector);
+    validateTimeout(metadataTimeout, METADATA_TIMEOUT, failureCollector);
+    validateTimeout(pollTimeout, POLL_TIMEOUT, failureCollector);
+    validateTimeout(downloadTimeout, DOWNLOAD_TIMEOUT, failureCollector);
+  }
+
+  private void validateTimeout(@Nullable Integer timeout, String property, FailureCollector failureCollector) {
+    if (timeout != null && timeout <= 0 && !containsMacro(property)) {
+      failureCollector.addFailure(String.format("Timeout '%s' must be greater than 0.", property),
+                                  "Please specify a valid timeout in seconds.").withConfigProperty(property);
+    }
   }
 
   public final void validateToken(FailureCollector collector) {
-    AribaServices aribaServices = new AribaServices(this,
+    AribaServices aribaServices = AribaServices.getShared(this,
       AribaPluginConfig.DEFAULT_MAX_RETRY_COUNT,
       AribaPluginConfig.DEFAULT_INITIAL_RETRY_DURATION_SECONDS,
       AribaPluginConfig.DEFAULT_MAX_RETRY_DURATION_SECONDS,
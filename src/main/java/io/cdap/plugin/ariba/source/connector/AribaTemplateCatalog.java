@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.connector;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.cdap.plugin.ariba.source.util.AribaExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+
+/**
+ * View templates of a realm, shared by the connectors of the JVM. The names are listed from Ariba on the first
+ * browse, then served from memory. Once older than the refresh interval they are still served while a background
+ * task lists them again, and once expired they are listed again before they are served.
+ */
+public final class AribaTemplateCatalog {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AribaTemplateCatalog.class);
+  private static final long REFRESH_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(10);
+  private static final long EXPIRE_AFTER_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final int MAX_CATALOGS = 32;
+  private static final Cache<List<Object>, AribaTemplateCatalog> CATALOGS = CacheBuilder.newBuilder()
+    .maximumSize(MAX_CATALOGS)
+    .expireAfterAccess(EXPIRE_AFTER_MILLIS, TimeUnit.MILLISECONDS)
+    .build();
+  private static final Executor REFRESH_EXECUTOR =
+    AribaExecutors.newBlockingIoExecutor("ariba-catalog-refresh", false, 1);
+
+  private final long refreshAfterMillis;
+  private final long expireAfterMillis;
+  private final Executor refreshExecutor;
+  private final LongSupplier clock;
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+  private final Object loadLock = new Object();
+  @Nullable
+  private volatile List<String> templateNames;
+  private volatile long loadedAtMillis;
+
+  @VisibleForTesting
+  AribaTemplateCatalog(long refreshAfterMillis, long expireAfterMillis, Executor refreshExecutor,
+                       LongSupplier clock) {
+    this.refreshAfterMillis = refreshAfterMillis;
+    this.expireAfterMillis = expireAfterMillis;
+    this.refreshExecutor = refreshExecutor;
+    this.clock = clock;
+  }
+
+  /**
+   * Returns the catalog of the realm of the connection.
+   *
+   * @param connection Ariba connection
+   * @return catalog shared by all the connectors of the realm
+   */
+  public static AribaTemplateCatalog forConnection(AribaConnectorConfig connection) {
+    // The credentials are part of the key, as they decide which view templates are visible
+    List<Object> key = Arrays.asList(connection.getBaseURL(), connection.getSystemType(), connection.getRealm(),
+                                     connection.getClientId(), connection.getApiKey());
+    try {
+      return CATALOGS.get(key, () -> new AribaTemplateCatalog(REFRESH_AFTER_MILLIS, EXPIRE_AFTER_MILLIS,
+                                                               REFRESH_EXECUTOR, System::currentTimeMillis));
+    } catch (ExecutionException e) {
+      // the constructor throws no checked exception
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Returns the names of the view templates, listing them with the loader only if none or expired names are held.
+   *
+   * @param loader lists all the view templates from Ariba
+   * @return names of the view templates
+   * @throws IOException if the view templates could not be listed
+   */
+  public List<String> getTemplateNames(Loader loader) throws IOException {
+    List<String> names = templateNames;
+    long age = clock.getAsLong() - loadedAtMillis;
+    if (names == null || age >= expireAfterMillis) {
+      synchronized (loadLock) {
+        // Another browse may have listed them while this one waited
+        if (templateNames == null || clock.getAsLong() - loadedAtMillis >= expireAfterMillis) {
+          load(loader);
+        }
+        return templateNames;
+      }
+    }
+    if (age >= refreshAfterMillis && refreshing.compareAndSet(false, true)) {
+      refreshExecutor.execute(() -> {
+        try {
+          load(loader);
+        } catch (IOException | RuntimeException e) {
+          // The names held are served until they expire
+          LOG.warn("Failed to refresh the view templates, serving the ones listed {} ms ago.", age, e);
+        } finally {
+          refreshing.set(false);
+        }
+      });
+    }
+    return names;
+  }
+
+  private void load(Loader loader) throws IOException {
+    List<String> names = Collections.unmodifiableList(loader.load());
+    templateNames = names;
+    loadedAtMillis = clock.getAsLong();
+    LOG.debug("Listed {} view templates", names.size());
+  }
+
+  /**
+   * Lists all the view templates of the realm from Ariba.
+   */
+  @FunctionalInterface
+  public interface Loader {
+    List<String> load() throws IOException;
+  }
+}
@@ -24,6 +24,8 @@ package io.cdap.plugin.ariba.source.exception;
 public class AribaRetryableException extends Exception {
 
   private final Integer errorCode;
+  // Seconds to wait before the call is retried as advertised by Ariba, 0 if the default backoff applies
+  private final long retryAfterSeconds;
 
   public AribaRetryableException(String message) {
     this(message, null, null);
@@ -40,9 +42,20 @@ public class AribaRetryableException extends Exception {
   public AribaRetryableException(String message, Integer errorCode, Throwable cause) {
     super(message, cause);
     this.errorCode = errorCode;
+    this.retryAfterSeconds = 0;
+  }
+
+  public AribaRetryableException(String message, Integer errorCode, long retryAfterSeconds) {
+    super(message);
+    this.errorCode = errorCode;
+    this.retryAfterSeconds = retryAfterSeconds;
   }
 
   public Integer getErrorCode() {
     return this.errorCode;
   }
+
+  public long getRetryAfterSeconds() {
+    return this.retryAfterSeconds;
+  }
 }
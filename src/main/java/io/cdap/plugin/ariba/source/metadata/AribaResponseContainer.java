@@ -17,8 +17,11 @@
 package io.cdap.plugin.ariba.source.metadata;
 
 import com.google.common.annotations.VisibleForTesting;
+import okio.Buffer;
 
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import javax.annotation.Nullable;
 
@@ -27,19 +30,38 @@ import javax.annotation.Nullable;
  * along with the following:
  * - HTTP STATUS CODE,
  * - HTTP STATUS MESSAGE
+ * <p>
+ * The body is either held in memory and can be read any number of times, or streamed from the open response and
+ * can be read once. A streamed body holds a connection until the container is closed, closing it after the body
+ * was read completely returns the connection to the pool.
  */
 
-public class AribaResponseContainer {
+public class AribaResponseContainer implements Closeable {
 
   private final int httpStatusCode;
   private final String httpStatusMsg;
+  @Nullable
   private final byte[] responseBody;
+  // body read into pooled segments, returned to the pool on close
+  @Nullable
+  private final Buffer bufferedBody;
+  // body streamed from the open response
+  @Nullable
+  private final InputStream streamingBody;
+  private boolean consumed;
 
   public AribaResponseContainer(int httpStatusCode, String httpStatusMsg, @Nullable byte[] responseBody) {
+    this(httpStatusCode, httpStatusMsg, responseBody, null, null);
+  }
+
+  private AribaResponseContainer(int httpStatusCode, String httpStatusMsg, @Nullable byte[] responseBody,
+                                 @Nullable Buffer bufferedBody, @Nullable InputStream streamingBody) {
 
     this.httpStatusCode = httpStatusCode;
     this.httpStatusMsg = httpStatusMsg;
     this.responseBody = responseBody;
+    this.bufferedBody = bufferedBody;
+    this.streamingBody = streamingBody;
   }
 
   public static Builder builder() {
@@ -54,11 +76,46 @@ public class AribaResponseContainer {
     return this.httpStatusMsg;
   }
 
+  /**
+   * @return true if the body is streamed from the open response and can be read once only
+   */
+  public boolean isStreaming() {
+    return streamingBody != null;
+  }
+
+  /**
+   * @return the body, a streamed body is returned once only
+   * @throws IllegalStateException if the streamed body was already returned
+   */
   @Nullable
   public InputStream getResponseBody() {
+    if (streamingBody != null) {
+      if (consumed) {
+        throw new IllegalStateException("Streamed response body can be read once only.");
+      }
+      consumed = true;
+      return streamingBody;
+    }
+    if (bufferedBody != null) {
+      // shares the segments of the buffer, no copy
+      return bufferedBody.clone().inputStream();
+    }
     return new ByteArrayInputStream(responseBody);
   }
 
+  /**
+   * Releases the body: closes the response of a streamed body and returns the segments of a buffered body to
+   * the pool.
+   */
+  @Override
+  public void close() throws IOException {
+    if (streamingBody != null) {
+      streamingBody.close();
+    } else if (bufferedBody != null) {
+      bufferedBody.clear();
+    }
+  }
+
   /**
    * Helper class to simplify {@link AribaResponseContainer} class creation.
    */
@@ -69,6 +126,8 @@ public class AribaResponseContainer {
     String httpStatusMsg;
     @VisibleForTesting
     byte[] responseStream;
+    private Buffer bufferedBody;
+    private InputStream streamingBody;
 
     public Builder httpStatusCode(int httpStatusCode) {
       this.httpStatusCode = httpStatusCode;
@@ -85,8 +144,25 @@ public class AribaResponseContainer {
       return this;
     }
 
+    /**
+     * @param bufferedBody complete body, read into pooled segments
+     */
+    public Builder bufferedBody(Buffer bufferedBody) {
+      this.bufferedBody = bufferedBody;
+      return this;
+    }
+
+    /**
+     * @param streamingBody body of the open response, closing it closes the response
+     */
+    public Builder streamingBody(InputStream streamingBody) {
+      this.streamingBody = streamingBody;
+      return this;
+    }
+
     public AribaResponseContainer build() {
-      return new AribaResponseContainer(this.httpStatusCode, this.httpStatusMsg, this.responseStream);
+      return new AribaResponseContainer(this.httpStatusCode, this.httpStatusMsg, this.responseStream,
+                                        this.bufferedBody, this.streamingBody);
     }
   }
 }
@@ -22,11 +22,14 @@ import io.cdap.plugin.ariba.source.util.ResourceConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -36,6 +39,9 @@ public class AribaSchemaGenerator {
 
   private static final Logger LOG = LoggerFactory.getLogger(AribaSchemaGenerator.class);
 
+  // Record name of the output schema of a source reading several view templates
+  private static final String TEMPLATE_UNION_NAME = "AribaViewTemplates";
+
   // Mapping of Ariba type as key and its corresponding Schema type as value
   private static final Map<String, Schema> SCHEMA_TYPE_MAPPING;
 
@@ -69,6 +75,76 @@ public class AribaSchemaGenerator {
     return Schema.recordOf("AribaColumnMetadata", schema);
   }
 
+  /**
+   * Builds the output schema of a source reading several view templates, a tagged union of their records. The
+   * {@code templateName} field holds the view template of the record and only the field of that view template is
+   * set, the fields of the other view templates are null. Records nested in a view template are renamed after it,
+   * so that equally named records of different view templates stay distinct.
+   *
+   * @param templateSchemas schema of every view template by view template name
+   * @return {@code Schema}
+   */
+  public static Schema buildTemplateUnion(Map<String, Schema> templateSchemas) {
+    List<Schema.Field> fields = new ArrayList<>();
+    fields.add(Schema.Field.of(ResourceConstants.TEMPLATE_NAME_FIELD, Schema.of(Schema.Type.STRING)));
+    Set<String> fieldNames = new HashSet<>(Collections.singleton(ResourceConstants.TEMPLATE_NAME_FIELD));
+    for (Map.Entry<String, Schema> templateSchema : templateSchemas.entrySet()) {
+      String fieldName = getTemplateFieldName(templateSchema.getKey());
+      if (!fieldNames.add(fieldName)) {
+        throw new IllegalArgumentException(String.format(
+          "View template '%s' maps to the output field '%s' that is already used.", templateSchema.getKey(),
+          fieldName));
+      }
+      List<Schema.Field> templateFields = templateSchema.getValue().getFields().stream()
+        .map(field -> Schema.Field.of(field.getName(), renameRecords(field.getSchema(), fieldName)))
+        .collect(Collectors.toList());
+      fields.add(Schema.Field.of(fieldName, Schema.nullableOf(Schema.recordOf(fieldName, templateFields))));
+    }
+    return Schema.recordOf(TEMPLATE_UNION_NAME, fields);
+  }
+
+  /**
+   * @param unionSchema  schema built by {@link #buildTemplateUnion(Map)}
+   * @param templateName view template name
+   * @return schema of the records of the view template within the union
+   */
+  public static Schema getTemplateSchema(Schema unionSchema, String templateName) {
+    Schema.Field field = unionSchema.getField(getTemplateFieldName(templateName));
+    if (field == null || field.getSchema().getNonNullable().getType() != Schema.Type.RECORD) {
+      throw new IllegalArgumentException(String.format("Output schema has no record field '%s' for view template "
+                                                         + "'%s'.", getTemplateFieldName(templateName),
+                                                       templateName));
+    }
+    return field.getSchema().getNonNullable();
+  }
+
+  /**
+   * @return name of the union field holding the records of the view template, the view template name with every
+   * character not allowed in a field name replaced by an underscore
+   */
+  public static String getTemplateFieldName(String templateName) {
+    String fieldName = templateName.replaceAll("[^A-Za-z0-9_]", "_");
+    return Character.isDigit(fieldName.charAt(0)) ? "_" + fieldName : fieldName;
+  }
+
+  private static Schema renameRecords(Schema schema, String prefix) {
+    switch (schema.getType()) {
+      case RECORD:
+        List<Schema.Field> fields = schema.getFields().stream()
+          .map(field -> Schema.Field.of(field.getName(), renameRecords(field.getSchema(), prefix)))
+          .collect(Collectors.toList());
+        return Schema.recordOf(prefix + "_" + schema.getRecordName(), fields);
+      case ARRAY:
+        return Schema.arrayOf(renameRecords(schema.getComponentSchema(), prefix));
+      case UNION:
+        return Schema.unionOf(schema.getUnionSchemas().stream()
+                                .map(unionSchema -> renameRecords(unionSchema, prefix))
+                                .collect(Collectors.toList()));
+      default:
+        return schema;
+    }
+  }
+
 
   /**
    * Builds Schema field from {@code AribaColumnMetadata}
@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.metrics;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.GzipSource;
+import okio.InflaterSource;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.util.zip.Inflater;
+
+/**
+ * Negotiates compressed responses for the JSON endpoints and decompresses them as the body is read.
+ * Registered as a network interceptor, so it counts the bytes received on the wire while
+ * {@link AribaRequestInterceptor} counts the decompressed bytes handed to the parsers.
+ * Result files are zip archives already and are requested as they are.
+ */
+public class AribaCompressionInterceptor implements Interceptor {
+
+  static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+  private static final String ACCEPT_ENCODING = "Accept-Encoding";
+  private static final String CONTENT_ENCODING = "Content-Encoding";
+  private static final String CONTENT_LENGTH = "Content-Length";
+  private static final String RANGE = "Range";
+  private static final String GZIP = "gzip";
+  private static final String DEFLATE = "deflate";
+  private static final String METRIC_PREFIX = "ariba.http.";
+
+  private final AribaMetrics metrics;
+
+  public AribaCompressionInterceptor(AribaMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    AribaEndpoint endpoint = AribaEndpoint.of(request.url().encodedPath());
+    if (endpoint != AribaEndpoint.FILES && request.header(RANGE) == null) {
+      request = request.newBuilder().header(ACCEPT_ENCODING, ACCEPTED_ENCODINGS).build();
+    }
+
+    Response response = chain.proceed(request);
+    ResponseBody body = response.body();
+    if (body == null || body.contentLength() == 0) {
+      return response;
+    }
+    String prefix = METRIC_PREFIX + endpoint.getMetricName();
+    AribaMetrics metrics = AribaMetrics.of(request, this.metrics);
+    Source wireSource = new ForwardingSource(body.source()) {
+      @Override
+      public long read(Buffer sink, long byteCount) throws IOException {
+        long bytesRead = super.read(sink, byteCount);
+        if (bytesRead > 0) {
+          metrics.getRequestStats().addWireBytes(endpoint, bytesRead);
+          metrics.add(prefix + ".wire.bytes", bytesRead);
+        }
+        return bytesRead;
+      }
+    };
+
+    String encoding = response.header(CONTENT_ENCODING);
+    Source decoded;
+    long contentLength;
+    if (GZIP.equalsIgnoreCase(encoding)) {
+      decoded = new GzipSource(wireSource);
+      contentLength = -1;
+    } else if (DEFLATE.equalsIgnoreCase(encoding)) {
+      decoded = inflate(Okio.buffer(wireSource));
+      contentLength = -1;
+    } else {
+      return response.newBuilder()
+        .body(ResponseBody.create(Okio.buffer(wireSource), body.contentType(), body.contentLength()))
+        .build();
+    }
+    return response.newBuilder()
+      .removeHeader(CONTENT_ENCODING)
+      .removeHeader(CONTENT_LENGTH)
+      .body(ResponseBody.create(Okio.buffer(decoded), body.contentType(), contentLength))
+      .build();
+  }
+
+  /**
+   * HTTP deflate is meant to be zlib wrapped, but some servers send raw deflate data, which is told apart by the
+   * compression method in the low bits of the first byte of a zlib header.
+   */
+  private static Source inflate(BufferedSource source) throws IOException {
+    boolean zlibWrapped = !source.request(1) || (source.getBuffer().getByte(0) & 0x0f) == 8;
+    return new InflaterSource(source, new Inflater(!zlibWrapped));
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.metrics;
+
+/**
+ * Families of the Ariba API endpoints, request metrics are broken down by them.
+ */
+public enum AribaEndpoint {
+  TOKEN("token"),
+  METADATA("metadata"),
+  VIEW_TEMPLATES("viewTemplates"),
+  VIEWS("views"),
+  JOBS("jobs"),
+  JOB_STATUS("jobStatus"),
+  FILES("files"),
+  OTHER("other");
+
+  private static final String TOKEN_PATH = "/oauth/token";
+  private static final String VIEW_PATH = "/analytics-reporting-view/";
+  private static final String VIEW_TEMPLATES_PATH = "/viewTemplates";
+  private static final String VIEWS_PATH = "/views/";
+  private static final String JOB_RESULT_PATH = "/analytics-reporting-jobresult/";
+  private static final String FILES_PATH = "/files/";
+  private static final String JOB_PATH = "/analytics-reporting-job/";
+
+  private final String metricName;
+
+  AribaEndpoint(String metricName) {
+    this.metricName = metricName;
+  }
+
+  /**
+   * @return name of the endpoint family in metric names
+   */
+  public String getMetricName() {
+    return metricName;
+  }
+
+  /**
+   * @param path path of the request URL
+   * @return family of the endpoint called
+   */
+  public static AribaEndpoint of(String path) {
+    if (path.contains(TOKEN_PATH)) {
+      return TOKEN;
+    }
+    if (path.contains(VIEW_PATH)) {
+      if (path.contains(VIEWS_PATH)) {
+        return VIEWS;
+      }
+      return path.contains(VIEW_TEMPLATES_PATH) ? VIEW_TEMPLATES : METADATA;
+    }
+    if (path.contains(JOB_RESULT_PATH)) {
+      return path.contains(FILES_PATH) ? FILES : JOB_STATUS;
+    }
+    if (path.contains(JOB_PATH)) {
+      return JOBS;
+    }
+    return OTHER;
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.metrics;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.cdap.cdap.etl.api.StageMetrics;
+import okhttp3.Request;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+
+/**
+ * Collects the metrics of the Ariba calls and of the record reading. The Hadoop input format and record reader
+ * have no access to the CDAP stage context, so metrics are recorded into a registry of the stage run, found by the
+ * key the batch source passes in the job configuration, and published through {@link StageMetrics} by the batch
+ * source, which calls {@link #flush(StageMetrics)}. Requests carry the registry of their run as a tag, as the
+ * client recording them is shared by the runs of a connection.
+ * <p>
+ * Counters are published as counts. Distributions are published as {@code <name>.count} and {@code <name>.sum}
+ * counts and a {@code <name>.max} gauge of the maximum recorded since the previous flush. They are not histograms,
+ * the percentiles are published for the latencies of the Ariba calls only, by {@link AribaRequestStats}.
+ */
+public final class AribaMetrics {
+
+  public static final String TOKEN_FETCH_MS = "ariba.token.fetch.ms";
+  public static final String METADATA_CALL_MS = "ariba.metadata.call.ms";
+  public static final String JOB_CREATE_MS = "ariba.job.create.ms";
+  public static final String JOB_POLL_MS = "ariba.job.poll.ms";
+  public static final String JOB_POLL_WAIT_MS = "ariba.job.poll.wait.ms";
+  public static final String VIEW_PAGE_MS = "ariba.view.page.ms";
+  public static final String DOWNLOAD_MS = "ariba.download.ms";
+  public static final String DOWNLOAD_BYTES = "ariba.download.bytes";
+  public static final String DOWNLOAD_RESUMES = "ariba.download.resumes";
+  public static final String INFLATE_MS = "ariba.inflate.ms";
+  public static final String PARSE_MS = "ariba.parse.ms";
+  public static final String TRANSFORM_NS = "ariba.transform.ns";
+  public static final String RECORDS_READ = "ariba.records.read";
+  public static final String RETRIES = "ariba.retries";
+  public static final String HEDGED_REQUESTS = "ariba.hedged.requests";
+  public static final String CIRCUIT_OPENED = "ariba.circuit.opened";
+  public static final String RATE_LIMITED_DAY = "ariba.rate.limited.day";
+  public static final String RATE_LIMITED_HOUR = "ariba.rate.limited.hour";
+  public static final String RATE_LIMITED_MINUTE = "ariba.rate.limited.minute";
+  public static final String RATE_LIMITED_SECOND = "ariba.rate.limited.second";
+
+  // Runs of the JVM, per stage, with metrics recorded
+  private static final int MAX_RUNS = 64;
+  private static final AribaMetrics INSTANCE = new AribaMetrics();
+  private static final Cache<String, AribaMetrics> RUNS = CacheBuilder.newBuilder()
+    .maximumSize(MAX_RUNS)
+    .expireAfterAccess(1, TimeUnit.HOURS)
+    .build();
+
+  private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+  private final Map<String, Distribution> distributions = new ConcurrentHashMap<>();
+  private final AribaRequestStats requestStats = new AribaRequestStats();
+
+  @VisibleForTesting
+  AribaMetrics() {
+  }
+
+  /**
+   * @return registry of the calls made outside of a run, e.g. while a connection is browsed
+   */
+  public static AribaMetrics get() {
+    return INSTANCE;
+  }
+
+  /**
+   * @param runKey key of the stage run, null outside of a run
+   * @return registry of the stage run, shared by the input format and the readers of the run in this JVM
+   */
+  public static AribaMetrics forRun(@Nullable String runKey) {
+    if (runKey == null) {
+      return INSTANCE;
+    }
+    try {
+      return RUNS.get(runKey, AribaMetrics::new);
+    } catch (ExecutionException e) {
+      // the constructor throws no checked exception
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * @param request  request sent by a shared client
+   * @param fallback registry of the client
+   * @return registry of the run the request was sent for, the fallback if it was not tagged with one
+   */
+  public static AribaMetrics of(Request request, AribaMetrics fallback) {
+    AribaMetrics tagged = request.tag(AribaMetrics.class);
+    return tagged == null ? fallback : tagged;
+  }
+
+  /**
+   * @return statistics of the Ariba requests per endpoint family
+   */
+  public AribaRequestStats getRequestStats() {
+    return requestStats;
+  }
+
+  /**
+   * Increments the given counter by one.
+   */
+  public void increment(String name) {
+    add(name, 1);
+  }
+
+  /**
+   * Adds the given value to the given counter.
+   */
+  public void add(String name, long value) {
+    counters.computeIfAbsent(name, key -> new LongAdder()).add(value);
+  }
+
+  /**
+   * Records one value of the given distribution, e.g. a latency.
+   */
+  public void record(String name, long value) {
+    distributions.computeIfAbsent(name, key -> new Distribution()).record(value);
+  }
+
+  /**
+   * Records the milliseconds elapsed since the given {@link System#nanoTime()}.
+   */
+  public void recordMillisSince(String name, long startNanos) {
+    record(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+  }
+
+  /**
+   * Publishes everything recorded since the previous flush.
+   *
+   * @param stageMetrics metrics of the stage
+   */
+  public void flush(StageMetrics stageMetrics) {
+    for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+      long value = counter.getValue().sumThenReset();
+      if (value != 0) {
+        stageMetrics.countLong(counter.getKey(), value);
+      }
+    }
+    for (Map.Entry<String, Distribution> distribution : distributions.entrySet()) {
+      Distribution.Cell values = new Distribution.Cell();
+      distribution.getValue().drainTo(values);
+      if (values.count == 0) {
+        continue;
+      }
+      stageMetrics.countLong(distribution.getKey() + ".count", values.count);
+      stageMetrics.countLong(distribution.getKey() + ".sum", values.sum);
+      stageMetrics.gauge(distribution.getKey() + ".max", values.max);
+    }
+    requestStats.publish(stageMetrics);
+  }
+
+  /**
+   * Count, sum and maximum of recorded values. Values are recorded into the cell of the recording thread, so that
+   * threads rarely wait for each other, and every cell is updated and drained under its lock, so that the count and
+   * the sum of a value are always published by the same flush.
+   */
+  private static final class Distribution {
+    private static final int CELLS = 8;
+    private final Cell[] cells = new Cell[CELLS];
+
+    private Distribution() {
+      for (int i = 0; i < CELLS; i++) {
+        cells[i] = new Cell();
+      }
+    }
+
+    private void record(long value) {
+      Cell cell = cells[(int) Thread.currentThread().getId() & (CELLS - 1)];
+      synchronized (cell) {
+        cell.count++;
+        cell.sum += value;
+        cell.max = Math.max(cell.max, value);
+      }
+    }
+
+    /**
+     * Adds the values recorded since the previous call to the given cell.
+     */
+    private void drainTo(Cell total) {
+      for (Cell cell : cells) {
+        synchronized (cell) {
+          total.count += cell.count;
+          total.sum += cell.sum;
+          total.max = Math.max(total.max, cell.max);
+          cell.count = 0;
+          cell.sum = 0;
+          cell.max = 0;
+        }
+      }
+    }
+
+    private static final class Cell {
+      private long count;
+      private long sum;
+      private long max;
+    }
+  }
+
+  /**
+   * Counts the bytes read from the wrapped stream and the time spent reading them.
+   */
+  public static final class MeteredInputStream extends FilterInputStream {
+    private long bytes;
+    private long nanos;
+
+    public MeteredInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      long start = System.nanoTime();
+      int value = super.read();
+      nanos += System.nanoTime() - start;
+      if (value >= 0) {
+        bytes++;
+      }
+      return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      long start = System.nanoTime();
+      int count = super.read(b, off, len);
+      nanos += System.nanoTime() - start;
+      if (count > 0) {
+        bytes += count;
+      }
+      return count;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    public long getMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    public long getNanos() {
+      return nanos;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.metrics;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * Records latency, status code and bytes of every request sent through the client per endpoint family.
+ * Response bytes are counted as the body is read, so streamed downloads are measured as well.
+ */
+public class AribaRequestInterceptor implements Interceptor {
+
+  private static final String METRIC_PREFIX = "ariba.http.";
+  private static final String RATE_LIMIT_DAY = "X-RateLimit-Remaining-Day";
+  private static final String RATE_LIMIT_HOUR = "X-RateLimit-Remaining-Hour";
+  private static final String RATE_LIMIT_MINUTE = "X-RateLimit-Remaining-Minute";
+  private static final String RATE_LIMIT_SECOND = "X-RateLimit-Remaining-Second";
+
+  private final AribaMetrics metrics;
+
+  public AribaRequestInterceptor(AribaMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    AribaEndpoint endpoint = AribaEndpoint.of(request.url().encodedPath());
+    String prefix = METRIC_PREFIX + endpoint.getMetricName();
+    AribaMetrics metrics = AribaMetrics.of(request, this.metrics);
+    if (request.body() != null && request.body().contentLength() > 0) {
+      addBytes(metrics, endpoint, prefix, request.body().contentLength());
+    }
+
+    long start = System.nanoTime();
+    Response response;
+    try {
+      response = chain.proceed(request);
+    } catch (IOException e) {
+      recordResponse(metrics, endpoint, prefix, AribaRequestStats.NO_RESPONSE, start);
+      throw e;
+    }
+    recordResponse(metrics, endpoint, prefix, response.code(), start);
+    recordRateLimit(metrics, endpoint, response);
+
+    ResponseBody body = response.body();
+    if (body == null) {
+      return response;
+    }
+    ForwardingSource countingSource = new ForwardingSource(body.source()) {
+      @Override
+      public long read(Buffer sink, long byteCount) throws IOException {
+        long bytesRead = super.read(sink, byteCount);
+        if (bytesRead > 0) {
+          addBytes(metrics, endpoint, prefix, bytesRead);
+        }
+        return bytesRead;
+      }
+    };
+    return response.newBuilder()
+      .body(ResponseBody.create(Okio.buffer(countingSource), body.contentType(), body.contentLength()))
+      .build();
+  }
+
+  private static void recordResponse(AribaMetrics metrics, AribaEndpoint endpoint, String prefix, int statusCode,
+                                     long startNanos) {
+    long latencyMillis = (System.nanoTime() - startNanos) / 1_000_000;
+    metrics.getRequestStats().record(endpoint, statusCode, latencyMillis);
+    metrics.increment(prefix + ".status." + statusCode);
+  }
+
+  private static void recordRateLimit(AribaMetrics metrics, AribaEndpoint endpoint, Response response) {
+    Integer day = parseHeader(response, RATE_LIMIT_DAY);
+    Integer hour = parseHeader(response, RATE_LIMIT_HOUR);
+    Integer minute = parseHeader(response, RATE_LIMIT_MINUTE);
+    Integer second = parseHeader(response, RATE_LIMIT_SECOND);
+    if (day != null || hour != null || minute != null || second != null) {
+      metrics.getRequestStats().recordRateLimit(new AribaRunProfile.RateLimitSample(
+        System.currentTimeMillis(), endpoint.getMetricName(), day, hour, minute, second));
+    }
+  }
+
+  @Nullable
+  private static Integer parseHeader(Response response, String name) {
+    String value = response.header(name);
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static void addBytes(AribaMetrics metrics, AribaEndpoint endpoint, String prefix, long bytes) {
+    metrics.getRequestStats().addBytes(endpoint, bytes);
+    metrics.add(prefix + ".bytes", bytes);
+  }
+}
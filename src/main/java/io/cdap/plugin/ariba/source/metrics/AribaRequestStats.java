@@ -0,0 +1,284 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.metrics;
+
+import io.cdap.cdap.etl.api.StageMetrics;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, status code and byte statistics of the Ariba requests per endpoint family. Statistics are kept for the
+ * lifetime of the JVM, latency percentiles are published as gauges and logged in the run summary.
+ */
+public final class AribaRequestStats {
+
+  // Status recorded for requests which failed without a response
+  public static final int NO_RESPONSE = 0;
+  // Rate limit samples kept until they are drained into a run profile, later samples are dropped
+  private static final int MAX_RATE_LIMIT_SAMPLES = 10_000;
+
+  private final Map<AribaEndpoint, EndpointStats> endpoints = new EnumMap<>(AribaEndpoint.class);
+  private final Queue<AribaRunProfile.RateLimitSample> rateLimitSamples = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger rateLimitSampleCount = new AtomicInteger();
+  // Lowest of the remaining per second and per minute limits last reported
+  private volatile int remainingShortTermLimit = Integer.MAX_VALUE;
+
+  AribaRequestStats() {
+    for (AribaEndpoint endpoint : AribaEndpoint.values()) {
+      endpoints.put(endpoint, new EndpointStats());
+    }
+  }
+
+  /**
+   * Records one request.
+   *
+   * @param endpoint      endpoint family
+   * @param statusCode    HTTP status code, {@link #NO_RESPONSE} if the request failed without a response
+   * @param latencyMillis time until the response headers were received
+   */
+  public void record(AribaEndpoint endpoint, int statusCode, long latencyMillis) {
+    EndpointStats stats = endpoints.get(endpoint);
+    stats.latency.record(latencyMillis);
+    stats.statusCodes.computeIfAbsent(statusCode, code -> new LongAdder()).increment();
+  }
+
+  /**
+   * Adds bytes transferred by a request of the given endpoint family.
+   */
+  public void addBytes(AribaEndpoint endpoint, long bytes) {
+    endpoints.get(endpoint).bytes.add(bytes);
+  }
+
+  /**
+   * Adds bytes received on the wire by a request of the given endpoint family, before decompression.
+   */
+  public void addWireBytes(AribaEndpoint endpoint, long bytes) {
+    endpoints.get(endpoint).wireBytes.add(bytes);
+  }
+
+  /**
+   * Records the remaining API limits reported by a response.
+   */
+  public void recordRateLimit(AribaRunProfile.RateLimitSample sample) {
+    if (sample.getRemainingMinute() != null || sample.getRemainingSecond() != null) {
+      remainingShortTermLimit = Math.min(
+        sample.getRemainingMinute() == null ? Integer.MAX_VALUE : sample.getRemainingMinute(),
+        sample.getRemainingSecond() == null ? Integer.MAX_VALUE : sample.getRemainingSecond());
+    }
+    if (rateLimitSampleCount.incrementAndGet() <= MAX_RATE_LIMIT_SAMPLES) {
+      rateLimitSamples.add(sample);
+    } else {
+      rateLimitSampleCount.decrementAndGet();
+    }
+  }
+
+  /**
+   * Moves the rate limit samples recorded so far to the given list.
+   */
+  public void drainRateLimitSamples(List<AribaRunProfile.RateLimitSample> target) {
+    AribaRunProfile.RateLimitSample sample;
+    while ((sample = rateLimitSamples.poll()) != null) {
+      rateLimitSampleCount.decrementAndGet();
+      target.add(sample);
+    }
+  }
+
+  /**
+   * Records the time of a complete transfer, from the request until the whole response body was read.
+   *
+   * @param endpoint       endpoint family
+   * @param transferMillis time of the transfer
+   */
+  public void recordTransfer(AribaEndpoint endpoint, long transferMillis) {
+    endpoints.get(endpoint).transfer.record(transferMillis);
+  }
+
+  public long getTransferCount(AribaEndpoint endpoint) {
+    return endpoints.get(endpoint).transfer.getCount();
+  }
+
+  /**
+   * @param endpoint   endpoint family
+   * @param percentile percentile between 0 and 100
+   * @return upper bound of the transfer time percentile in milliseconds, 0 if there was no transfer
+   */
+  public long getTransferPercentile(AribaEndpoint endpoint, double percentile) {
+    return endpoints.get(endpoint).transfer.getPercentile(percentile);
+  }
+
+  /**
+   * Takes a hedge, a second request sent for a slow one, from the budget of the endpoint family. Hedges are
+   * limited to a share of the requests, and refused when the per second or per minute limit is almost exhausted,
+   * so that they cannot get the calls of the run rejected.
+   *
+   * @param endpoint          endpoint family
+   * @param maxRatio          max hedges per request
+   * @param minLimitRemaining min remaining calls of the per second and per minute limits
+   * @return true if the hedge may be sent
+   */
+  public boolean tryHedge(AribaEndpoint endpoint, double maxRatio, int minLimitRemaining) {
+    if (!isShortTermLimitAvailable(minLimitRemaining)) {
+      return false;
+    }
+    EndpointStats stats = endpoints.get(endpoint);
+    long allowed = 1 + (long) (stats.latency.getCount() * maxRatio);
+    long hedges;
+    do {
+      hedges = stats.hedges.get();
+      if (hedges >= allowed) {
+        return false;
+      }
+    } while (!stats.hedges.compareAndSet(hedges, hedges + 1));
+    return true;
+  }
+
+  /**
+   * @param minLimitRemaining min remaining calls of the per second and per minute limits
+   * @return true if the limits last reported leave at least the given number of calls, or were never reported
+   */
+  public boolean isShortTermLimitAvailable(int minLimitRemaining) {
+    return remainingShortTermLimit >= minLimitRemaining;
+  }
+
+  public long getRequestCount(AribaEndpoint endpoint) {
+    return endpoints.get(endpoint).latency.getCount();
+  }
+
+  /**
+   * @param endpoint   endpoint family
+   * @param percentile percentile between 0 and 100
+   * @return upper bound of the latency percentile in milliseconds, 0 if there was no request
+   */
+  public long getLatencyPercentile(AribaEndpoint endpoint, double percentile) {
+    return endpoints.get(endpoint).latency.getPercentile(percentile);
+  }
+
+  /**
+   * Publishes the p50, p95 and p99 latencies of all the endpoint families called.
+   */
+  void publish(StageMetrics stageMetrics) {
+    for (Map.Entry<AribaEndpoint, EndpointStats> endpoint : endpoints.entrySet()) {
+      LatencyHistogram latency = endpoint.getValue().latency;
+      if (latency.getCount() == 0) {
+        continue;
+      }
+      String prefix = "ariba.http." + endpoint.getKey().getMetricName() + ".latency.";
+      stageMetrics.gauge(prefix + "p50", latency.getPercentile(50));
+      stageMetrics.gauge(prefix + "p95", latency.getPercentile(95));
+      stageMetrics.gauge(prefix + "p99", latency.getPercentile(99));
+    }
+  }
+
+  /**
+   * @return one line per endpoint family called, with requests, latency percentiles, bytes, status codes
+   * and bytes received on the wire
+   */
+  public String summary() {
+    StringBuilder summary = new StringBuilder();
+    for (Map.Entry<AribaEndpoint, EndpointStats> endpoint : endpoints.entrySet()) {
+      EndpointStats stats = endpoint.getValue();
+      if (stats.latency.getCount() == 0) {
+        continue;
+      }
+      Map<Integer, Long> statusCodes = new TreeMap<>();
+      stats.statusCodes.forEach((code, count) -> statusCodes.put(code, count.sum()));
+      summary.append(String.format("%n  %s: requests=%d, p50=%dms, p95=%dms, p99=%dms, bytes=%d, status=%s, " +
+                                     "wireBytes=%d",
+                                   endpoint.getKey().getMetricName(), stats.latency.getCount(),
+                                   stats.latency.getPercentile(50), stats.latency.getPercentile(95),
+                                   stats.latency.getPercentile(99), stats.bytes.sum(), statusCodes,
+                                   stats.wireBytes.sum()));
+    }
+    return summary.length() == 0 ? " no requests" : summary.toString();
+  }
+
+  /**
+   * Statistics of one endpoint family.
+   */
+  private static final class EndpointStats {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram transfer = new LatencyHistogram();
+    private final AtomicLong hedges = new AtomicLong();
+    private final Map<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder wireBytes = new LongAdder();
+  }
+
+  /**
+   * Histogram with four buckets per power of two, so percentiles are reported within 25% of the actual value
+   * from a fixed amount of memory.
+   */
+  static final class LatencyHistogram {
+    private static final int SUB_BUCKETS = 4;
+    private static final int SUB_BUCKET_BITS = 2;
+    private final AtomicLongArray buckets = new AtomicLongArray(SUB_BUCKETS * (Long.SIZE - SUB_BUCKET_BITS + 1));
+    private final LongAdder count = new LongAdder();
+
+    void record(long value) {
+      buckets.incrementAndGet(bucketOf(Math.max(0, value)));
+      count.increment();
+    }
+
+    long getCount() {
+      return count.sum();
+    }
+
+    long getPercentile(double percentile) {
+      long total = 0;
+      for (int i = 0; i < buckets.length(); i++) {
+        total += buckets.get(i);
+      }
+      long rank = (long) Math.ceil(total * percentile / 100);
+      long seen = 0;
+      for (int i = 0; i < buckets.length(); i++) {
+        seen += buckets.get(i);
+        if (seen >= rank && seen > 0) {
+          return upperBoundOf(i);
+        }
+      }
+      return 0;
+    }
+
+    private static int bucketOf(long value) {
+      if (value < SUB_BUCKETS) {
+        return (int) value;
+      }
+      int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+      int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+      return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int bucket) {
+      if (bucket < SUB_BUCKETS) {
+        return bucket;
+      }
+      int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+      long lowerBound = (long) (SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+      return lowerBound + (1L << shift) - 1;
+    }
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+/**
+ * Profile of one pipeline run: the Ariba jobs, the result files read and the rate limit headroom over time.
+ * <p>
+ * The split planner and every record reader run in different JVMs, so each of them writes its part of the profile
+ * as a fragment into the profile directory of the run. Once the run finishes the fragments are merged into a single
+ * JSON file next to that directory, which is then removed.
+ */
+public class AribaRunProfile {
+
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+  private static final String FRAGMENT_SUFFIX = ".json";
+
+  @Nullable
+  private Summary summary;
+  private final List<JobProfile> jobs = new ArrayList<>();
+  private final List<FileProfile> files = new ArrayList<>();
+  private final List<RateLimitSample> rateLimits = new ArrayList<>();
+
+  @Nullable
+  public Summary getSummary() {
+    return summary;
+  }
+
+  public List<JobProfile> getJobs() {
+    return jobs;
+  }
+
+  public List<FileProfile> getFiles() {
+    return files;
+  }
+
+  public List<RateLimitSample> getRateLimits() {
+    return rateLimits;
+  }
+
+  /**
+   * @param defaultTemplate view template of the files read by a source extracting a single template
+   * @return records read per view template
+   */
+  public Map<String, Long> getRecordsByTemplate(String defaultTemplate) {
+    Map<String, Long> records = new HashMap<>();
+    for (FileProfile file : files) {
+      records.merge(file.templateName == null ? defaultTemplate : file.templateName, file.records, Long::sum);
+    }
+    return records;
+  }
+
+  /**
+   * Reads a merged run profile.
+   *
+   * @param conf Hadoop configuration
+   * @param path path of the profile, as returned by {@link #merge(Configuration, String, Summary)}
+   */
+  public static AribaRunProfile read(Configuration conf, Path path) throws IOException {
+    FileSystem fileSystem = path.getFileSystem(conf);
+    try (Reader reader = new InputStreamReader(fileSystem.open(path), StandardCharsets.UTF_8)) {
+      return GSON.fromJson(reader, AribaRunProfile.class);
+    }
+  }
+
+  /**
+   * Writes this profile as a fragment of the run profile in the given directory.
+   *
+   * @param conf       Hadoop configuration
+   * @param profileDir profile directory of the run
+   * @param name       fragment name, made unique by a random suffix
+   */
+  public void writeFragment(Configuration conf, String profileDir, String name) throws IOException {
+    Path path = new Path(profileDir, name.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + UUID.randomUUID() +
+      FRAGMENT_SUFFIX);
+    write(path.getFileSystem(conf), path);
+  }
+
+  /**
+   * Merges all the fragments in the given profile directory into {@code <profileDir>.json} and removes the
+   * directory.
+   *
+   * @param conf       Hadoop configuration
+   * @param profileDir profile directory of the run
+   * @param summary    summary of the run
+   * @return path of the merged profile, null if no fragment was written
+   */
+  @Nullable
+  public static Path merge(Configuration conf, String profileDir, Summary summary) throws IOException {
+    Path dir = new Path(profileDir);
+    FileSystem fileSystem = dir.getFileSystem(conf);
+    if (!fileSystem.exists(dir)) {
+      return null;
+    }
+
+    AribaRunProfile profile = new AribaRunProfile();
+    for (FileStatus fragment : fileSystem.listStatus(dir, path -> path.getName().endsWith(FRAGMENT_SUFFIX))) {
+      try (Reader reader = new InputStreamReader(fileSystem.open(fragment.getPath()), StandardCharsets.UTF_8)) {
+        AribaRunProfile fragmentProfile = GSON.fromJson(reader, AribaRunProfile.class);
+        profile.jobs.addAll(fragmentProfile.jobs);
+        profile.files.addAll(fragmentProfile.files);
+        profile.rateLimits.addAll(fragmentProfile.rateLimits);
+      }
+    }
+    profile.jobs.sort(Comparator.comparingLong(job -> job.submittedAtMillis));
+    profile.files.sort(Comparator.comparing((FileProfile file) -> file.jobId).thenComparing(file -> file.fileName));
+    profile.rateLimits.sort(Comparator.comparingLong(sample -> sample.timeMillis));
+    for (FileProfile file : profile.files) {
+      summary.records += file.records;
+      summary.bytes += file.bytes;
+    }
+    summary.jobs = profile.jobs.size();
+    summary.files = profile.files.size();
+    profile.summary = summary;
+
+    Path mergedPath = new Path(dir.getParent(), dir.getName() + FRAGMENT_SUFFIX);
+    profile.write(fileSystem, mergedPath);
+    fileSystem.delete(dir, true);
+    return mergedPath;
+  }
+
+  private void write(FileSystem fileSystem, Path path) throws IOException {
+    try (FSDataOutputStream outputStream = fileSystem.create(path, true);
+         Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+      GSON.toJson(this, writer);
+    }
+  }
+
+  /**
+   * Totals of the run.
+   */
+  public static class Summary {
+    private final String pipeline;
+    private final long startTimeMillis;
+    private final long endTimeMillis;
+    private final boolean succeeded;
+    private int jobs;
+    private int files;
+    private long records;
+    private long bytes;
+
+    public Summary(String pipeline, long startTimeMillis, long endTimeMillis, boolean succeeded) {
+      this.pipeline = pipeline;
+      this.startTimeMillis = startTimeMillis;
+      this.endTimeMillis = endTimeMillis;
+      this.succeeded = succeeded;
+    }
+
+    public long getRecords() {
+      return records;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+  }
+
+  /**
+   * One Ariba job, i.e. one page of a view template.
+   */
+  public static class JobProfile {
+    private final String jobId;
+    private final String templateName;
+    private final long submittedAtMillis;
+    private int page;
+    private int totalPages;
+    private String status;
+    // Time until the job was seen completed, precise to the polling interval
+    private long completedAfterMillis;
+    private List<String> fileNames;
+
+    public JobProfile(String jobId, String templateName, long submittedAtMillis) {
+      this.jobId = jobId;
+      this.templateName = templateName;
+      this.submittedAtMillis = submittedAtMillis;
+    }
+
+    public void completed(String status, int page, int totalPages, List<String> fileNames) {
+      this.status = status;
+      this.page = page;
+      this.totalPages = totalPages;
+      this.fileNames = fileNames;
+      this.completedAfterMillis = System.currentTimeMillis() - submittedAtMillis;
+    }
+  }
+
+  /**
+   * One result file read by a record reader.
+   */
+  public static class FileProfile {
+    private final String jobId;
+    private final String fileName;
+    @Nullable
+    private final String templateName;
+    private long bytes;
+    private long downloadMillis;
+    private long records;
+    private long transformMillis;
+    private long recordsPerSecond;
+
+    public FileProfile(String jobId, String fileName, @Nullable String templateName) {
+      this.jobId = jobId;
+      this.fileName = fileName;
+      this.templateName = templateName;
+    }
+
+    /**
+     * @param bytes          compressed size of the file
+     * @param downloadMillis time to download, inflate and parse the file
+     */
+    public void downloaded(long bytes, long downloadMillis) {
+      this.bytes = bytes;
+      this.downloadMillis = downloadMillis;
+    }
+
+    /**
+     * @param records         records read from the file
+     * @param transformNanos  time spent converting the records to the output schema
+     */
+    public void transformed(long records, long transformNanos) {
+      this.records = records;
+      this.transformMillis = transformNanos / 1_000_000;
+      this.recordsPerSecond = transformNanos == 0 ? 0 : records * 1_000_000_000 / transformNanos;
+    }
+
+    public String getJobId() {
+      return jobId;
+    }
+
+    public String getFileName() {
+      return fileName;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    public long getRecords() {
+      return records;
+    }
+  }
+
+  /**
+   * Remaining API limits reported by a response.
+   */
+  public static class RateLimitSample {
+    private final long timeMillis;
+    private final String endpoint;
+    @Nullable
+    private final Integer remainingDay;
+    @Nullable
+    private final Integer remainingHour;
+    @Nullable
+    private final Integer remainingMinute;
+    @Nullable
+    private final Integer remainingSecond;
+
+    public RateLimitSample(long timeMillis, String endpoint, @Nullable Integer remainingDay,
+                           @Nullable Integer remainingHour, @Nullable Integer remainingMinute,
+                           @Nullable Integer remainingSecond) {
+      this.timeMillis = timeMillis;
+      this.endpoint = endpoint;
+      this.remainingDay = remainingDay;
+      this.remainingHour = remainingHour;
+      this.remainingMinute = remainingMinute;
+      this.remainingSecond = remainingSecond;
+    }
+
+    @Nullable
+    Integer getRemainingMinute() {
+      return remainingMinute;
+    }
+
+    @Nullable
+    Integer getRemainingSecond() {
+      return remainingSecond;
+    }
+  }
+}
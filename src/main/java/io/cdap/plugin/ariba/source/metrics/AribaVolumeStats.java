@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Number of records read per view template by the last successful run of a pipeline. Kept in one JSON file per
+ * pipeline next to its run profiles, so that the next run can estimate the volume of every view template without
+ * calling Ariba.
+ */
+public final class AribaVolumeStats {
+
+  private static final Gson GSON = new Gson();
+  private static final Type RECORDS_TYPE = new TypeToken<Map<String, Long>>() { }.getType();
+  private static final String STATS_SUFFIX = "-volume.json";
+
+  private AribaVolumeStats() {
+  }
+
+  /**
+   * @param runProfilePath directory of the run profiles
+   * @param pipelineName   name of the pipeline
+   * @return path of the statistics of the pipeline
+   */
+  public static String getPath(String runProfilePath, String pipelineName) {
+    return new Path(runProfilePath, pipelineName + STATS_SUFFIX).toString();
+  }
+
+  /**
+   * @param conf Hadoop configuration
+   * @param path path of the statistics
+   * @return records read per view template, empty if the pipeline has no successful run yet
+   */
+  public static Map<String, Long> read(Configuration conf, String path) throws IOException {
+    Path statsPath = new Path(path);
+    FileSystem fileSystem = statsPath.getFileSystem(conf);
+    if (!fileSystem.exists(statsPath)) {
+      return new HashMap<>();
+    }
+    try (Reader reader = new InputStreamReader(fileSystem.open(statsPath), StandardCharsets.UTF_8)) {
+      Map<String, Long> records = GSON.fromJson(reader, RECORDS_TYPE);
+      return records == null ? new HashMap<>() : records;
+    }
+  }
+
+  /**
+   * Replaces the counts of the view templates read by a run, the counts of other view templates are kept.
+   *
+   * @param conf    Hadoop configuration
+   * @param path    path of the statistics
+   * @param records records read per view template by the run
+   */
+  public static void update(Configuration conf, String path, Map<String, Long> records) throws IOException {
+    Map<String, Long> stats = read(conf, path);
+    stats.putAll(records);
+    Path statsPath = new Path(path);
+    try (FSDataOutputStream outputStream = statsPath.getFileSystem(conf).create(statsPath, true);
+         Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+      GSON.toJson(stats, RECORDS_TYPE, writer);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Backoff delays of the retried Ariba calls. Delays are randomized, so that the tasks of a run failing at the
+ * same time, e.g. on an exhausted per second limit, do not retry in lockstep and exhaust the limit again.
+ */
+public final class AribaBackoff {
+
+  // Spread of the retries waiting for an advertised limit reset, so they do not all hit the reset second
+  private static final long MAX_RESET_JITTER_MILLIS = 1000;
+
+  private AribaBackoff() {
+  }
+
+  /**
+   * Decorrelated jitter: the delay is drawn between the base delay and the previous delay bound times the
+   * multiplier, capped at the max delay. The bound grows with the attempts, the drawn delays do not correlate
+   * across tasks.
+   *
+   * @param baseMillis first and minimum delay
+   * @param maxMillis  max delay
+   * @param multiplier growth of the delay bound per attempt
+   * @param attempt    number of the failed attempt, starting at 1
+   * @return delay in millis before the next attempt
+   */
+  public static long decorrelatedJitter(long baseMillis, long maxMillis, int multiplier, int attempt) {
+    long bound = baseMillis;
+    for (int i = 1; i < attempt && bound < maxMillis; i++) {
+      bound = bound * multiplier;
+    }
+    bound = Math.min(maxMillis, bound * multiplier);
+    if (bound <= baseMillis) {
+      return Math.min(baseMillis, maxMillis);
+    }
+    return ThreadLocalRandom.current().nextLong(baseMillis, bound + 1);
+  }
+
+  /**
+   * @param resetSeconds seconds until the exhausted limit is reset, as advertised by Ariba
+   * @return delay in millis until the reset, plus a random spread of up to a second
+   */
+  public static long untilReset(long resetSeconds) {
+    return resetSeconds * 1000 + ThreadLocalRandom.current().nextLong(MAX_RESET_JITTER_MILLIS);
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.util;
+
+/**
+ * Allocation free parsers for the fixed date and time layouts returned by Ariba. The values are converted
+ * directly into the CDAP physical representation of the logical types (epoch days, micros of day and epoch
+ * micros). Any value which does not match the expected layout returns the respective {@code INVALID_*}
+ * marker, so that the caller can fall back to the {@code java.time} parsers.
+ */
+public final class AribaDateTimeUtil {
+
+  public static final int INVALID_DATE = Integer.MIN_VALUE;
+  public static final long INVALID_TIME = Long.MIN_VALUE;
+  public static final long INVALID_TIMESTAMP = Long.MIN_VALUE;
+
+  private static final long MICROS_PER_SECOND = 1_000_000L;
+  private static final int SECONDS_PER_DAY = 86_400;
+  private static final int SECONDS_PER_HOUR = 3_600;
+  private static final int SECONDS_PER_MINUTE = 60;
+  // Days from 0000-03-01 to 1970-01-01 in the proleptic Gregorian calendar
+  private static final int DAYS_0000_TO_1970 = 719_468;
+  private static final int DAYS_PER_ERA = 146_097;
+
+  private AribaDateTimeUtil() {
+  }
+
+  /**
+   * Parses a timestamp having layout {@code yyyy-MM-ddTHH:mm:ss[.S{1,9}]Z} into microseconds since the epoch.
+   * A space is also accepted as date/time separator and the zone may be an offset {@code +HH:mm[:ss]}.
+   * Fractions beyond microseconds are truncated.
+   *
+   * @param value timestamp value
+   * @return epoch micros or {@link #INVALID_TIMESTAMP} if the value does not match the layout
+   */
+  public static long parseTimestampMicros(CharSequence value) {
+    int len = value.length();
+    if (len < 20 || value.charAt(4) != '-' || value.charAt(7) != '-' || value.charAt(13) != ':'
+      || value.charAt(16) != ':' || (value.charAt(10) != 'T' && value.charAt(10) != ' ')) {
+      return INVALID_TIMESTAMP;
+    }
+
+    int year = parseDigits(value, 0, 4);
+    int month = parseDigits(value, 5, 2);
+    int day = parseDigits(value, 8, 2);
+    int hour = parseDigits(value, 11, 2);
+    int minute = parseDigits(value, 14, 2);
+    int second = parseDigits(value, 17, 2);
+    if (!isValidDate(year, month, day) || !isValidTime(hour, minute, second)) {
+      return INVALID_TIMESTAMP;
+    }
+
+    int pos = 19;
+    long fractionMicros = 0;
+    if (value.charAt(pos) == '.') {
+      int start = ++pos;
+      while (pos < len && isDigit(value.charAt(pos))) {
+        if (pos - start < 6) {
+          fractionMicros = fractionMicros * 10 + (value.charAt(pos) - '0');
+        }
+        pos++;
+      }
+      int fractionDigits = pos - start;
+      if (fractionDigits == 0 || fractionDigits > 9) {
+        return INVALID_TIMESTAMP;
+      }
+      for (int i = fractionDigits; i < 6; i++) {
+        fractionMicros *= 10;
+      }
+    }
+
+    if (pos >= len) {
+      // A fraction without zone
+      return INVALID_TIMESTAMP;
+    }
+    int offsetSeconds = parseOffsetSeconds(value, pos);
+    if (offsetSeconds == Integer.MIN_VALUE) {
+      return INVALID_TIMESTAMP;
+    }
+
+    long epochSeconds = toEpochDay(year, month, day) * SECONDS_PER_DAY
+      + hour * SECONDS_PER_HOUR + minute * SECONDS_PER_MINUTE + second - offsetSeconds;
+    return epochSeconds * MICROS_PER_SECOND + fractionMicros;
+  }
+
+  /**
+   * Parses a date having layout {@code yyyyMMdd} into days since the epoch.
+   *
+   * @param value date value
+   * @return epoch days or {@link #INVALID_DATE} if the value does not match the layout
+   */
+  public static int parseBasicDate(CharSequence value) {
+    if (value.length() != 8) {
+      return INVALID_DATE;
+    }
+    int year = parseDigits(value, 0, 4);
+    int month = parseDigits(value, 4, 2);
+    int day = parseDigits(value, 6, 2);
+    if (!isValidDate(year, month, day)) {
+      return INVALID_DATE;
+    }
+    return (int) toEpochDay(year, month, day);
+  }
+
+  /**
+   * Parses a time having layout {@code HHmmss} into microseconds of the day. The Ariba specific value
+   * {@code 240000} is rolled over to midnight.
+   *
+   * @param value time value
+   * @return micros of day or {@link #INVALID_TIME} if the value does not match the layout
+   */
+  public static long parseBasicTimeMicros(CharSequence value) {
+    if (value.length() != 6) {
+      return INVALID_TIME;
+    }
+    int hour = parseDigits(value, 0, 2);
+    int minute = parseDigits(value, 2, 2);
+    int second = parseDigits(value, 4, 2);
+    if (hour == 24 && minute == 0 && second == 0) {
+      return 0L;
+    }
+    if (!isValidTime(hour, minute, second)) {
+      return INVALID_TIME;
+    }
+    return (hour * SECONDS_PER_HOUR + minute * SECONDS_PER_MINUTE + second) * MICROS_PER_SECOND;
+  }
+
+  /**
+   * Parses the zone part of a timestamp starting at {@code pos}, supported values are {@code Z},
+   * {@code +HH:mm} and {@code +HH:mm:ss}.
+   *
+   * @return offset in seconds or {@code Integer.MIN_VALUE} if the zone is not supported
+   */
+  private static int parseOffsetSeconds(CharSequence value, int pos) {
+    int remaining = value.length() - pos;
+    char sign = value.charAt(pos);
+    if (sign == 'Z') {
+      return remaining == 1 ? 0 : Integer.MIN_VALUE;
+    }
+    if ((sign != '+' && sign != '-') || (remaining != 6 && remaining != 9) || value.charAt(pos + 3) != ':'
+      || (remaining == 9 && value.charAt(pos + 6) != ':')) {
+      return Integer.MIN_VALUE;
+    }
+
+    int hours = parseDigits(value, pos + 1, 2);
+    int minutes = parseDigits(value, pos + 4, 2);
+    int seconds = remaining == 9 ? parseDigits(value, pos + 7, 2) : 0;
+    if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) {
+      return Integer.MIN_VALUE;
+    }
+    int offset = hours * SECONDS_PER_HOUR + minutes * SECONDS_PER_MINUTE + seconds;
+    return sign == '-' ? -offset : offset;
+  }
+
+  /**
+   * Parses {@code count} decimal digits starting at {@code start}.
+   *
+   * @return parsed value or -1 if any of the chars is not a digit
+   */
+  private static int parseDigits(CharSequence value, int start, int count) {
+    int result = 0;
+    for (int i = start; i < start + count; i++) {
+      char c = value.charAt(i);
+      if (!isDigit(c)) {
+        return -1;
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isValidTime(int hour, int minute, int second) {
+    return hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 && second >= 0 && second <= 59;
+  }
+
+  private static boolean isValidDate(int year, int month, int day) {
+    if (year < 0 || month < 1 || month > 12 || day < 1) {
+      return false;
+    }
+    int monthLength;
+    switch (month) {
+      case 2:
+        boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        monthLength = leapYear ? 29 : 28;
+        break;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        monthLength = 30;
+        break;
+      default:
+        monthLength = 31;
+    }
+    return day <= monthLength;
+  }
+
+  /**
+   * Converts a valid proleptic Gregorian date with a non negative year into days since the epoch.
+   */
+  private static long toEpochDay(int year, int month, int day) {
+    int shiftedYear = month <= 2 ? year - 1 : year;
+    int era = (shiftedYear >= 0 ? shiftedYear : shiftedYear - 399) / 400;
+    int yearOfEra = shiftedYear - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return (long) era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+  }
+}
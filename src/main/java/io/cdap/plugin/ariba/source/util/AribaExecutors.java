@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Executors for the blocking I/O waits of the plugin, i.e. job polling, metadata calls and file downloads.
+ * On Java 21+ runtimes every task can run on its own virtual thread, older runtimes use a bounded pool of
+ * platform threads. The plugin is compiled for Java 8, so virtual threads are looked up reflectively.
+ */
+public final class AribaExecutors {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AribaExecutors.class);
+  @Nullable
+  private static final Method VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
+
+  private AribaExecutors() {
+  }
+
+  /**
+   * @return true if the runtime supports virtual threads
+   */
+  public static boolean isVirtualThreadSupported() {
+    return VIRTUAL_THREAD_EXECUTOR != null;
+  }
+
+  /**
+   * Creates an executor for blocking I/O tasks. The caller owns the executor and must shut it down.
+   *
+   * @param threadNamePrefix   name prefix of the platform threads, numbered after a dash, e.g. ariba-schema-prefetch-1
+   * @param useVirtualThreads  run every task on its own virtual thread if the runtime supports it
+   * @param maxPlatformThreads number of platform threads used otherwise
+   * @return executor service
+   */
+  public static ExecutorService newBlockingIoExecutor(String threadNamePrefix, boolean useVirtualThreads,
+                                                      int maxPlatformThreads) {
+    if (useVirtualThreads && VIRTUAL_THREAD_EXECUTOR != null) {
+      try {
+        return (ExecutorService) VIRTUAL_THREAD_EXECUTOR.invoke(null);
+      } catch (ReflectiveOperationException e) {
+        LOG.warn("Failed to create virtual thread executor, falling back to platform threads.", e);
+      }
+    } else if (useVirtualThreads) {
+      LOG.debug("Virtual threads are not supported by the runtime, using {} platform threads.", maxPlatformThreads);
+    }
+    return Executors.newFixedThreadPool(Math.max(1, maxPlatformThreads), new DaemonThreadFactory(threadNamePrefix));
+  }
+
+  @Nullable
+  private static Method findVirtualThreadExecutor() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Names the platform threads and does not keep the JVM alive for them.
+   */
+  private static final class DaemonThreadFactory implements ThreadFactory {
+    private final String threadNamePrefix;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    private DaemonThreadFactory(String threadNamePrefix) {
+      this.threadNamePrefix = threadNamePrefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, threadNamePrefix + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
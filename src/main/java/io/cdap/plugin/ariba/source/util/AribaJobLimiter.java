@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.util;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Paces the job creations of all the runs sharing a connection. The rate follows the remaining limits reported
+ * by the last job creation, spread evenly over their windows, so that the jobs of many view templates and pages
+ * do not exhaust a limit in a burst and get rejected.
+ */
+public final class AribaJobLimiter {
+
+  // Job creations per second while no limit runs low, and the rate once a limit is exhausted
+  private static final double MAX_JOBS_PER_SECOND = 1;
+  private static final double MIN_JOBS_PER_SECOND = 1.0 / 60;
+
+  private final RateLimiter rateLimiter = RateLimiter.create(MAX_JOBS_PER_SECOND);
+
+  /**
+   * Blocks until the next job may be created.
+   */
+  public void acquire() {
+    rateLimiter.acquire();
+  }
+
+  /**
+   * Adjusts the rate to the remaining limits reported by a job creation.
+   *
+   * @param remainingSecond remaining calls of the per second limit, {@link Integer#MAX_VALUE} if not reported
+   * @param remainingMinute remaining calls of the per minute limit, {@link Integer#MAX_VALUE} if not reported
+   * @param remainingHour   remaining calls of the per hour limit, {@link Integer#MAX_VALUE} if not reported
+   */
+  public void update(int remainingSecond, int remainingMinute, int remainingHour) {
+    double rate = Math.min(MAX_JOBS_PER_SECOND, remainingSecond);
+    rate = Math.min(rate, remainingMinute / 60.0);
+    rate = Math.min(rate, remainingHour / 3600.0);
+    rateLimiter.setRate(Math.max(MIN_JOBS_PER_SECOND, rate));
+  }
+
+  public double getRate() {
+    return rateLimiter.getRate();
+  }
+}
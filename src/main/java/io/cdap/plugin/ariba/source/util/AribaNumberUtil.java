@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.util;
+
+import java.math.BigDecimal;
+
+/**
+ * Number parsers for Ariba values serialized as strings. Some profile settings in Ariba put the minus sign at the
+ * end of the number like {@code 12345-}, these parsers accept the trailing sign as well as surrounding whitespace
+ * without rebuilding the string. Invalid values throw {@code NumberFormatException} like the JDK parsers.
+ */
+public final class AribaNumberUtil {
+
+  private AribaNumberUtil() {
+  }
+
+  /**
+   * Parses a decimal integer with an optional leading or trailing sign.
+   *
+   * @param value number value
+   * @return parsed long
+   * @throws NumberFormatException if the value is not a valid long
+   */
+  public static long parseLong(String value) {
+    int start = firstNonWhitespace(value);
+    int end = lastNonWhitespace(value) + 1;
+    if (start >= end) {
+      throw numberFormatException(value);
+    }
+
+    boolean negative = false;
+    char first = value.charAt(start);
+    if (first == ResourceConstants.HYPHEN || first == '+') {
+      negative = first == ResourceConstants.HYPHEN;
+      start++;
+    } else if (value.charAt(end - 1) == ResourceConstants.HYPHEN) {
+      negative = true;
+      end--;
+    }
+    if (start >= end) {
+      throw numberFormatException(value);
+    }
+
+    // Accumulate negatively so that Long.MIN_VALUE can be represented
+    long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    long multiplyMin = limit / 10;
+    long result = 0;
+    for (int i = start; i < end; i++) {
+      int digit = value.charAt(i) - '0';
+      if (digit < 0 || digit > 9 || result < multiplyMin) {
+        throw numberFormatException(value);
+      }
+      result *= 10;
+      if (result < limit + digit) {
+        throw numberFormatException(value);
+      }
+      result -= digit;
+    }
+    return negative ? result : -result;
+  }
+
+  /**
+   * Parses a decimal integer with an optional leading or trailing sign.
+   *
+   * @param value number value
+   * @return parsed int
+   * @throws NumberFormatException if the value is not a valid int
+   */
+  public static int parseInt(String value) {
+    long result = parseLong(value);
+    if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) {
+      throw numberFormatException(value);
+    }
+    return (int) result;
+  }
+
+  /**
+   * Parses a floating point number with an optional trailing minus sign.
+   *
+   * @param value number value
+   * @return parsed double
+   * @throws NumberFormatException if the value is not a valid double
+   */
+  public static double parseDouble(String value) {
+    int end = lastNonWhitespace(value);
+    if (end < 0 || value.charAt(end) != ResourceConstants.HYPHEN) {
+      return Double.parseDouble(value);
+    }
+    checkUnsigned(value, end);
+    return -Double.parseDouble(value.substring(0, end));
+  }
+
+  /**
+   * Parses a decimal number with an optional trailing minus sign.
+   *
+   * @param value trimmed number value
+   * @return parsed BigDecimal
+   * @throws NumberFormatException if the value is not a valid decimal
+   */
+  public static BigDecimal parseDecimal(String value) {
+    int end = value.length() - 1;
+    if (end < 0 || value.charAt(end) != ResourceConstants.HYPHEN) {
+      return new BigDecimal(value);
+    }
+    checkUnsigned(value, end);
+    return new BigDecimal(value.substring(0, end)).negate();
+  }
+
+  /**
+   * A value having a trailing minus must not carry a leading sign as well.
+   */
+  private static void checkUnsigned(String value, int end) {
+    int start = firstNonWhitespace(value);
+    if (start < end && (value.charAt(start) == ResourceConstants.HYPHEN || value.charAt(start) == '+')) {
+      throw numberFormatException(value);
+    }
+  }
+
+  private static int firstNonWhitespace(String value) {
+    int start = 0;
+    while (start < value.length() && value.charAt(start) <= ' ') {
+      start++;
+    }
+    return start;
+  }
+
+  private static int lastNonWhitespace(String value) {
+    int end = value.length() - 1;
+    while (end >= 0 && value.charAt(end) <= ' ') {
+      end--;
+    }
+    return end;
+  }
+
+  private static NumberFormatException numberFormatException(String value) {
+    return new NumberFormatException("For input string: \"" + value + "\"");
+  }
+}
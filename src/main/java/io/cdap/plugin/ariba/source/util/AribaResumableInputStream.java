@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Stream of a downloaded content that continues from the byte it stopped at when reading fails, e.g. on a dropped
+ * connection. The remainder is opened by a {@link RangeOpener}, so the readers of the stream, such as the zip and
+ * JSON parsers, do not see the failure and nothing read before it is downloaded again.
+ */
+public class AribaResumableInputStream extends InputStream {
+
+  /**
+   * Opens the remainder of the content.
+   */
+  @FunctionalInterface
+  public interface RangeOpener {
+
+    /**
+     * @param offset first byte of the remainder
+     * @return stream of the content from the offset, null if the content cannot be resumed
+     * @throws IOException if the remainder could not be requested
+     */
+    @Nullable
+    InputStream open(long offset) throws IOException;
+  }
+
+  private final RangeOpener opener;
+  private final int maxResumes;
+  private InputStream in;
+  private long offset;
+  private int resumes;
+
+  /**
+   * @param in         stream of the complete content
+   * @param maxResumes max number of times the content is resumed
+   * @param opener     opens the remainder of the content
+   */
+  public AribaResumableInputStream(InputStream in, int maxResumes, RangeOpener opener) {
+    this.in = in;
+    this.maxResumes = maxResumes;
+    this.opener = opener;
+  }
+
+  @Override
+  public int read() throws IOException {
+    while (true) {
+      try {
+        int b = in.read();
+        if (b >= 0) {
+          offset++;
+        }
+        return b;
+      } catch (IOException e) {
+        resume(e);
+      }
+    }
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    while (true) {
+      try {
+        int bytesRead = in.read(b, off, len);
+        if (bytesRead > 0) {
+          offset += bytesRead;
+        }
+        return bytesRead;
+      } catch (IOException e) {
+        resume(e);
+      }
+    }
+  }
+
+  @Override
+  public int available() throws IOException {
+    return in.available();
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * @return number of times the content was resumed
+   */
+  public int getResumes() {
+    return resumes;
+  }
+
+  /**
+   * Replaces the failed stream by the remainder of the content.
+   *
+   * @param failure read failure
+   * @throws IOException the read failure, if the content cannot be resumed
+   */
+  private void resume(IOException failure) throws IOException {
+    if (resumes >= maxResumes || Thread.currentThread().isInterrupted()) {
+      throw failure;
+    }
+    resumes++;
+    try {
+      in.close();
+    } catch (IOException e) {
+      failure.addSuppressed(e);
+    }
+    InputStream remainder;
+    try {
+      remainder = opener.open(offset);
+    } catch (IOException e) {
+      failure.addSuppressed(e);
+      throw failure;
+    }
+    if (remainder == null) {
+      throw failure;
+    }
+    in = remainder;
+  }
+}
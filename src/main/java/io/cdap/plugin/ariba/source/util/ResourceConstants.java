@@ -40,7 +40,12 @@ public enum ResourceConstants {
   ERR_API_LIMIT_EXCEED_FOR_DAY(null, "err.api.rate.limit.exceeded.for.the.day"),
   ERR_API_LIMIT_EXCEED_FOR_HOUR(null, "err.api.rate.limit.exceeded.for.the.hour"),
   ERR_FIELD_VAL_CONVERT("CDF_SAP_01550", "err.field.val.convert"),
-  ERR_NOT_FOUND(null, "err.resource.not.found");
+  ERR_NOT_FOUND(null, "err.resource.not.found"),
+  ERR_UNSUPPORTED_JOB_FILTER(null, "err.unsupported.job.filter"),
+  ERR_CALL_TIMEOUT(null, "err.call.timeout"),
+  ERR_RUN_DEADLINE_EXCEEDED(null, "err.run.deadline.exceeded"),
+  ERR_CIRCUIT_OPEN(null, "err.circuit.open"),
+  ERR_INVALID_VIEW_PAGE(null, "err.invalid.view.page");
 
   public static final String FILTER_ERROR = "Either provide both the filter values or provide none";
   public static final String DATE_ERROR = "'From Date' can not be greater then 'To Date'.";
@@ -59,8 +64,14 @@ public enum ResourceConstants {
   public static final String READ = "Read";
   public static final String ARIBA_PLUGIN_PROPERTIES = "aribaPluginProperties";
   public static final String OUTPUT_SCHEMA = "aribaOutputSchema";
+  public static final String TEMPLATE_NAME_FIELD = "templateName";
+  public static final String RUN_PROFILE_DIR = "aribaRunProfileDir";
+  public static final String RUN_DEADLINE_MILLIS = "aribaRunDeadlineMillis";
+  public static final String RUN_METRICS_KEY = "aribaRunMetricsKey";
+  public static final String VOLUME_STATS_PATH = "aribaVolumeStatsPath";
   public static final String ENCODED_ENTITY_METADATA_STRING = "aribaEncodedEntityMetaDataString";
   public static final String IS_PREVIEW_ENABLED = "isPreviewEnabled";
+  public static final int PREVIEW_RECORD_LIMIT = 100;
   public static final String JOB_ID = "jobId";
   public static final String STATUS = "status";
   public static final String NULL = "null";
@@ -70,6 +81,8 @@ public enum ResourceConstants {
   public static final String ERROR_INTERNAL = "errorInternal";
   public static final String ERROR_INVALID_DATE_RANGE = "errorInvalidDateRange";
   public static final String PAGE_TOKEN = "pageToken";
+  public static final String VIEW_RECORDS = "Records";
+  public static final String VIEW_PAGE_TOKEN = "PageToken";
   public static final String FILES = "files";
   public static final String STRING = "STRING";
   public static final String NUMBER = "NUMBER";
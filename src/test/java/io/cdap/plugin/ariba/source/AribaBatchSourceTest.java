@@ -78,6 +78,7 @@ public class AribaBatchSourceTest {
 
     pluginConfig = pluginConfigBuilder.build();
 
+    AribaServices.invalidateSharedConnections();
     aribaServices = new AribaServices(pluginConfig.getConnection(),
       pluginConfig.getMaxRetryCount(),
       pluginConfig.getInitialRetryDuration(),
@@ -24,12 +24,19 @@ import io.cdap.plugin.ariba.source.exception.AribaException;
 import mockit.Expectations;
 import mockit.Mocked;
 import mockit.Tested;
+import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Test cases for AribaInputFormat
@@ -216,5 +223,105 @@ public class AribaInputFormatTest {
     }
   }
 
+  @Test
+  public void testCreateJobsForMultipleTemplates() throws IOException, AribaException, InterruptedException {
+    aribaInputFormat = new AribaInputFormat();
+    ObjectMapper objectMapper = new ObjectMapper();
+    JsonNode firstJob = objectMapper.readTree("{\"jobId\": \"job-1\"}");
+    JsonNode secondJob = objectMapper.readTree("{\"jobId\": \"job-2\"}");
+    JsonNode firstJobData = objectMapper.readTree(
+      "{\"jobId\": \"job-1\", \"files\": [\"a1.zip\", \"a2.zip\"], \"status\": \"completed\", " +
+        "\"pageToken\": null}");
+    JsonNode secondJobData = objectMapper.readTree(
+      "{\"jobId\": \"job-2\", \"files\": [\"b1.zip\"], \"status\": \"completed\", \"pageToken\": null}");
+    new Expectations(AribaServices.class) {
+      {
+        aribaServices.createJob(pluginConfig, null, "FirstView");
+        result = firstJob;
+
+        aribaServices.createJob(pluginConfig, null, "SecondView");
+        result = secondJob;
+
+        aribaServices.fetchJobStatus(anyString, "job-1");
+        result = firstJobData;
+
+        aribaServices.fetchJobStatus(anyString, "job-2");
+        result = secondJobData;
+
+        aribaServices.getAccessToken();
+        result = "token";
+        minTimes = 0;
+      }
+    };
+
+    List<InputSplit> splits = aribaInputFormat.createJobs(pluginConfig, aribaServices, false,
+                                                          Arrays.asList("FirstView", "SecondView"));
+    Assert.assertEquals(3, splits.size());
+    AribaInputSplit split = (AribaInputSplit) splits.get(2);
+    Assert.assertEquals("b1.zip", split.getFileName());
+    Assert.assertEquals("job-2", split.getJobId());
+    Assert.assertEquals("SecondView", split.getTemplateName());
+    Assert.assertEquals("FirstView", ((AribaInputSplit) splits.get(0)).getTemplateName());
+  }
+
+  @Test
+  public void testCreateSyncSplits() {
+    List<InputSplit> splits = aribaInputFormat.createSyncSplits(Arrays.asList("FirstView", "SecondView"));
+    Assert.assertEquals(2, splits.size());
+    Assert.assertTrue(((AribaInputSplit) splits.get(0)).isSync());
+    Assert.assertEquals("SecondView", ((AribaInputSplit) splits.get(1)).getTemplateName());
 
+    // A single view template is read without tagging its records
+    AribaInputSplit single = (AribaInputSplit) new AribaInputFormat()
+      .createSyncSplits(Collections.singletonList("FirstView")).get(0);
+    Assert.assertTrue(single.isSync());
+    Assert.assertNull(single.getTemplateName());
+  }
+
+  @Test
+  public void testCreateRoutedSplits() throws IOException, AribaException, InterruptedException {
+    aribaInputFormat = new AribaInputFormat();
+    ObjectMapper objectMapper = new ObjectMapper();
+    JsonNode bigJob = objectMapper.readTree("{\"jobId\": \"job-1\"}");
+    JsonNode bigJobData = objectMapper.readTree(
+      "{\"jobId\": \"job-1\", \"files\": [\"a1.zip\"], \"status\": \"completed\", \"pageToken\": null}");
+    new Expectations(AribaServices.class) {
+      {
+        // The view templates read synchronously are paged by their readers only
+        aribaServices.fetchViewPage(pluginConfig, anyString, anyString, (Set<String>) any);
+        times = 0;
+
+        aribaServices.createJob(pluginConfig, null, "BigView");
+        result = bigJob;
+        times = 1;
+
+        aribaServices.fetchJobStatus(anyString, "job-1");
+        result = bigJobData;
+
+        aribaServices.getAccessToken();
+        result = "token";
+        minTimes = 0;
+      }
+    };
+
+    // Volumes of the last run decide without calling Ariba, the unknown view template is read synchronously
+    Map<String, Long> lastRecords = new HashMap<>();
+    lastRecords.put("SmallView", 10L);
+    lastRecords.put("BigView", 10_000L);
+    List<InputSplit> splits = aribaInputFormat.createRoutedSplits(
+      pluginConfig, aribaServices, false, Arrays.asList("SmallView", "BigView", "NewView"), lastRecords);
+    Assert.assertEquals(3, splits.size());
+    AribaInputSplit smallSplit = (AribaInputSplit) splits.get(0);
+    Assert.assertTrue(smallSplit.isSync());
+    Assert.assertEquals("SmallView", smallSplit.getTemplateName());
+    Assert.assertEquals(pluginConfig.getSyncRecordThreshold(), smallSplit.getSyncRecordThreshold());
+    AribaInputSplit newSplit = (AribaInputSplit) splits.get(1);
+    Assert.assertTrue(newSplit.isSync());
+    Assert.assertEquals("NewView", newSplit.getTemplateName());
+    Assert.assertEquals(pluginConfig.getSyncRecordThreshold(), newSplit.getSyncRecordThreshold());
+    AribaInputSplit jobSplit = (AribaInputSplit) splits.get(2);
+    Assert.assertFalse(jobSplit.isSync());
+    Assert.assertEquals("BigView", jobSplit.getTemplateName());
+    Assert.assertEquals("a1.zip", jobSplit.getFileName());
+  }
 }
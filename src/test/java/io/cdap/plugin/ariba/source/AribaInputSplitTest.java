@@ -19,8 +19,12 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 
@@ -90,4 +94,33 @@ public class AribaInputSplitTest {
     AribaInputSplit aribaInputSplit = new AribaInputSplit("FileName", "5656gfdf");
     aribaInputSplit.readFields(dataInput);
   }
+
+  @Test
+  public void testWriteAndReadTemplateName() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new AribaInputSplit("FileName", "5656gfdf", "RequestFactSystemView").write(new DataOutputStream(bytes));
+    new AribaInputSplit("OtherFile", "7878hjhj").write(new DataOutputStream(bytes));
+
+    DataInputStream dataInput = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    AribaInputSplit aribaInputSplit = new AribaInputSplit();
+    aribaInputSplit.readFields(dataInput);
+    Assert.assertEquals("FileName", aribaInputSplit.getFileName());
+    Assert.assertEquals("RequestFactSystemView", aribaInputSplit.getTemplateName());
+    aribaInputSplit.readFields(dataInput);
+    Assert.assertEquals("7878hjhj", aribaInputSplit.getJobId());
+    Assert.assertNull(aribaInputSplit.getTemplateName());
+    Assert.assertFalse(aribaInputSplit.isSync());
+  }
+
+  @Test
+  public void testWriteAndReadSyncSplit() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    AribaInputSplit.sync("RequestFactSystemView", 5000).write(new DataOutputStream(bytes));
+
+    AribaInputSplit aribaInputSplit = new AribaInputSplit();
+    aribaInputSplit.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    Assert.assertTrue(aribaInputSplit.isSync());
+    Assert.assertEquals("RequestFactSystemView", aribaInputSplit.getTemplateName());
+    Assert.assertEquals(5000, aribaInputSplit.getSyncRecordThreshold());
+  }
 }
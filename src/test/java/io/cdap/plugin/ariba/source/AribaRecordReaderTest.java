@@ -18,11 +18,15 @@ package io.cdap.plugin.ariba.source;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.etl.mock.common.MockPipelineConfigurer;
 import io.cdap.plugin.ariba.source.config.AribaPluginConfig;
 import io.cdap.plugin.ariba.source.exception.AribaException;
+import io.cdap.plugin.ariba.source.metadata.AribaSchemaGenerator;
+import io.cdap.plugin.ariba.source.metrics.AribaRunProfile;
+import io.cdap.plugin.ariba.source.util.ResourceConstants;
 import mockit.Expectations;
 import mockit.Mocked;
 import org.junit.Assert;
@@ -30,6 +34,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Set;
 
 /**
  * Test cases for AribaRecordReader
@@ -62,6 +67,7 @@ public class AribaRecordReaderTest {
       .maxRetryCount(AribaPluginConfig.DEFAULT_MAX_RETRY_COUNT);
     pluginConfig = pluginConfigBuilder.build();
 
+    AribaServices.invalidateSharedConnections();
     aribaServices = new AribaServices(pluginConfig.getConnection(),
       pluginConfig.getMaxRetryCount(),
       pluginConfig.getInitialRetryDuration(),
@@ -82,7 +88,7 @@ public class AribaRecordReaderTest {
         result = "testToken";
         minTimes = 0;
 
-        aribaServices.fetchData(anyString, anyString);
+        aribaServices.fetchData(anyString, anyString, (Set<String>) any, (AribaRunProfile.FileProfile) any);
         result = nodeRecord;
         minTimes = 0;
       }
@@ -96,6 +102,157 @@ public class AribaRecordReaderTest {
     Assert.assertEquals("1.0", progress);
   }
 
+  @Test
+  public void testReadSyncPages() throws IOException, AribaException, InterruptedException {
+    AribaRecordReader aribaRecordReader = new AribaRecordReader(aribaServices, getPluginSchema(), pluginConfig);
+    JsonNode firstPage = mapper.readTree("{\"Records\":[" + rowData + "," + rowData + "],\"PageToken\":\"p2\"}");
+    JsonNode emptyPage = mapper.readTree("{\"Records\":[],\"PageToken\":\"p3\"}");
+    JsonNode lastPage = mapper.readTree("{\"Records\":[" + rowData + "]}");
+    new Expectations(AribaServices.class) {
+      {
+        aribaServices.fetchViewPage(pluginConfig, "SourcingProjectFactSystemView", withNull(), (Set<String>) any);
+        result = firstPage;
+
+        aribaServices.fetchViewPage(pluginConfig, "SourcingProjectFactSystemView", "p2", (Set<String>) any);
+        result = emptyPage;
+
+        aribaServices.fetchViewPage(pluginConfig, "SourcingProjectFactSystemView", "p3", (Set<String>) any);
+        result = lastPage;
+      }
+    };
+    aribaRecordReader.initialize(AribaInputSplit.sync(null), null);
+    int records = 0;
+    while (aribaRecordReader.nextKeyValue()) {
+      Assert.assertEquals("WS13213262", aribaRecordReader.getCurrentValue().get("ProjectId"));
+      records++;
+    }
+    Assert.assertEquals(3, records);
+  }
+
+  @Test
+  public void testReadSyncPagesWithinTemplateUnion() throws IOException, AribaException, InterruptedException {
+    Schema union = AribaSchemaGenerator.buildTemplateUnion(
+      ImmutableMap.of("SourcingProjectFactSystemView", getPluginSchema(), "OtherView", getPluginSchema()));
+    AribaRecordReader aribaRecordReader = new AribaRecordReader(
+      aribaServices, AribaSchemaGenerator.getTemplateSchema(union, "SourcingProjectFactSystemView"), union,
+      pluginConfig, 0);
+    JsonNode page = mapper.readTree("{\"Records\":[" + rowData + "]}");
+    new Expectations(AribaServices.class) {
+      {
+        aribaServices.fetchViewPage(pluginConfig, "SourcingProjectFactSystemView", withNull(), (Set<String>) any);
+        result = page;
+      }
+    };
+    aribaRecordReader.initialize(AribaInputSplit.sync("SourcingProjectFactSystemView"), null);
+    Assert.assertTrue(aribaRecordReader.nextKeyValue());
+    StructuredRecord record = aribaRecordReader.getCurrentValue();
+    Assert.assertEquals(union, record.getSchema());
+    Assert.assertEquals("SourcingProjectFactSystemView", record.get(ResourceConstants.TEMPLATE_NAME_FIELD));
+    Assert.assertNull(record.get("OtherView"));
+    StructuredRecord templateRecord = record.get("SourcingProjectFactSystemView");
+    Assert.assertEquals("WS13213262", templateRecord.get("ProjectId"));
+    Assert.assertFalse(aribaRecordReader.nextKeyValue());
+  }
+
+  @Test
+  public void testReadSyncPagesUpToRecordLimit() throws IOException, AribaException, InterruptedException {
+    AribaRecordReader aribaRecordReader = new AribaRecordReader(aribaServices, getPluginSchema(), pluginConfig, 2);
+    JsonNode firstPage = mapper.readTree("{\"Records\":[" + rowData + "," + rowData + "],\"PageToken\":\"p2\"}");
+    new Expectations(AribaServices.class) {
+      {
+        aribaServices.fetchViewPage(pluginConfig, "SourcingProjectFactSystemView", withNull(), (Set<String>) any);
+        result = firstPage;
+        times = 1;
+
+        // The limit is reached on the first page, the next one is not requested
+        aribaServices.fetchViewPage(pluginConfig, "SourcingProjectFactSystemView", "p2", (Set<String>) any);
+        times = 0;
+      }
+    };
+    aribaRecordReader.initialize(AribaInputSplit.sync(null), null);
+    int records = 0;
+    while (aribaRecordReader.nextKeyValue()) {
+      records++;
+    }
+    Assert.assertEquals(2, records);
+  }
+
+  @Test
+  public void testReadSyncPagesWithinThreshold() throws IOException, AribaException, InterruptedException {
+    AribaRecordReader aribaRecordReader = new AribaRecordReader(aribaServices, getPluginSchema(), pluginConfig);
+    JsonNode firstPage = mapper.readTree("{\"Records\":[" + rowData + "],\"PageToken\":\"p2\"}");
+    JsonNode lastPage = mapper.readTree("{\"Records\":[" + rowData + "]}");
+    new Expectations(AribaServices.class) {
+      {
+        aribaServices.fetchViewPage(pluginConfig, "SourcingProjectFactSystemView", withNull(), (Set<String>) any);
+        result = firstPage;
+        times = 1;
+
+        aribaServices.fetchViewPage(pluginConfig, "SourcingProjectFactSystemView", "p2", (Set<String>) any);
+        result = lastPage;
+        times = 1;
+
+        aribaServices.createJob((AribaPluginConfig) any, anyString, anyString);
+        times = 0;
+      }
+    };
+    aribaRecordReader.initialize(AribaInputSplit.sync(null, 2), null);
+    int records = 0;
+    while (aribaRecordReader.nextKeyValue()) {
+      records++;
+    }
+    Assert.assertEquals(2, records);
+  }
+
+  @Test
+  public void testReadSyncPagesSwitchesToJobAboveThreshold()
+    throws IOException, AribaException, InterruptedException {
+    AribaRecordReader aribaRecordReader = new AribaRecordReader(aribaServices, getPluginSchema(), pluginConfig);
+    JsonNode firstPage = mapper.readTree("{\"Records\":[" + rowData + "," + rowData + "],\"PageToken\":\"p2\"}");
+    JsonNode secondPage = mapper.readTree("{\"Records\":[" + rowData + "," + rowData + "],\"PageToken\":\"p3\"}");
+    JsonNode job = mapper.readTree("{\"jobId\": \"job-1\"}");
+    JsonNode jobData = mapper.readTree(
+      "{\"jobId\": \"job-1\", \"files\": [\"a1.zip\", \"a2.zip\"], \"status\": \"completed\", " +
+        "\"pageToken\": null}");
+    JsonNode file = mapper.readTree("[" + rowData + "," + rowData + "," + rowData + "]");
+    new Expectations(AribaServices.class) {
+      {
+        aribaServices.fetchViewPage(pluginConfig, "SourcingProjectFactSystemView", withNull(), (Set<String>) any);
+        result = firstPage;
+
+        aribaServices.fetchViewPage(pluginConfig, "SourcingProjectFactSystemView", "p2", (Set<String>) any);
+        result = secondPage;
+
+        // The threshold is exceeded on the second page, the third one is not requested
+        aribaServices.fetchViewPage(pluginConfig, "SourcingProjectFactSystemView", "p3", (Set<String>) any);
+        times = 0;
+
+        aribaServices.createJob(pluginConfig, null, "SourcingProjectFactSystemView");
+        result = job;
+        times = 1;
+
+        aribaServices.getAccessToken();
+        result = "token";
+        minTimes = 0;
+
+        aribaServices.fetchJobStatus(anyString, "job-1");
+        result = jobData;
+
+        aribaServices.fetchData("job-1", anyString, (Set<String>) any, (AribaRunProfile.FileProfile) any);
+        result = file;
+        times = 2;
+      }
+    };
+    aribaRecordReader.initialize(AribaInputSplit.sync(null, 3), null);
+    int records = 0;
+    while (aribaRecordReader.nextKeyValue()) {
+      Assert.assertEquals("WS13213262", aribaRecordReader.getCurrentValue().get("ProjectId"));
+      records++;
+    }
+    // Only the records of the result files are returned, none of the pages
+    Assert.assertEquals(6, records);
+  }
+
   @Test
   public void testNextKeyValueFalse(@Mocked AribaInputSplit aribaInputSplit,
                                     @Mocked JsonNode node) throws IOException, AribaException, InterruptedException {
@@ -107,7 +264,7 @@ public class AribaRecordReaderTest {
         result = "testToken";
         minTimes = 0;
 
-        aribaServices.fetchData(anyString, anyString);
+        aribaServices.fetchData(anyString, anyString, (Set<String>) any, (AribaRunProfile.FileProfile) any);
         result = node;
         minTimes = 0;
       }
@@ -135,7 +292,7 @@ public class AribaRecordReaderTest {
         result = "testToken";
         minTimes = 0;
 
-        aribaServices.fetchData(anyString, anyString);
+        aribaServices.fetchData(anyString, anyString, (Set<String>) any, (AribaRunProfile.FileProfile) any);
         result = new InterruptedException();
         minTimes = 0;
       }
@@ -18,21 +18,31 @@ package io.cdap.plugin.ariba.source;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.ariba.source.config.AribaPluginConfig;
+import io.cdap.plugin.ariba.source.connector.AribaConnectorConfig;
 import io.cdap.plugin.ariba.source.exception.AribaException;
 import io.cdap.plugin.ariba.source.exception.AribaRetryableException;
 import io.cdap.plugin.ariba.source.metadata.AribaColumnMetadata;
 import io.cdap.plugin.ariba.source.metadata.AribaResponseContainer;
 import io.cdap.plugin.ariba.source.metadata.AribaSchemaGenerator;
+import io.cdap.plugin.ariba.source.metrics.AribaEndpoint;
+import io.cdap.plugin.ariba.source.metrics.AribaMetrics;
 import io.cdap.plugin.ariba.source.util.ResourceConstants;
 import mockit.Expectations;
 import mockit.Mocked;
+import okhttp3.Call;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
 import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -40,14 +50,21 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ServerSocket;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Test case for AribaServices
@@ -171,6 +188,8 @@ public class AribaServicesTest {
 
     pluginConfig = pluginConfigBuilder.build();
 
+    // the token and the circuit breaker of the connection are not carried over from other tests
+    AribaServices.invalidateSharedConnections();
     aribaServices = new AribaServices(pluginConfig.getConnection(),
       pluginConfig.getMaxRetryCount(),
       pluginConfig.getInitialRetryDuration(),
@@ -210,6 +229,31 @@ public class AribaServicesTest {
 
   }
 
+  @Test
+  public void testGetAccessTokenIsCached() throws AribaException, IOException {
+    String tokenJson = "{\"access_token\": \"cached-token\", \"expires_in\": 1440}";
+    new Expectations(AribaServices.class) {
+      {
+        aribaServices.generateTokenURL();
+        result = any;
+        minTimes = 0;
+
+        aribaServices.callAribaForToken((URL) any);
+        result = response;
+        times = 1;
+
+        response.getResponseBody();
+        result = new ByteArrayInputStream(tokenJson.getBytes(StandardCharsets.UTF_8));
+
+        response.getHttpStatusCode();
+        result = 200;
+      }
+    };
+
+    Assert.assertEquals("cached-token", aribaServices.getAccessToken());
+    Assert.assertEquals("cached-token", aribaServices.getAccessToken());
+  }
+
   @Test
   public void testGenerateTokenURL() {
     Assert.assertEquals("https://api.token.ariba.com/v2/oauth/token",
@@ -259,6 +303,26 @@ public class AribaServicesTest {
     Assert.assertEquals("RECORD", aribaSchemaGenerator.buildSchema().getType().toString());
   }
 
+  @Test
+  public void testGetOutputSchemaBuildsOnce() throws AribaException, IOException, InterruptedException {
+    Schema schema = Schema.recordOf("PrefetchedView", Schema.Field.of("Id", Schema.of(Schema.Type.STRING)));
+    new Expectations(AribaServices.class) {
+      {
+        aribaServices.getAccessToken();
+        result = "token";
+        minTimes = 0;
+
+        // The prefetch and the calls share one build
+        aribaServices.buildOutputSchema(anyString, "PrefetchedView");
+        result = schema;
+        times = 1;
+      }
+    };
+    aribaServices.prefetchOutputSchemas(Collections.singletonList("PrefetchedView"));
+    Assert.assertSame(schema, aribaServices.getOutputSchema("PrefetchedView"));
+    Assert.assertSame(schema, aribaServices.getOutputSchema("PrefetchedView"));
+  }
+
   @Test
   public void testGetMetadata() throws AribaException, IOException, InterruptedException {
     URL url = null;
@@ -470,6 +534,162 @@ public class AribaServicesTest {
 
   }
 
+  @Test
+  public void testBuildJobRequestWithFilters() throws AribaException, IOException, InterruptedException {
+    AribaPluginConfig filterConfig = pluginConfigBuilder.jobFilters("companyCode=1000; Status = Approved; isTest=false")
+      .build();
+    new Expectations(AribaServices.class) {
+      {
+        aribaServices.getAccessToken();
+        result = "access-token";
+        minTimes = 0;
+
+        aribaServices.checkUpdateFilter(anyString);
+        result = true;
+        minTimes = 0;
+
+        aribaServices.getFilterNames(anyString);
+        result = new HashSet<>(Arrays.asList("updatedDateFrom", "updatedDateTo", "companyCode", "Status", "isTest"));
+        minTimes = 0;
+      }
+    };
+    Request request = aribaServices.buildJobRequest(new URL("https://openapi.ariba.com/jobs"), filterConfig,
+                                                    "SourcingProjectFactSystemView");
+    Buffer buffer = new Buffer();
+    Objects.requireNonNull(request.body()).writeTo(buffer);
+    JsonNode body = new ObjectMapper().readTree(buffer.readUtf8());
+
+    Assert.assertEquals("SourcingProjectFactSystemView", body.get("viewTemplateName").asText());
+    Assert.assertEquals("2022-01-28T10:05:02Z", body.get("filters").get("updatedDateFrom").asText());
+    Assert.assertEquals("2022-01-31T10:05:02Z", body.get("filters").get("updatedDateTo").asText());
+    Assert.assertTrue(body.get("filters").get("companyCode").isNumber());
+    Assert.assertEquals(1000, body.get("filters").get("companyCode").asInt());
+    Assert.assertTrue(body.get("filters").get("Status").isTextual());
+    Assert.assertEquals("Approved", body.get("filters").get("Status").asText());
+    Assert.assertTrue(body.get("filters").get("isTest").isBoolean());
+  }
+
+  @Test
+  public void testBuildJobRequestWithUnsupportedFilter() throws AribaException, IOException, InterruptedException {
+    AribaPluginConfig filterConfig = pluginConfigBuilder.jobFilters("companyCode=1000").build();
+    new Expectations(AribaServices.class) {
+      {
+        aribaServices.getAccessToken();
+        result = "access-token";
+        minTimes = 0;
+
+        aribaServices.checkUpdateFilter(anyString);
+        result = false;
+        minTimes = 0;
+
+        aribaServices.getFilterNames(anyString);
+        result = new HashSet<>(Collections.singletonList("createdDateFrom"));
+        minTimes = 0;
+      }
+    };
+    try {
+      aribaServices.buildJobRequest(new URL("https://openapi.ariba.com/jobs"), filterConfig, "template");
+      Assert.fail("testBuildJobRequestWithUnsupportedFilter expected to fail, but succeeded");
+    } catch (AribaException e) {
+      Assert.assertEquals(400, e.getErrorCode().intValue());
+      Assert.assertTrue(e.getMessage().contains("companyCode"));
+    }
+  }
+
+  @Test
+  public void testReadProjectedRecords() throws IOException {
+    String content = "[{\"ProjectId\":\"WS1\",\"Owner\":{\"UserId\":\"u1\"},\"Commodity\":[{\"Id\":1}]," +
+      "\"Status\":null},{\"Description\":\"skipped\",\"Owner\":{\"UserId\":\"u2\"}}]";
+    JsonNode records = aribaServices.readProjectedRecords(
+      new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+      new HashSet<>(Arrays.asList("ProjectId", "Owner", "Status")));
+
+    Assert.assertEquals(2, records.size());
+    Assert.assertEquals("WS1", records.get(0).get("ProjectId").asText());
+    Assert.assertEquals("u1", records.get(0).get("Owner").get("UserId").asText());
+    Assert.assertFalse(records.get(0).has("Commodity"));
+    Assert.assertFalse(records.get(0).has("Status"));
+    Assert.assertFalse(records.get(1).has("Description"));
+    Assert.assertEquals("u2", records.get(1).get("Owner").get("UserId").asText());
+  }
+
+  @Test
+  public void testReadViewPage() throws IOException {
+    String content = "{\"Records\":[{\"ProjectId\":\"WS1\",\"Description\":\"skipped\"}]," +
+      "\"Errors\":{\"Code\":0},\"PageToken\":\"next-page\"}";
+    JsonNode page = aribaServices.readViewPage(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                                               Collections.singleton("ProjectId"));
+    Assert.assertEquals("next-page", page.get("PageToken").asText());
+    Assert.assertEquals(1, page.get("Records").size());
+    Assert.assertEquals("WS1", page.get("Records").get(0).get("ProjectId").asText());
+    Assert.assertFalse(page.get("Records").get(0).has("Description"));
+    Assert.assertFalse(page.has("Errors"));
+
+    JsonNode lastPage = aribaServices.readViewPage(
+      new ByteArrayInputStream("{\"Records\":[]}".getBytes(StandardCharsets.UTF_8)), null);
+    Assert.assertFalse(lastPage.has("PageToken"));
+  }
+
+  @Test
+  public void testReadViewRecordsUpToLimit() throws IOException {
+    String content = "{\"Records\":[{\"ProjectId\":\"WS1\"},{\"ProjectId\":\"WS2\"}],\"PageToken\":\"next\"}";
+    List<JsonNode> records = new ArrayList<>();
+    Assert.assertEquals("next", aribaServices.readViewRecords(
+      new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), 3, records));
+    Assert.assertEquals(2, records.size());
+
+    // The limit is reached within the page, its remaining records and the next page are not read
+    Assert.assertNull(aribaServices.readViewRecords(
+      new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), 3, records));
+    Assert.assertEquals(3, records.size());
+    Assert.assertEquals("WS1", records.get(2).get("ProjectId").asText());
+  }
+
+  @Test
+  public void testSampleViewStopsReadingAtLimit() throws Exception {
+    StringBuilder content = new StringBuilder("{\"Records\":[");
+    for (int i = 0; i < 100_000; i++) {
+      content.append(i == 0 ? "" : ",").append("{\"ProjectId\":\"WS").append(i).append("\"}");
+    }
+    content.append("],\"PageToken\":\"next\"}");
+    Buffer body = new Buffer().writeUtf8(content.toString());
+    long length = body.size();
+    AtomicBoolean closed = new AtomicBoolean();
+    BufferedSource source = Okio.buffer(new ForwardingSource(body) {
+      @Override
+      public void close() throws IOException {
+        closed.set(true);
+        super.close();
+      }
+    });
+    Request request = new Request.Builder().url("https://some-url.com").build();
+    Response pageResponse = new Response.Builder()
+      .request(request)
+      .protocol(Protocol.HTTP_2)
+      .code(200)
+      .message("OK")
+      .body(ResponseBody.create(MediaType.parse("application/json"), length, source))
+      .build();
+    new Expectations(AribaServices.class) {
+      {
+        aribaServices.getAccessToken();
+        result = "token";
+
+        aribaServices.executeRetryableRequest((Request) any, false);
+        result = pageResponse;
+
+        response.getResponseBody();
+        result = pageResponse.body().byteStream();
+      }
+    };
+
+    List<JsonNode> records = aribaServices.sampleView("SourcingProjectFactSystemView", 2);
+    Assert.assertEquals(2, records.size());
+    // The body is closed once the limit is reached, most of it is never read
+    Assert.assertTrue(closed.get());
+    Assert.assertTrue(body.size() > length / 2);
+  }
+
   @Test
   public void testFetchZipFileData() {
     HttpUrl.Builder zipUrl = aribaServices.zipBuilder("jobId", "fileName");
@@ -633,6 +853,262 @@ public class AribaServicesTest {
     Assert.assertTrue(aribaServices.isApiLimitExhausted(response));
   }
 
+  @Test
+  public void testCheckAndThrowExceptionWithoutWait() throws AribaException, InterruptedException {
+    Request mockRequest = new Request.Builder()
+      .url("https://some-url.com")
+      .build();
+    Response response = new Response.Builder()
+      .request(mockRequest)
+      .protocol(Protocol.HTTP_2)
+      .code(429) // status code
+      .message("")
+      .header("X-RateLimit-Remaining-Day", "1")
+      .header("X-RateLimit-Remaining-Hour", "1")
+      .header("X-RateLimit-Remaining-Minute", "0")
+      .header("RateLimit-Reset", "30")
+      .body(ResponseBody.create(
+        MediaType.get("application/json; charset=utf-8"),
+        "{}"
+      ))
+      .build();
+
+    try {
+      aribaServices.checkAndThrowException(response, false);
+      Assert.fail("testCheckAndThrowExceptionWithoutWait expected to fail with retryable error, but succeeded");
+    } catch (AribaRetryableException e) {
+      Assert.assertEquals(429, e.getErrorCode().intValue());
+      // The wait is left to the retry policy instead of sleeping
+      Assert.assertEquals(30, e.getRetryAfterSeconds());
+    }
+  }
+
+  @Test
+  public void testCallTimeoutPerEndpoint() {
+    pluginConfig = pluginConfigBuilder.tokenTimeout(10).pollTimeout(20).build();
+    aribaServices = AribaServices.getShared(pluginConfig, false, 0, AribaMetrics.get());
+    Assert.assertEquals(10, aribaServices.getCallTimeout(AribaEndpoint.TOKEN));
+    Assert.assertEquals(AribaConnectorConfig.DEFAULT_METADATA_TIMEOUT_SECONDS,
+                        aribaServices.getCallTimeout(AribaEndpoint.VIEW_TEMPLATES));
+    Assert.assertEquals(20, aribaServices.getCallTimeout(AribaEndpoint.JOB_STATUS));
+    Assert.assertEquals(AribaConnectorConfig.DEFAULT_DOWNLOAD_TIMEOUT_SECONDS,
+                        aribaServices.getCallTimeout(AribaEndpoint.FILES));
+
+    Request request = new Request.Builder()
+      .url("https://openapi.ariba.com/api/analytics-reporting-job/v1/prod/jobs")
+      .build();
+    Assert.assertEquals(TimeUnit.SECONDS.toNanos(20), aribaServices.newCall(request).timeout().timeoutNanos());
+
+    // Result files are parsed while they arrive, only their reads are bounded
+    Request file = new Request.Builder()
+      .url("https://openapi.ariba.com/api/analytics-reporting-jobresult/v1/prod/jobs/1/files/1.zip")
+      .build();
+    Assert.assertEquals(0, aribaServices.newCall(file).timeout().timeoutNanos());
+
+    // The deadline of the run cuts longer timeouts
+    aribaServices.setRunDeadline(System.currentTimeMillis() + 5000);
+    Assert.assertTrue(aribaServices.newCall(request).timeout().timeoutNanos() <= TimeUnit.SECONDS.toNanos(5));
+    Assert.assertTrue(aribaServices.newCall(file).timeout().timeoutNanos() <= TimeUnit.SECONDS.toNanos(5));
+  }
+
+  @Test
+  public void testTimedOutCallIsRetryable() throws Exception {
+    pluginConfig = pluginConfigBuilder.pollTimeout(1).build();
+    aribaServices = AribaServices.getShared(pluginConfig, false, 0, AribaMetrics.get());
+    // Accepts connections but never responds
+    try (ServerSocket server = new ServerSocket(0)) {
+      Request request = new Request.Builder()
+        .url("http://localhost:" + server.getLocalPort() + "/api/analytics-reporting-job/v1/prod/jobs")
+        .build();
+      aribaServices.executeRetryableRequest(request, false);
+      Assert.fail("testTimedOutCallIsRetryable expected to fail with retryable error, but succeeded");
+    } catch (AribaRetryableException e) {
+      Assert.assertTrue(e.getCause() instanceof InterruptedIOException);
+    }
+  }
+
+  @Test
+  public void testRunDeadlineExceeded() throws Exception {
+    aribaServices.setRunDeadline(System.currentTimeMillis() - 1);
+    Request request = new Request.Builder()
+      .url("https://openapi.ariba.com/api/analytics-reporting-job/v1/prod/jobs")
+      .build();
+    try {
+      aribaServices.executeRequest(request);
+      Assert.fail("testRunDeadlineExceeded expected to fail, but succeeded");
+    } catch (AribaException e) {
+      Assert.assertEquals(ResourceConstants.ERR_RUN_DEADLINE_EXCEEDED.getMsgForKey(), e.getMessage());
+    }
+  }
+
+  @Test
+  public void testServerErrorIsRetryable() throws AribaException, InterruptedException {
+    // No rate limit headers on server errors
+    Response response = new Response.Builder()
+      .request(new Request.Builder().url("https://some-url.com").build())
+      .protocol(Protocol.HTTP_2)
+      .code(503)
+      .message("Service Unavailable")
+      .header("RateLimit-Reset", "5")
+      .body(ResponseBody.create(MediaType.parse("application/json"), "{}"))
+      .build();
+    try {
+      aribaServices.checkAndThrowException(response, true);
+      Assert.fail("testServerErrorIsRetryable expected to fail with retryable error, but succeeded");
+    } catch (AribaRetryableException e) {
+      Assert.assertEquals(503, e.getErrorCode().intValue());
+      Assert.assertEquals(5, e.getRetryAfterSeconds());
+    }
+  }
+
+  @Test
+  public void testFailedResponseIsClosed(@Mocked Call call) throws Exception {
+    Request request = new Request.Builder().url("https://some-url.com").build();
+    AtomicBoolean closed = new AtomicBoolean();
+    BufferedSource source = Okio.buffer(new ForwardingSource(new Buffer().writeUtf8("{}")) {
+      @Override
+      public void close() throws IOException {
+        closed.set(true);
+        super.close();
+      }
+    });
+    Response response = new Response.Builder()
+      .request(request)
+      .protocol(Protocol.HTTP_2)
+      .code(503)
+      .message("Service Unavailable")
+      .body(ResponseBody.create(MediaType.parse("application/json"), 2, source))
+      .build();
+    new Expectations(AribaServices.class) {
+      {
+        aribaServices.newCall(request);
+        result = call;
+
+        call.execute();
+        result = response;
+      }
+    };
+    try {
+      aribaServices.executeRetryableRequest(request, false);
+      Assert.fail("testFailedResponseIsClosed expected to fail with retryable error, but succeeded");
+    } catch (AribaRetryableException e) {
+      Assert.assertTrue(closed.get());
+    }
+  }
+
+  @Test
+  public void testCircuitOpensOnRepeatedServerErrors() throws Exception {
+    Request request = new Request.Builder().url("https://some-url.com").build();
+    new Expectations(AribaServices.class) {
+      {
+        aribaServices.executeRetryableRequest(request, false);
+        result = new AribaRetryableException("Service Unavailable", 503, 0);
+        minTimes = 0;
+      }
+    };
+    for (int i = 0; i < 5; i++) {
+      try {
+        aribaServices.executeRequest(request);
+        Assert.fail("testCircuitOpensOnRepeatedServerErrors expected to fail, but succeeded");
+      } catch (RuntimeException e) {
+        Assert.assertTrue(e.getCause() instanceof AribaRetryableException);
+      }
+    }
+    try {
+      aribaServices.executeRequest(request);
+      Assert.fail("testCircuitOpensOnRepeatedServerErrors expected to fail with open circuit, but succeeded");
+    } catch (AribaException e) {
+      Assert.assertEquals(ResourceConstants.ERR_CIRCUIT_OPEN.getMsgForKey(5), e.getMessage());
+    }
+  }
+
+  @Test
+  public void testSlowStatusCallIsHedged() throws Exception {
+    AribaServices retryingServices = new AribaServices(pluginConfig.getConnection(),
+      pluginConfig.getMaxRetryCount(),
+      pluginConfig.getInitialRetryDuration(),
+      pluginConfig.getMaxRetryDuration(),
+      pluginConfig.getRetryMultiplier(), true);
+    Request request = new Request.Builder().url("https://some-url.com").build();
+    Response response = new Response.Builder()
+      .request(request)
+      .protocol(Protocol.HTTP_2)
+      .code(200)
+      .message("")
+      .body(ResponseBody.create(MediaType.parse("application/json"), "{}"))
+      .build();
+    CompletableFuture<Response> stuck = new CompletableFuture<>();
+    new Expectations(AribaServices.class) {
+      {
+        retryingServices.executeRequestAsync(request);
+        returns(stuck, CompletableFuture.completedFuture(response));
+      }
+    };
+    Assert.assertSame(response, retryingServices.executeHedgedRequest(request, AribaEndpoint.JOB_STATUS));
+    // The request still in flight is cancelled
+    Assert.assertTrue(stuck.isCancelled());
+  }
+
+  @Test
+  public void testGetSharedClientPerConnection() {
+    AribaMetrics metrics = AribaMetrics.get();
+    OkHttpClient client = AribaServices.getShared(pluginConfig, true, 0, metrics).getHttpClient();
+    Assert.assertSame(client, AribaServices.getShared(pluginConfig, true, 0, metrics).getHttpClient());
+    // Equal configs deserialized by every task share the client
+    AribaPluginConfig taskConfig = pluginConfigBuilder.build();
+    Assert.assertSame(client, AribaServices.getShared(taskConfig, true, 0, metrics).getHttpClient());
+    // Run settings are not part of the key
+    Assert.assertSame(client, AribaServices.getShared(pluginConfig, false, 0, metrics).getHttpClient());
+    long runDeadline = System.currentTimeMillis();
+    Assert.assertSame(client, AribaServices.getShared(pluginConfig, true, runDeadline, metrics).getHttpClient());
+
+    AribaPluginConfig otherRealm = pluginConfigBuilder.realm("other-realm").build();
+    Assert.assertNotSame(client, AribaServices.getShared(otherRealm, true, 0, metrics).getHttpClient());
+  }
+
+  @Test
+  public void testCallsOfSharedClientTaggedWithRunMetrics() {
+    AribaMetrics firstRun = AribaMetrics.forRun("default:pipeline:Ariba:1000");
+    AribaMetrics secondRun = AribaMetrics.forRun("default:pipeline:Ariba:2000");
+    AribaServices first = AribaServices.getShared(pluginConfig, true, 0, firstRun);
+    AribaServices second = AribaServices.getShared(pluginConfig, true, 0, secondRun);
+    Assert.assertSame(first.getHttpClient(), second.getHttpClient());
+
+    Request request = new Request.Builder().url("https://openapi.ariba.com/api/analytics-reporting-job/v1").build();
+    Assert.assertSame(firstRun, first.newCall(request).request().tag(AribaMetrics.class));
+    Assert.assertSame(secondRun, second.newCall(request).request().tag(AribaMetrics.class));
+  }
+
+  @Test
+  public void testRemovedSharedClientKeepsRunning() {
+    OkHttpClient client = AribaServices.getShared(pluginConfig, true, 0, AribaMetrics.get()).getHttpClient();
+    AribaServices.invalidateSharedConnections();
+
+    Assert.assertFalse(client.dispatcher().executorService().isShutdown());
+    Assert.assertNotSame(client, AribaServices.getShared(pluginConfig, true, 0, AribaMetrics.get()).getHttpClient());
+  }
+
+  @Test
+  public void testViewBuilder() {
+    HttpUrl url = aribaServices.viewBuilder("RequisitionSystemView", "token-2").build();
+    Assert.assertEquals("/api/analytics-reporting-view/v1/prod/views/RequisitionSystemView", url.encodedPath());
+    Assert.assertEquals("analytics", url.queryParameter("product"));
+    Assert.assertEquals("test-realm", url.queryParameter("realm"));
+    Assert.assertEquals("token-2", url.queryParameter("pageToken"));
+  }
+
+  @Test
+  public void testIsRangeOf() {
+    Assert.assertTrue(AribaServices.isRangeOf("bytes 4000-9999/10000", 4000, 10000));
+    Assert.assertTrue(AribaServices.isRangeOf("bytes 4000-9999/*", 4000, 10000));
+    Assert.assertTrue(AribaServices.isRangeOf("bytes 4000-9999/10000", 4000, -1));
+    // Another offset, a shorter remainder or another file length cannot be appended
+    Assert.assertFalse(AribaServices.isRangeOf("bytes 0-9999/10000", 4000, 10000));
+    Assert.assertFalse(AribaServices.isRangeOf("bytes 4000-8999/10000", 4000, 10000));
+    Assert.assertFalse(AribaServices.isRangeOf("bytes 4000-11999/12000", 4000, 10000));
+    Assert.assertFalse(AribaServices.isRangeOf(null, 4000, 10000));
+  }
+
   @Test
   public void checkUpdateFilter() throws AribaException, IOException, InterruptedException {
     URL url = null;
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Test case for AribaStringDictionary
+ */
+public class AribaStringDictionaryTest {
+
+  @Test
+  public void testLowCardinalityValuesAreShared() {
+    AribaStringDictionary dictionary = new AribaStringDictionary();
+    String first = dictionary.canonicalize(new String("ASM"));
+    for (int i = 0; i < AribaStringDictionary.SAMPLE_SIZE * 2; i++) {
+      Assert.assertSame(first, dictionary.canonicalize(new String("ASM")));
+    }
+    Assert.assertTrue(dictionary.isEnabled());
+  }
+
+  @Test
+  public void testHighCardinalityFieldIsDisabled() {
+    AribaStringDictionary dictionary = new AribaStringDictionary();
+    for (int i = 0; i <= AribaStringDictionary.MAX_ENTRIES; i++) {
+      String value = "value" + i;
+      Assert.assertEquals(value, dictionary.canonicalize(value));
+    }
+    Assert.assertFalse(dictionary.isEnabled());
+    String value = new String("value0");
+    Assert.assertSame(value, dictionary.canonicalize(value));
+  }
+
+  @Test
+  public void testTransformerSharesValuesAcrossRecords() throws IOException {
+    Schema schema = Schema.recordOf("AribaColumnMetadata",
+                                    Schema.Field.of("SourceSystem", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    ObjectMapper mapper = new ObjectMapper();
+    JsonNode first = mapper.readTree("{\"SourceSystem\":\"ASM\"}");
+    JsonNode second = mapper.readTree("{\"SourceSystem\":\"ASM\"}");
+
+    AribaStructuredTransformer transformer = new AribaStructuredTransformer(true);
+    StructuredRecord firstRecord = transformer.readFields(first, schema);
+    StructuredRecord secondRecord = transformer.readFields(second, schema);
+    Assert.assertSame(firstRecord.get("SourceSystem"), secondRecord.get("SourceSystem"));
+
+    transformer = new AribaStructuredTransformer();
+    Assert.assertNotSame(transformer.readFields(first, schema).get("SourceSystem"),
+                         transformer.readFields(second, schema).get("SourceSystem"));
+  }
+}
@@ -18,12 +18,17 @@ package io.cdap.plugin.ariba.source;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Test case for AribaStructuredTransformer
@@ -59,10 +64,28 @@ public class AribaStructuredTransformerTest {
   }
 
   @Test
-  public void testHandleMinusAtEnd() {
-    AribaStructuredTransformer aribaStructuredTransformer = new AribaStructuredTransformer();
-    String data = aribaStructuredTransformer.handleMinusAtEnd("12345-");
-    Assert.assertEquals("-12345", data);
+  public void testReadFieldsWithNumbers() throws IOException {
+    Schema schema = Schema.recordOf("AribaColumnMetadata",
+                                    Schema.Field.of("Quantity", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+                                    Schema.Field.of("LineNumber", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+                                    Schema.Field.of("Price", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+                                    Schema.Field.of("Amount", Schema.nullableOf(Schema.decimalOf(10, 2))),
+                                    Schema.Field.of("Refund", Schema.nullableOf(Schema.decimalOf(10, 2))),
+                                    Schema.Field.of("Active", Schema.nullableOf(Schema.of(Schema.Type.BOOLEAN))),
+                                    Schema.Field.of("Code", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    JsonNode node = new ObjectMapper().readTree("{\"Quantity\":\" 12345- \",\"LineNumber\":7,\"Price\":12," +
+                                                  "\"Amount\":12.5,\"Refund\":\"3.25-\",\"Active\":true," +
+                                                  "\"Code\":42}");
+
+    StructuredRecord record = new AribaStructuredTransformer().readFields(node, schema);
+
+    Assert.assertEquals(-12345L, record.<Long>get("Quantity").longValue());
+    Assert.assertEquals(7, record.<Integer>get("LineNumber").intValue());
+    Assert.assertEquals(12d, record.<Double>get("Price"), 0d);
+    Assert.assertEquals(new BigDecimal("12.50"), record.getDecimal("Amount"));
+    Assert.assertEquals(new BigDecimal("-3.25"), record.getDecimal("Refund"));
+    Assert.assertEquals(Boolean.TRUE, record.get("Active"));
+    Assert.assertEquals("42", record.get("Code"));
   }
 
   @Test
@@ -71,4 +94,66 @@ public class AribaStructuredTransformerTest {
     LocalTime sourceSpecificTimeValue = aribaStructuredTransformer.getSourceSpecificTimeValue("230000");
     Assert.assertEquals("23:00", sourceSpecificTimeValue.toString());
   }
+
+  @Test
+  public void testReadFieldsWithNestedArrays() throws IOException {
+    Schema supplierSchema = Schema.recordOf(
+      "Suppliers", Schema.Field.of("SupplierId", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    Schema schema = Schema.recordOf("AribaColumnMetadata",
+                                    Schema.Field.of("Suppliers", Schema.nullableOf(Schema.arrayOf(supplierSchema))),
+                                    Schema.Field.of("Tags", Schema.nullableOf(
+                                      Schema.arrayOf(Schema.nullableOf(Schema.of(Schema.Type.STRING))))),
+                                    Schema.Field.of("Amount", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))));
+    JsonNode node = new ObjectMapper().readTree("{\"Suppliers\":[{\"Suppliers\":{\"SupplierId\":\"S1\"}}," +
+                                                  "{\"Suppliers\":{\"SupplierId\":\"S2\"}}]," +
+                                                  "\"Tags\":[\"a\",null],\"Amount\":\"12.5-\"}");
+
+    AribaStructuredTransformer aribaStructuredTransformer = new AribaStructuredTransformer();
+    StructuredRecord record = aribaStructuredTransformer.readFields(node, schema);
+
+    List<StructuredRecord> suppliers = record.get("Suppliers");
+    Assert.assertEquals(2, suppliers.size());
+    Assert.assertEquals("S2", suppliers.get(1).get("SupplierId"));
+    List<String> tags = record.get("Tags");
+    Assert.assertEquals("a", tags.get(0));
+    Assert.assertNull(tags.get(1));
+    Assert.assertEquals(-12.5d, record.<Double>get("Amount"), 0d);
+    Assert.assertSame(aribaStructuredTransformer.getRecordPlan(schema),
+                      aribaStructuredTransformer.getRecordPlan(schema));
+  }
+
+  @Test
+  public void testReadFieldsConvertsArrayComponents() throws IOException {
+    Schema schema = Schema.recordOf(
+      "AribaColumnMetadata",
+      Schema.Field.of("Quantities", Schema.arrayOf(Schema.nullableOf(Schema.of(Schema.Type.LONG)))),
+      Schema.Field.of("Prices", Schema.arrayOf(Schema.of(Schema.Type.DOUBLE))),
+      Schema.Field.of("Flags", Schema.arrayOf(Schema.of(Schema.Type.BOOLEAN))));
+    JsonNode node = new ObjectMapper().readTree("{\"Quantities\":[1,\"2\",null],\"Prices\":[1.5,\"2.25\"]," +
+                                                  "\"Flags\":[true,\"false\"]}");
+
+    StructuredRecord record = new AribaStructuredTransformer().readFields(node, schema);
+
+    Assert.assertEquals(Arrays.asList(1L, 2L, null), record.get("Quantities"));
+    Assert.assertEquals(Arrays.asList(1.5d, 2.25d), record.get("Prices"));
+    Assert.assertEquals(Arrays.asList(true, false), record.get("Flags"));
+  }
+
+  @Test
+  public void testReadFieldsConvertsLogicalArrayComponentsLikeFields() throws IOException {
+    Schema schema = Schema.recordOf(
+      "AribaColumnMetadata",
+      Schema.Field.of("Date", Schema.of(Schema.LogicalType.DATE)),
+      Schema.Field.of("Dates", Schema.arrayOf(Schema.of(Schema.LogicalType.DATE))),
+      Schema.Field.of("Timestamp", Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)),
+      Schema.Field.of("Timestamps", Schema.arrayOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))));
+    JsonNode node = new ObjectMapper().readTree(
+      "{\"Date\":\"20220128\",\"Dates\":[\"20220128\"],\"Timestamp\":\"2022-01-28T10:05:02.5+01:00\"," +
+        "\"Timestamps\":[\"2022-01-28T10:05:02.5+01:00\"]}");
+
+    StructuredRecord record = new AribaStructuredTransformer().readFields(node, schema);
+
+    Assert.assertEquals(Arrays.asList((Object) record.get("Date")), record.get("Dates"));
+    Assert.assertEquals(Arrays.asList((Object) record.get("Timestamp")), record.get("Timestamps"));
+  }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.ariba.source.util.AribaDateTimeUtil;
+import io.cdap.plugin.ariba.source.util.AribaNumberUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH micro benchmarks for the record conversion hot path. The class is not picked up by surefire, run it with
+ * <pre>
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main AribaTransformerBenchmark
+ * </pre>
+ * and add {@code -prof gc} to report the allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AribaTransformerBenchmark {
+
+  private static final String TIMESTAMP = "2021-12-01T03:04:23.123Z";
+  private static final String DATE = "20211201";
+  private static final String TIME = "030423";
+  private static final String TRAILING_MINUS = "1234567-";
+
+  private AribaStructuredTransformer transformer;
+  private Schema schema;
+  private JsonNode row;
+  private Schema numericSchema;
+  private JsonNode numericRow;
+
+  @Setup
+  public void setup() throws IOException {
+    transformer = new AribaStructuredTransformer();
+    schema = Schema.recordOf(
+      "Benchmark",
+      Schema.Field.of("CreatedDate", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))),
+      Schema.Field.of("UpdatedDate", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))),
+      Schema.Field.of("PostingDate", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))),
+      Schema.Field.of("PostingTime", Schema.nullableOf(Schema.of(Schema.LogicalType.TIME_MICROS))));
+    row = new ObjectMapper().readTree(
+      "{\"CreatedDate\":\"2021-12-01T03:04:23Z\",\"UpdatedDate\":\"2021-12-02 10:11:12.345Z\","
+        + "\"PostingDate\":\"20211201\",\"PostingTime\":\"030423\"}");
+    numericSchema = Schema.recordOf(
+      "BenchmarkNumbers",
+      Schema.Field.of("Quantity", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("Price", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+      Schema.Field.of("Amount", Schema.nullableOf(Schema.decimalOf(18, 2))),
+      Schema.Field.of("Refund", Schema.nullableOf(Schema.of(Schema.Type.LONG))));
+    numericRow = new ObjectMapper().readTree(
+      "{\"Quantity\":1234567,\"Price\":12.5,\"Amount\":1234.56,\"Refund\":\"1234567-\"}");
+  }
+
+  @Benchmark
+  public long timestampFastPath() {
+    return AribaDateTimeUtil.parseTimestampMicros(TIMESTAMP);
+  }
+
+  @Benchmark
+  public ZonedDateTime timestampJavaTime() {
+    return ZonedDateTime.parse(TIMESTAMP, DateTimeFormatter.ISO_DATE_TIME);
+  }
+
+  @Benchmark
+  public int dateFastPath() {
+    return AribaDateTimeUtil.parseBasicDate(DATE);
+  }
+
+  @Benchmark
+  public Object dateJavaTime() {
+    return transformer.getSourceSpecificDateValue(DATE);
+  }
+
+  @Benchmark
+  public long timeFastPath() {
+    return AribaDateTimeUtil.parseBasicTimeMicros(TIME);
+  }
+
+  @Benchmark
+  public long trailingMinusFastPath() {
+    return AribaNumberUtil.parseLong(TRAILING_MINUS);
+  }
+
+  @Benchmark
+  public long trailingMinusStringBuilder() {
+    StringBuilder sb = new StringBuilder(TRAILING_MINUS.trim());
+    sb.deleteCharAt(sb.length() - 1).insert(0, '-');
+    return Long.parseLong(sb.toString());
+  }
+
+  @Benchmark
+  public StructuredRecord readNumericRecord() {
+    return transformer.readFields(numericRow, numericSchema);
+  }
+
+  @Benchmark
+  public StructuredRecord readDateTimeRecord() {
+    return transformer.readFields(row, schema);
+  }
+}
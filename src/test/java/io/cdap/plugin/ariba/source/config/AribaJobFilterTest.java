@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.config;
+
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import io.cdap.cdap.etl.mock.validation.MockFailureCollector;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Junit test class for {@link AribaJobFilter} class methods
+ */
+public class AribaJobFilterTest {
+
+  @Test
+  public void testParse() {
+    Assert.assertEquals(Collections.emptyList(), AribaJobFilter.parse(null));
+    Assert.assertEquals(Collections.emptyList(), AribaJobFilter.parse("  "));
+    Assert.assertEquals(Arrays.asList(new AribaJobFilter("companyCode", TextNode.valueOf("1000")),
+                                      new AribaJobFilter("dateFrom", TextNode.valueOf("2022-01-01T00:00:00Z"))),
+                        AribaJobFilter.parse(" companyCode = \"1000\";dateFrom=2022-01-01T00:00:00Z;"));
+  }
+
+  @Test
+  public void testParseTypedValues() {
+    List<AribaJobFilter> filters = AribaJobFilter.parse(
+      "count=1000;amount=12.50;big=12345678901234567890;isTest=true;code=0100;status=Approved;empty=\"\"");
+    Assert.assertTrue(filters.get(0).getValue().isLong());
+    Assert.assertEquals(1000L, filters.get(0).getValue().longValue());
+    Assert.assertEquals(new BigDecimal("12.50"), filters.get(1).getValue().decimalValue());
+    Assert.assertEquals(new BigInteger("12345678901234567890"), filters.get(2).getValue().bigIntegerValue());
+    Assert.assertEquals(BooleanNode.TRUE, filters.get(3).getValue());
+    // A leading zero is not a JSON number, such codes stay strings
+    Assert.assertEquals(TextNode.valueOf("0100"), filters.get(4).getValue());
+    Assert.assertEquals(TextNode.valueOf("Approved"), filters.get(5).getValue());
+    Assert.assertEquals(TextNode.valueOf(""), filters.get(6).getValue());
+  }
+
+  @Test
+  public void testValidateJobFiltersAgainstTemplate() {
+    AribaPluginConfig pluginConfig = new AribaPluginConfig.Builder()
+      .viewTemplateName("SourcingProjectFactSystemView")
+      .jobFilters("companyCode=\"1000\";Region=EU")
+      .build();
+    MockFailureCollector collector = new MockFailureCollector();
+    pluginConfig.validateJobFilters(collector, "SourcingProjectFactSystemView",
+                                    new HashSet<>(Arrays.asList("updatedDateFrom", "companyCode")));
+    Assert.assertEquals(1, collector.getValidationFailures().size());
+    Assert.assertTrue(collector.getValidationFailures().get(0).getMessage().contains("Region"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseMissingValue() {
+    AribaJobFilter.parse("companyCode=");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseDuplicateName() {
+    AribaJobFilter.parse("companyCode=1000;companyCode=2000");
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.connector;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test cases for AribaTemplateCatalog
+ */
+public class AribaTemplateCatalogTest {
+
+  private final AtomicLong now = new AtomicLong(1000);
+  private final List<Runnable> refreshes = new ArrayList<>();
+  private final AribaTemplateCatalog catalog = new AribaTemplateCatalog(100, 1000, refreshes::add, now::get);
+
+  @Test
+  public void testServedFromMemoryUntilRefreshed() throws IOException {
+    AtomicInteger loads = new AtomicInteger();
+    AribaTemplateCatalog.Loader loader = () -> Collections.singletonList("View" + loads.incrementAndGet());
+
+    Assert.assertEquals(Collections.singletonList("View1"), catalog.getTemplateNames(loader));
+    Assert.assertEquals(Collections.singletonList("View1"), catalog.getTemplateNames(loader));
+    Assert.assertEquals(1, loads.get());
+
+    // Stale names are served while a single refresh runs in the background
+    now.addAndGet(150);
+    Assert.assertEquals(Collections.singletonList("View1"), catalog.getTemplateNames(loader));
+    Assert.assertEquals(Collections.singletonList("View1"), catalog.getTemplateNames(loader));
+    Assert.assertEquals(1, refreshes.size());
+    refreshes.get(0).run();
+    Assert.assertEquals(Collections.singletonList("View2"), catalog.getTemplateNames(loader));
+  }
+
+  @Test
+  public void testExpiredNamesAreListedAgain() throws IOException {
+    AtomicInteger loads = new AtomicInteger();
+    AribaTemplateCatalog.Loader loader = () -> Collections.singletonList("View" + loads.incrementAndGet());
+    catalog.getTemplateNames(loader);
+
+    now.addAndGet(1000);
+    Assert.assertEquals(Collections.singletonList("View2"), catalog.getTemplateNames(loader));
+    Assert.assertTrue(refreshes.isEmpty());
+  }
+
+  @Test
+  public void testFailedRefreshKeepsNames() throws IOException {
+    catalog.getTemplateNames(() -> Arrays.asList("First", "Second"));
+    now.addAndGet(150);
+    catalog.getTemplateNames(() -> {
+      throw new IOException("unavailable");
+    });
+    refreshes.get(0).run();
+    Assert.assertEquals(Arrays.asList("First", "Second"), catalog.getTemplateNames(Collections::emptyList));
+  }
+
+  @Test
+  public void testFilterTemplates() {
+    List<String> names = Arrays.asList("RequestFactSystemView", "SupplierSystemView", "InvoiceLineItemFactView");
+    Assert.assertEquals(names, AribaConnector.filterTemplates(names, "/"));
+    Assert.assertEquals(names, AribaConnector.filterTemplates(names, null));
+    Assert.assertEquals(Arrays.asList("RequestFactSystemView", "InvoiceLineItemFactView"),
+                        AribaConnector.filterTemplates(names, "/fact"));
+  }
+}
@@ -16,6 +16,7 @@
 package io.cdap.plugin.ariba.source.metadata;
 
 import io.cdap.plugin.ariba.source.exception.AribaException;
+import okio.Buffer;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -23,7 +24,9 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ResourceContainerTest {
   AribaResponseContainer aribaResponseContainer;
@@ -67,6 +70,39 @@ public class ResourceContainerTest {
     Assert.assertEquals(404, columnDetail.httpStatusCode(404).httpStatusCode);
   }
 
+  @Test
+  public void testBufferedBodyCanBeReadRepeatedly() throws IOException {
+    Buffer buffer = new Buffer().writeUtf8(httpStatusMsg);
+    aribaResponseContainer = AribaResponseContainer.builder().httpStatusCode(200).bufferedBody(buffer).build();
+    Assert.assertFalse(aribaResponseContainer.isStreaming());
+    Assert.assertEquals('N', aribaResponseContainer.getResponseBody().read());
+    Assert.assertEquals('N', aribaResponseContainer.getResponseBody().read());
+    aribaResponseContainer.close();
+    Assert.assertEquals(0, buffer.size());
+  }
+
+  @Test
+  public void testStreamingBodyIsReadOnceAndClosed() throws IOException {
+    AtomicBoolean closed = new AtomicBoolean();
+    InputStream body = new ByteArrayInputStream(httpStatusMsg.getBytes(StandardCharsets.UTF_8)) {
+      @Override
+      public void close() {
+        closed.set(true);
+      }
+    };
+    aribaResponseContainer = AribaResponseContainer.builder().httpStatusCode(200).streamingBody(body).build();
+    Assert.assertTrue(aribaResponseContainer.isStreaming());
+    Assert.assertEquals('N', aribaResponseContainer.getResponseBody().read());
+    try {
+      aribaResponseContainer.getResponseBody();
+      Assert.fail("A streamed body must be read only once");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+    aribaResponseContainer.close();
+    Assert.assertTrue(closed.get());
+  }
+
   @Test
   public void testAribaException() {
     AribaException aribaException = new AribaException("unable to access");
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.metrics;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Test cases for AribaCompressionInterceptor
+ */
+public class AribaCompressionInterceptorTest {
+
+  private static final String METADATA_PATH = "/api/analytics-reporting-view/v1/prod/metadata";
+  private static final String JSON = "{\"properties\": " + String.join(", ", Collections.nCopies(200,
+    "{\"title\": \"IsTestProject\", \"type\": [\"boolean\", \"null\"]}")) + "}";
+
+  @Test
+  public void testGzipResponseIsDecompressed() throws Exception {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    assertDecompressed("gzip", compress(new GZIPOutputStream(compressed), compressed));
+  }
+
+  @Test
+  public void testDeflateResponseIsDecompressed() throws Exception {
+    ByteArrayOutputStream zlibWrapped = new ByteArrayOutputStream();
+    assertDecompressed("deflate", compress(new DeflaterOutputStream(zlibWrapped), zlibWrapped));
+    // Raw deflate data without zlib header, as sent by some servers
+    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    assertDecompressed("deflate", compress(new DeflaterOutputStream(raw, deflater), raw));
+  }
+
+  private void assertDecompressed(String encoding, byte[] compressed) throws Exception {
+    AribaMetrics metrics = new AribaMetrics();
+    OkHttpClient client = new OkHttpClient.Builder()
+      .addInterceptor(new AribaRequestInterceptor(metrics))
+      .addNetworkInterceptor(new AribaCompressionInterceptor(metrics))
+      .build();
+    try (ServerSocket server = new ServerSocket(0)) {
+      CompletableFuture<String> acceptEncoding = CompletableFuture.supplyAsync(() -> serve(server, encoding,
+                                                                                           compressed));
+      Request request = new Request.Builder().url("http://localhost:" + server.getLocalPort() + METADATA_PATH).build();
+      try (Response response = client.newCall(request).execute()) {
+        Assert.assertEquals(JSON, response.body().string());
+        Assert.assertNull(response.header("Content-Encoding"));
+      }
+      Assert.assertEquals(AribaCompressionInterceptor.ACCEPTED_ENCODINGS, acceptEncoding.get());
+    }
+    String summary = metrics.getRequestStats().summary();
+    Assert.assertTrue(summary, summary.contains(String.format("bytes=%d, ", JSON.length())));
+    Assert.assertTrue(summary, summary.contains(String.format("wireBytes=%d", compressed.length)));
+  }
+
+  private static byte[] compress(DeflaterOutputStream out, ByteArrayOutputStream bytes) throws IOException {
+    try (DeflaterOutputStream compressing = out) {
+      compressing.write(JSON.getBytes(StandardCharsets.UTF_8));
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Answers one request with the given compressed body and returns the Accept-Encoding header it was sent with.
+   */
+  private static String serve(ServerSocket server, String encoding, byte[] body) {
+    try (Socket socket = server.accept()) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                                                       StandardCharsets.ISO_8859_1));
+      String acceptEncoding = null;
+      for (String line = reader.readLine(); line != null && !line.isEmpty(); line = reader.readLine()) {
+        if (line.toLowerCase().startsWith("accept-encoding:")) {
+          acceptEncoding = line.substring(line.indexOf(':') + 1).trim();
+        }
+      }
+      OutputStream out = socket.getOutputStream();
+      out.write(String.format("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Encoding: %s\r\n" +
+                                "Content-Length: %d\r\nConnection: close\r\n\r\n", encoding, body.length)
+                  .getBytes(StandardCharsets.ISO_8859_1));
+      out.write(body);
+      out.flush();
+      return acceptEncoding;
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.metrics;
+
+import io.cdap.cdap.etl.api.StageMetrics;
+import okhttp3.Request;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Test cases for AribaMetrics
+ */
+public class AribaMetricsTest {
+
+  @Test
+  public void testFlush() {
+    AribaMetrics metrics = new AribaMetrics();
+    metrics.increment(AribaMetrics.RETRIES);
+    metrics.add(AribaMetrics.RETRIES, 2);
+    metrics.record(AribaMetrics.DOWNLOAD_MS, 40);
+    metrics.record(AribaMetrics.DOWNLOAD_MS, 100);
+
+    StageMetrics stageMetrics = Mockito.mock(StageMetrics.class);
+    metrics.flush(stageMetrics);
+    Mockito.verify(stageMetrics).countLong(AribaMetrics.RETRIES, 3);
+    Mockito.verify(stageMetrics).countLong(AribaMetrics.DOWNLOAD_MS + ".count", 2);
+    Mockito.verify(stageMetrics).countLong(AribaMetrics.DOWNLOAD_MS + ".sum", 140);
+    Mockito.verify(stageMetrics).gauge(AribaMetrics.DOWNLOAD_MS + ".max", 100);
+
+    // Only what was recorded since the previous flush is published
+    StageMetrics nextStageMetrics = Mockito.mock(StageMetrics.class);
+    metrics.flush(nextStageMetrics);
+    Mockito.verifyZeroInteractions(nextStageMetrics);
+  }
+
+  @Test
+  public void testRegistryPerRun() {
+    AribaMetrics run = AribaMetrics.forRun("default:pipeline:Ariba:1000");
+    Assert.assertSame(run, AribaMetrics.forRun("default:pipeline:Ariba:1000"));
+    Assert.assertNotSame(run, AribaMetrics.forRun("default:pipeline:Ariba:2000"));
+    Assert.assertNotSame(run, AribaMetrics.forRun("default:pipeline:Ariba2:1000"));
+    Assert.assertSame(AribaMetrics.get(), AribaMetrics.forRun(null));
+
+    // Another run flushing does not publish the counters of this one
+    run.increment(AribaMetrics.RETRIES);
+    StageMetrics otherStageMetrics = Mockito.mock(StageMetrics.class);
+    AribaMetrics.forRun("default:pipeline:Ariba:2000").flush(otherStageMetrics);
+    Mockito.verify(otherStageMetrics, Mockito.never()).countLong(AribaMetrics.RETRIES, 1);
+    StageMetrics stageMetrics = Mockito.mock(StageMetrics.class);
+    run.flush(stageMetrics);
+    Mockito.verify(stageMetrics).countLong(AribaMetrics.RETRIES, 1);
+  }
+
+  @Test
+  public void testRegistryOfTaggedRequest() {
+    AribaMetrics fallback = new AribaMetrics();
+    AribaMetrics run = new AribaMetrics();
+    Request request = new Request.Builder().url("https://openapi.ariba.com/api").build();
+    Assert.assertSame(fallback, AribaMetrics.of(request, fallback));
+    Assert.assertSame(run, AribaMetrics.of(request.newBuilder().tag(AribaMetrics.class, run).build(), fallback));
+  }
+
+  @Test
+  public void testMeteredInputStream() throws IOException {
+    AribaMetrics.MeteredInputStream stream = new AribaMetrics.MeteredInputStream(
+      new ByteArrayInputStream(new byte[100]));
+    Assert.assertEquals(0, stream.read());
+    Assert.assertEquals(64, stream.read(new byte[64]));
+    Assert.assertEquals(35, stream.read(new byte[64]));
+    Assert.assertEquals(-1, stream.read());
+    Assert.assertEquals(100, stream.getBytes());
+  }
+}
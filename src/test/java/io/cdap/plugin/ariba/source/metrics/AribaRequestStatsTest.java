@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.metrics;
+
+import io.cdap.cdap.etl.api.StageMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Test cases for AribaRequestStats
+ */
+public class AribaRequestStatsTest {
+
+  @Test
+  public void testEndpointOf() {
+    Assert.assertEquals(AribaEndpoint.TOKEN, AribaEndpoint.of("/v2/oauth/token"));
+    Assert.assertEquals(AribaEndpoint.METADATA,
+                        AribaEndpoint.of("/api/analytics-reporting-view/v1/prod/metadata"));
+    Assert.assertEquals(AribaEndpoint.VIEW_TEMPLATES,
+                        AribaEndpoint.of("/api/analytics-reporting-view/v1/prod/viewTemplates/RequestFactSystemView"));
+    Assert.assertEquals(AribaEndpoint.VIEWS,
+                        AribaEndpoint.of("/api/analytics-reporting-view/v1/prod/views/RequestFactSystemView"));
+    Assert.assertEquals(AribaEndpoint.JOBS, AribaEndpoint.of("/api/analytics-reporting-job/v1/prod/jobs"));
+    Assert.assertEquals(AribaEndpoint.JOB_STATUS,
+                        AribaEndpoint.of("/api/analytics-reporting-jobresult/v1/prod/jobs/123"));
+    Assert.assertEquals(AribaEndpoint.FILES,
+                        AribaEndpoint.of("/api/analytics-reporting-jobresult/v1/prod/jobs/123/files/a.zip"));
+    Assert.assertEquals(AribaEndpoint.OTHER, AribaEndpoint.of("/"));
+  }
+
+  @Test
+  public void testLatencyPercentiles() {
+    AribaRequestStats stats = new AribaRequestStats();
+    for (int latency = 1; latency <= 100; latency++) {
+      stats.record(AribaEndpoint.FILES, 200, latency);
+    }
+    Assert.assertEquals(100, stats.getRequestCount(AribaEndpoint.FILES));
+    Assert.assertEquals(0, stats.getRequestCount(AribaEndpoint.TOKEN));
+    assertWithin(50, stats.getLatencyPercentile(AribaEndpoint.FILES, 50));
+    assertWithin(95, stats.getLatencyPercentile(AribaEndpoint.FILES, 95));
+    assertWithin(99, stats.getLatencyPercentile(AribaEndpoint.FILES, 99));
+    Assert.assertEquals(3, stats.getLatencyPercentile(AribaEndpoint.FILES, 3));
+  }
+
+  @Test
+  public void testHedgeBudget() {
+    AribaRequestStats stats = new AribaRequestStats();
+    // One hedge before any request, then one per ten requests
+    Assert.assertTrue(stats.tryHedge(AribaEndpoint.FILES, 0.1, 2));
+    Assert.assertFalse(stats.tryHedge(AribaEndpoint.FILES, 0.1, 2));
+    for (int i = 0; i < 10; i++) {
+      stats.record(AribaEndpoint.FILES, 200, 10);
+    }
+    Assert.assertTrue(stats.tryHedge(AribaEndpoint.FILES, 0.1, 2));
+    Assert.assertFalse(stats.tryHedge(AribaEndpoint.FILES, 0.1, 2));
+    // Budgets are per endpoint family
+    Assert.assertTrue(stats.tryHedge(AribaEndpoint.JOB_STATUS, 0.1, 2));
+
+    // No hedge with the per second limit almost exhausted
+    stats.recordRateLimit(new AribaRunProfile.RateLimitSample(0, "files", 10, 10, 10, 1));
+    Assert.assertFalse(stats.tryHedge(AribaEndpoint.METADATA, 0.1, 2));
+    Assert.assertFalse(stats.isShortTermLimitAvailable(2));
+    Assert.assertTrue(stats.isShortTermLimitAvailable(1));
+    stats.recordRateLimit(new AribaRunProfile.RateLimitSample(0, "files", 10, 10, 10, 5));
+    Assert.assertTrue(stats.tryHedge(AribaEndpoint.METADATA, 0.1, 2));
+  }
+
+  @Test
+  public void testTransferPercentile() {
+    AribaRequestStats stats = new AribaRequestStats();
+    for (int transfer = 1; transfer <= 100; transfer++) {
+      stats.recordTransfer(AribaEndpoint.FILES, transfer * 100);
+    }
+    Assert.assertEquals(100, stats.getTransferCount(AribaEndpoint.FILES));
+    assertWithin(9500, stats.getTransferPercentile(AribaEndpoint.FILES, 95));
+    // Transfers are not counted as requests
+    Assert.assertEquals(0, stats.getRequestCount(AribaEndpoint.FILES));
+  }
+
+  @Test
+  public void testPublishAndSummary() {
+    AribaRequestStats stats = new AribaRequestStats();
+    stats.record(AribaEndpoint.JOBS, 200, 10);
+    stats.record(AribaEndpoint.JOBS, 429, 10);
+    stats.addBytes(AribaEndpoint.JOBS, 512);
+
+    StageMetrics stageMetrics = Mockito.mock(StageMetrics.class);
+    stats.publish(stageMetrics);
+    // Upper bound of the bucket holding 10 ms
+    Mockito.verify(stageMetrics).gauge("ariba.http.jobs.latency.p50", 11);
+    Mockito.verify(stageMetrics, Mockito.never()).gauge(Mockito.eq("ariba.http.token.latency.p50"),
+                                                        Mockito.anyLong());
+    Assert.assertTrue(stats.summary().contains("jobs: requests=2"));
+    Assert.assertTrue(stats.summary().contains("bytes=512, status={200=1, 429=1}"));
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    // Buckets are a quarter of a power of two wide
+    Assert.assertTrue("Expected about " + expected + " but was " + actual,
+                      actual >= expected && actual <= expected * 1.25);
+  }
+}
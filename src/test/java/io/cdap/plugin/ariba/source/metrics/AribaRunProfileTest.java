@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.metrics;
+
+import com.google.gson.Gson;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+/**
+ * Test cases for AribaRunProfile
+ */
+public class AribaRunProfileTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testWriteAndMergeFragments() throws IOException {
+    Configuration conf = new Configuration();
+    String profileDir = new File(temporaryFolder.getRoot(), "pipeline-1000").getAbsolutePath();
+
+    AribaRunProfile jobs = new AribaRunProfile();
+    AribaRunProfile.JobProfile job = new AribaRunProfile.JobProfile("job-1", "RequestFactSystemView", 1000L);
+    job.completed("completed", 1, 1, Collections.singletonList("a.zip"));
+    jobs.getJobs().add(job);
+    jobs.getRateLimits().add(new AribaRunProfile.RateLimitSample(2000L, "jobs", 39, 7, 1, 0));
+    jobs.writeFragment(conf, profileDir, "jobs");
+
+    AribaRunProfile files = new AribaRunProfile();
+    AribaRunProfile.FileProfile file = new AribaRunProfile.FileProfile("job-1", "a.zip", null);
+    file.downloaded(2048, 150);
+    file.transformed(500, 1_000_000_000);
+    files.getFiles().add(file);
+    files.writeFragment(conf, profileDir, "job-1/a.zip");
+
+    Path merged = AribaRunProfile.merge(conf, profileDir,
+                                        new AribaRunProfile.Summary("pipeline", 1000L, 5000L, true));
+    Assert.assertNotNull(merged);
+    Assert.assertFalse(new File(profileDir).exists());
+
+    AribaRunProfile profile = new Gson().fromJson(
+      new String(Files.readAllBytes(new File(merged.toUri().getPath()).toPath()), StandardCharsets.UTF_8),
+      AribaRunProfile.class);
+    Assert.assertEquals(1, profile.getJobs().size());
+    Assert.assertEquals(1, profile.getRateLimits().size());
+    Assert.assertEquals(1, profile.getFiles().size());
+    Assert.assertEquals(500, profile.getFiles().get(0).getRecords());
+    Assert.assertEquals(500, profile.getSummary().getRecords());
+    Assert.assertEquals(2048, profile.getSummary().getBytes());
+
+    // Files of a single view template are not tagged with it
+    Assert.assertEquals(Collections.singletonMap("RequestFactSystemView", 500L),
+                        AribaRunProfile.read(conf, merged).getRecordsByTemplate("RequestFactSystemView"));
+  }
+
+  @Test
+  public void testMergeWithoutFragments() throws IOException {
+    String profileDir = new File(temporaryFolder.getRoot(), "missing").getAbsolutePath();
+    Assert.assertNull(AribaRunProfile.merge(new Configuration(), profileDir,
+                                            new AribaRunProfile.Summary("pipeline", 1000L, 5000L, true)));
+  }
+}
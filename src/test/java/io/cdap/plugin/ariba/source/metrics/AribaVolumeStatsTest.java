@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.metrics;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Test cases for AribaVolumeStats
+ */
+public class AribaVolumeStatsTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testUpdateKeepsOtherTemplates() throws IOException {
+    Configuration conf = new Configuration();
+    String statsPath = AribaVolumeStats.getPath(temporaryFolder.getRoot().getAbsolutePath(), "pipeline");
+    Assert.assertTrue(statsPath.endsWith("pipeline-volume.json"));
+    Assert.assertTrue(AribaVolumeStats.read(conf, statsPath).isEmpty());
+
+    Map<String, Long> firstRun = new HashMap<>();
+    firstRun.put("RequestFactSystemView", 100L);
+    firstRun.put("SupplierSystemView", 20_000L);
+    AribaVolumeStats.update(conf, statsPath, firstRun);
+
+    Map<String, Long> secondRun = new HashMap<>();
+    secondRun.put("RequestFactSystemView", 300L);
+    AribaVolumeStats.update(conf, statsPath, secondRun);
+
+    Map<String, Long> stats = AribaVolumeStats.read(conf, statsPath);
+    Assert.assertEquals(2, stats.size());
+    Assert.assertEquals(Long.valueOf(300L), stats.get("RequestFactSystemView"));
+    Assert.assertEquals(Long.valueOf(20_000L), stats.get("SupplierSystemView"));
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for AribaBackoff
+ */
+public class AribaBackoffTest {
+
+  @Test
+  public void testDecorrelatedJitterBounds() {
+    for (int i = 0; i < 1000; i++) {
+      long first = AribaBackoff.decorrelatedJitter(2000, 10000, 2, 1);
+      Assert.assertTrue(first >= 2000 && first <= 4000);
+      long third = AribaBackoff.decorrelatedJitter(2000, 10000, 2, 3);
+      Assert.assertTrue(third >= 2000 && third <= 10000);
+    }
+  }
+
+  @Test
+  public void testDecorrelatedJitterSpreadsDelays() {
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (int i = 0; i < 1000; i++) {
+      long delay = AribaBackoff.decorrelatedJitter(1000, 60000, 3, 2);
+      min = Math.min(min, delay);
+      max = Math.max(max, delay);
+    }
+    // Tasks failing together retry at different times
+    Assert.assertTrue(max - min > 1000);
+  }
+
+  @Test
+  public void testMaxBelowBase() {
+    Assert.assertEquals(500, AribaBackoff.decorrelatedJitter(2000, 500, 2, 1));
+  }
+
+  @Test
+  public void testUntilReset() {
+    long delay = AribaBackoff.untilReset(30);
+    Assert.assertTrue(delay >= 30000 && delay < 31000);
+  }
+}
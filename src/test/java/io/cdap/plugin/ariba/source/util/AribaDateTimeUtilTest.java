@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Junit test class for {@link AribaDateTimeUtil} class methods
+ */
+public class AribaDateTimeUtilTest {
+
+  @Test
+  public void testParseTimestampMicros() {
+    String[] values = {"2021-12-01T03:04:23Z", "2021-12-01 03:04:23Z", "1969-12-31T23:59:59.999999Z",
+      "2020-02-29T00:00:00.1Z", "0001-01-01T00:00:00Z", "2021-12-01T03:04:23.123456789+05:30",
+      "2021-12-01T03:04:23-01:00:30"};
+    for (String value : values) {
+      Instant expected = ZonedDateTime.parse(value.replace(' ', 'T'), DateTimeFormatter.ISO_DATE_TIME).toInstant();
+      long expectedMicros = TimeUnit.SECONDS.toMicros(expected.getEpochSecond())
+        + TimeUnit.NANOSECONDS.toMicros(expected.getNano());
+      Assert.assertEquals(value, expectedMicros, AribaDateTimeUtil.parseTimestampMicros(value));
+    }
+  }
+
+  @Test
+  public void testParseTimestampMicrosInvalid() {
+    String[] values = {"2021-12-01T03:04:23", "2021-02-29T03:04:23Z", "2021-12-01T24:00:00Z", "2021-12-01T03:04Z",
+      "2021-12-01T03:04:23.Z", "2021-12-01T03:04:23Z[UTC]", "2021-12-01T03:04:23+0530", "2021/12/01T03:04:23Z",
+      "2022-01-01T00:00:00.123", "2022-01-01T00:00:00.123456789"};
+    for (String value : values) {
+      Assert.assertEquals(value, AribaDateTimeUtil.INVALID_TIMESTAMP, AribaDateTimeUtil.parseTimestampMicros(value));
+    }
+  }
+
+  @Test
+  public void testParseBasicDate() {
+    String[] values = {"20211201", "19700101", "19691231", "20000229", "00010101"};
+    for (String value : values) {
+      long expected = LocalDate.parse(value, DateTimeFormatter.BASIC_ISO_DATE).toEpochDay();
+      Assert.assertEquals(value, expected, AribaDateTimeUtil.parseBasicDate(value));
+    }
+    Assert.assertEquals(AribaDateTimeUtil.INVALID_DATE, AribaDateTimeUtil.parseBasicDate("19000229"));
+    Assert.assertEquals(AribaDateTimeUtil.INVALID_DATE, AribaDateTimeUtil.parseBasicDate("2021-12-01"));
+  }
+
+  @Test
+  public void testParseBasicTimeMicros() {
+    Assert.assertEquals(LocalTime.of(23, 59, 59).toNanoOfDay() / 1000,
+                        AribaDateTimeUtil.parseBasicTimeMicros("235959"));
+    Assert.assertEquals(0L, AribaDateTimeUtil.parseBasicTimeMicros("240000"));
+    Assert.assertEquals(AribaDateTimeUtil.INVALID_TIME, AribaDateTimeUtil.parseBasicTimeMicros("240001"));
+    Assert.assertEquals(AribaDateTimeUtil.INVALID_TIME, AribaDateTimeUtil.parseBasicTimeMicros("2359"));
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Test cases for AribaExecutors
+ */
+public class AribaExecutorsTest {
+
+  @Test
+  public void testPlatformThreads() throws Exception {
+    ExecutorService executor = AribaExecutors.newBlockingIoExecutor("ariba-test", false, 2);
+    try {
+      Future<Thread> thread = executor.submit(Thread::currentThread);
+      Assert.assertTrue(thread.get().getName().matches("ariba-test-[0-9]+"));
+      Assert.assertTrue(thread.get().isDaemon());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testVirtualThreads() throws Exception {
+    ExecutorService executor = AribaExecutors.newBlockingIoExecutor("ariba-test", true, 2);
+    try {
+      Assert.assertEquals("done", executor.submit(() -> "done").get());
+      // Runtimes without virtual threads fall back to the platform pool
+      String threadName = executor.submit(() -> Thread.currentThread().getName()).get();
+      Assert.assertEquals(!AribaExecutors.isVirtualThreadSupported(), threadName.startsWith("ariba-test-"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
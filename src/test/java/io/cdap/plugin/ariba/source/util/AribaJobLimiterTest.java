@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for AribaJobLimiter
+ */
+public class AribaJobLimiterTest {
+
+  @Test
+  public void testRateFollowsRemainingLimits() {
+    AribaJobLimiter limiter = new AribaJobLimiter();
+    Assert.assertEquals(1, limiter.getRate(), 0);
+
+    limiter.update(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    Assert.assertEquals(1, limiter.getRate(), 0);
+    // 30 calls left in the minute are spread over it
+    limiter.update(5, 30, Integer.MAX_VALUE);
+    Assert.assertEquals(0.5, limiter.getRate(), 0.0001);
+    limiter.update(Integer.MAX_VALUE, Integer.MAX_VALUE, 360);
+    Assert.assertEquals(0.1, limiter.getRate(), 0.0001);
+  }
+
+  @Test
+  public void testExhaustedLimitKeepsMinRate() {
+    AribaJobLimiter limiter = new AribaJobLimiter();
+    limiter.update(0, 10, 100);
+    Assert.assertEquals(1.0 / 60, limiter.getRate(), 0.0001);
+
+    // The rate recovers with the limits
+    limiter.update(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    Assert.assertEquals(1, limiter.getRate(), 0);
+  }
+}
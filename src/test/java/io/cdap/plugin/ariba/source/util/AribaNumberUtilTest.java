@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+/**
+ * Junit test class for {@link AribaNumberUtil} class methods
+ */
+public class AribaNumberUtilTest {
+
+  @Test
+  public void testParseLong() {
+    Assert.assertEquals(-12345L, AribaNumberUtil.parseLong("12345-"));
+    Assert.assertEquals(-12345L, AribaNumberUtil.parseLong(" -12345 "));
+    Assert.assertEquals(12345L, AribaNumberUtil.parseLong("+12345"));
+    Assert.assertEquals(Long.MIN_VALUE, AribaNumberUtil.parseLong("9223372036854775808-"));
+    Assert.assertEquals(Long.MAX_VALUE, AribaNumberUtil.parseLong("9223372036854775807"));
+  }
+
+  @Test
+  public void testParseLongInvalid() {
+    String[] values = {"", " ", "-", "--1", "-1-", "1.5", "9223372036854775808", "12a"};
+    for (String value : values) {
+      try {
+        AribaNumberUtil.parseLong(value);
+        Assert.fail("Expected NumberFormatException for " + value);
+      } catch (NumberFormatException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testParseIntOverflow() {
+    AribaNumberUtil.parseInt("2147483648");
+  }
+
+  @Test
+  public void testParseDoubleAndDecimal() {
+    Assert.assertEquals(-12.5d, AribaNumberUtil.parseDouble("12.5- "), 0d);
+    Assert.assertEquals(12.5d, AribaNumberUtil.parseDouble(" 12.5"), 0d);
+    Assert.assertEquals(new BigDecimal("-3.25"), AribaNumberUtil.parseDecimal("3.25-"));
+    Assert.assertEquals(new BigDecimal("3.25"), AribaNumberUtil.parseDecimal("3.25"));
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testParseDoubleWithTwoSigns() {
+    AribaNumberUtil.parseDouble("-12.5-");
+  }
+}
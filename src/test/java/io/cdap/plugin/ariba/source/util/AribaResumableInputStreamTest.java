@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.ariba.source.util;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test cases for AribaResumableInputStream
+ */
+public class AribaResumableInputStreamTest {
+
+  private static final byte[] CONTENT = new byte[10_000];
+
+  static {
+    for (int i = 0; i < CONTENT.length; i++) {
+      CONTENT[i] = (byte) i;
+    }
+  }
+
+  @Test
+  public void testResumeFromFailedByte() throws IOException {
+    List<Long> offsets = new ArrayList<>();
+    AribaResumableInputStream stream = new AribaResumableInputStream(failingAfter(0, 3000), 3, offset -> {
+      offsets.add(offset);
+      return failingAfter((int) offset, offset < 6000 ? 6000 : CONTENT.length);
+    });
+    Assert.assertArrayEquals(CONTENT, ByteStreams.toByteArray(stream));
+    Assert.assertEquals(Arrays.asList(3000L, 6000L), offsets);
+    Assert.assertEquals(2, stream.getResumes());
+  }
+
+  @Test
+  public void testFailureWhenNotResumable() {
+    AribaResumableInputStream stream = new AribaResumableInputStream(failingAfter(0, 3000), 3, offset -> null);
+    try {
+      ByteStreams.toByteArray(stream);
+      Assert.fail("testFailureWhenNotResumable expected to fail, but succeeded");
+    } catch (IOException e) {
+      Assert.assertTrue(e instanceof SocketException);
+      Assert.assertEquals(1, stream.getResumes());
+    }
+  }
+
+  @Test
+  public void testFailureAfterMaxResumes() {
+    AribaResumableInputStream stream = new AribaResumableInputStream(failingAfter(0, 1000), 2,
+                                                                     offset -> failingAfter((int) offset,
+                                                                                            (int) offset + 1000));
+    try {
+      ByteStreams.toByteArray(stream);
+      Assert.fail("testFailureAfterMaxResumes expected to fail, but succeeded");
+    } catch (IOException e) {
+      Assert.assertTrue(e instanceof SocketException);
+      Assert.assertEquals(2, stream.getResumes());
+    }
+  }
+
+  @Test
+  public void testOpenerFailureIsSuppressed() {
+    AribaResumableInputStream stream = new AribaResumableInputStream(failingAfter(0, 1000), 2, offset -> {
+      throw new IOException("rate limit exhausted");
+    });
+    try {
+      ByteStreams.toByteArray(stream);
+      Assert.fail("testOpenerFailureIsSuppressed expected to fail, but succeeded");
+    } catch (IOException e) {
+      Assert.assertTrue(e instanceof SocketException);
+      Assert.assertEquals("rate limit exhausted", e.getSuppressed()[0].getMessage());
+    }
+  }
+
+  /**
+   * @return stream of the content from the given byte, failing like a dropped connection at the end byte unless it
+   * is the end of the content
+   */
+  private static InputStream failingAfter(int from, int end) {
+    InputStream content = new ByteArrayInputStream(CONTENT, from, end - from);
+    return new InputStream() {
+      @Override
+      public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        int bytesRead = content.read(b, off, Math.min(len, 512));
+        if (bytesRead < 0 && end < CONTENT.length) {
+          throw new SocketException("Connection reset");
+        }
+        return bytesRead;
+      }
+    };
+  }
+}